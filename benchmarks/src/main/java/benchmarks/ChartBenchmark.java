@@ -0,0 +1,47 @@
+package main.java.benchmarks;
+
+import main.java.data.MetricQuery;
+import main.java.model.CountryData;
+import main.java.ui.ChartData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the chart series and title for a metric, one downsampled series per
+ * country, at a typical plot width and at one narrow enough to force downsampling.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChartBenchmark {
+    @Param({"800", "20"})
+    public int plotWidth;
+
+    private List<CountryData> metricRows;
+
+    @Setup(Level.Trial)
+    public void setUp(Dataset dataset) {
+        metricRows = MetricQuery.select(dataset.index, Dataset.METRIC, dataset.index.getCountryNames());
+    }
+
+    @Benchmark
+    public ChartData prepare() {
+        return ChartData.prepare(metricRows, Dataset.METRIC, plotWidth);
+    }
+}
@@ -0,0 +1,66 @@
+package main.java.benchmarks;
+
+import main.java.data.DataIndex;
+import main.java.data.MetricQuery;
+import main.java.model.CountryData;
+import main.java.ui.ChartRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drawing the chart of the selected countries into an 800x500 image off screen,
+ * against asking a {@link ChartRenderer} for a chart it has already drawn.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChartRenderBenchmark {
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 500;
+
+    private DataIndex index;
+    private List<String> countries;
+    private List<CountryData> rows;
+    private ChartRenderer renderer;
+
+    @Setup(Level.Trial)
+    public void setUp(Dataset dataset) {
+        index = dataset.index;
+        countries = dataset.selectedCountries;
+        rows = MetricQuery.select(index, Dataset.METRIC, countries);
+        renderer = new ChartRenderer();
+        renderer.render(index, Dataset.METRIC, countries, WIDTH, HEIGHT).join();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        renderer.close();
+    }
+
+    @Benchmark
+    public BufferedImage draw() {
+        return ChartRenderer.renderImage(rows, Dataset.METRIC, WIDTH, HEIGHT);
+    }
+
+    @Benchmark
+    public BufferedImage cached() {
+        return renderer.render(index, Dataset.METRIC, countries, WIDTH, HEIGHT).join();
+    }
+}
@@ -0,0 +1,62 @@
+package main.java.benchmarks;
+
+import main.java.data.CSVReader;
+import main.java.data.DataIndex;
+import main.java.model.CountryData;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dataset is the benchmark input: a synthetic CSV file of {@code rowCount} rows and
+ * {@code yearSpan} year columns, and the rows parsed from it and indexed, as the
+ * application would hold them after loading.
+ */
+@State(Scope.Benchmark)
+public class Dataset {
+    // Countries selected by a filter, the application's default limit
+    static final int SELECTED_COUNTRIES = 5;
+    // Metric selected by a filter
+    static final String METRIC = SyntheticData.seriesName(2);
+
+    @Param({"1000", "10000", "100000"})
+    public int rowCount;
+
+    @Param({"10", "60"})
+    public int yearSpan;
+
+    Path file;
+    List<CountryData> rows;
+    DataIndex index;
+    List<String> selectedCountries;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("benchmark-", ".csv");
+        SyntheticData.write(file, rowCount, yearSpan, 42);
+        rows = new CSVReader(file.toString()).parse();
+        index = new DataIndex();
+        index.addAll(rows);
+
+        // Countries spread over the file, so selected rows are not adjacent
+        int countries = SyntheticData.countryCount(rowCount);
+        selectedCountries = new ArrayList<>();
+        for (int i = 0; i < SELECTED_COUNTRIES && i < countries; i++) {
+            selectedCountries.add(SyntheticData.countryName((int) ((long) i * countries / SELECTED_COUNTRIES)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,35 @@
+package main.java.benchmarks;
+
+import main.java.data.MetricQuery;
+import main.java.model.CountryData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The selection step of a filter run: the rows of a metric, or of every series,
+ * for the selected countries, resolved to a view on the row store.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+    @Benchmark
+    public List<CountryData> metric(Dataset dataset) {
+        return MetricQuery.select(dataset.index, Dataset.METRIC, dataset.selectedCountries);
+    }
+
+    @Benchmark
+    public List<CountryData> allSeries(Dataset dataset) {
+        return MetricQuery.select(dataset.index, MetricQuery.ALL_SERIES, dataset.selectedCountries);
+    }
+}
@@ -0,0 +1,34 @@
+package main.java.benchmarks;
+
+import main.java.data.CSVReader;
+import main.java.model.CountryData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a whole file into rows, sequentially and on all cores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestBenchmark {
+    @Benchmark
+    public List<CountryData> parse(Dataset dataset) {
+        return new CSVReader(dataset.file.toString()).parse();
+    }
+
+    @Benchmark
+    public List<CountryData> parseParallel(Dataset dataset) {
+        return new CSVReader(dataset.file.toString()).parseParallel();
+    }
+}
@@ -0,0 +1,81 @@
+package main.java.benchmarks;
+
+import main.java.data.ConflictPolicy;
+import main.java.data.MultiSourceLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading one dataset split over many files, on one thread and on all cores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiSourceBenchmark {
+    // Rows of the whole dataset, split evenly over the files
+    private static final int TOTAL_ROWS = 100_000;
+    private static final int YEAR_SPAN = 60;
+
+    /**
+     * A directory of {@code fileCount} synthetic files with disjoint countries.
+     */
+    @State(Scope.Benchmark)
+    public static class Sources {
+        @Param({"1", "20", "200"})
+        public int fileCount;
+
+        Path directory;
+        List<Path> files;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("benchmark-sources-");
+            int rowsPerFile = TOTAL_ROWS / fileCount;
+            for (int i = 0; i < fileCount; i++) {
+                SyntheticData.write(directory.resolve(String.format("part-%03d.csv", i)), rowsPerFile, YEAR_SPAN, 42 + i,
+                        i * SyntheticData.countryCount(rowsPerFile));
+            }
+            files = MultiSourceLoader.resolve(directory.toString());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Benchmark
+    public MultiSourceLoader.Result loadSequential(Sources sources) throws IOException {
+        return new MultiSourceLoader(sources.files, ConflictPolicy.FIRST, 1).load(timing -> {
+        });
+    }
+
+    @Benchmark
+    public MultiSourceLoader.Result loadParallel(Sources sources) throws IOException {
+        return new MultiSourceLoader(sources.files, ConflictPolicy.FIRST, Runtime.getRuntime().availableProcessors())
+                .load(timing -> {
+                });
+    }
+}
@@ -0,0 +1,103 @@
+package main.java.benchmarks;
+
+import main.java.data.MetricQuery;
+import main.java.model.CountryData;
+import main.java.model.Percentiles;
+import main.java.model.QuantileSketch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Percentiles of one metric over every country: sorting all values, as small
+ * selections do, against merging the rows' quantile sketches, as large ones do,
+ * once with the row sketches already built and once building them on first use.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PercentileBenchmark {
+    private List<CountryData> rows;
+
+    /**
+     * The rows with their sketches dropped before every call, as after a load or
+     * reload, so the call builds each row's sketch first.
+     */
+    @State(Scope.Thread)
+    public static class ColdRows {
+        List<CountryData> rows;
+
+        @Setup(Level.Invocation)
+        public void dropSketches(Dataset dataset) {
+            rows = MetricQuery.statsRows(dataset.rows, Dataset.METRIC);
+            for (CountryData data : rows) {
+                // Storing a value again drops the row's cached sketch
+                for (int year = data.firstYear(), last = data.lastYear(); year <= last; year++) {
+                    if (data.hasValue(year)) {
+                        data.setValue(year, data.valueAt(year));
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp(Dataset dataset) {
+        rows = MetricQuery.statsRows(dataset.rows, Dataset.METRIC);
+        // Row sketches are built once and kept, so build them before measuring
+        rows.forEach(CountryData::getSketch);
+    }
+
+    // Sorts every value, as SummaryCube.percentiles does up to its exact limit, whatever the size.
+    @Benchmark
+    public Percentiles exact() {
+        double[] values = new double[rows.size() * 8];
+        int n = 0;
+        for (CountryData data : rows) {
+            for (int year = data.firstYear(), last = data.lastYear(); year <= last; year++) {
+                if (data.hasValue(year)) {
+                    if (n == values.length) {
+                        values = Arrays.copyOf(values, n * 2);
+                    }
+                    values[n++] = data.valueAt(year);
+                }
+            }
+        }
+        return Percentiles.exact(values, n);
+    }
+
+    @Benchmark
+    public Percentiles sketch() {
+        return merge(rows);
+    }
+
+    @Benchmark
+    public Percentiles coldSketch(ColdRows cold) {
+        return merge(cold.rows);
+    }
+
+    // What SummaryCube.percentiles does above its exact limit.
+    private static Percentiles merge(List<CountryData> rows) {
+        QuantileSketch total = new QuantileSketch();
+        for (CountryData data : rows) {
+            total.merge(data.getSketch());
+        }
+        return Percentiles.of(total);
+    }
+}
@@ -0,0 +1,68 @@
+package main.java.benchmarks;
+
+import main.java.data.Aggregate;
+import main.java.data.GroupAggregator;
+import main.java.data.GroupMapping;
+import main.java.model.CountryData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rolling one metric of every country up into regions and income groups, with
+ * every country in one of seven regions and one of four income groups.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RollupBenchmark {
+    @Param({"SUM", "WEIGHTED_MEAN", "MEDIAN"})
+    public Aggregate aggregate;
+
+    private final GroupAggregator aggregator = new GroupAggregator();
+    private Path groupsFile;
+    private GroupMapping groups;
+
+    @Setup(Level.Trial)
+    public void setUp(Dataset dataset) throws IOException {
+        StringBuilder lines = new StringBuilder("Country Code,Region,Income Group\n");
+        List<String> countries = dataset.index.getCountryNames();
+        for (int i = 0; i < countries.size(); i++) {
+            lines.append(dataset.index.getCountryCode(countries.get(i)))
+                    .append(",Region ").append(i % 7).append(",Income ").append(i % 4).append('\n');
+        }
+        groupsFile = Files.createTempFile("benchmark-groups-", ".csv");
+        Files.writeString(groupsFile, lines);
+        groups = GroupMapping.load(groupsFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(groupsFile);
+    }
+
+    @Benchmark
+    public List<CountryData> rollup(Dataset dataset) {
+        return aggregator.rollup(dataset.index, Dataset.METRIC, dataset.index.getCountryNames(), groups, aggregate,
+                SyntheticData.seriesName(0));
+    }
+}
@@ -0,0 +1,116 @@
+package main.java.benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ServerLoadTest sends requests to a running query server from many concurrent
+ * clients for a fixed time and reports the throughput and latency percentiles.
+ * <p>
+ * Usage: {@code ServerLoadTest URL [clients] [seconds] [revalidate]}. With
+ * revalidate, clients repeat the request with the returned ETag, measuring the
+ * 304 path. Start the server with {@code Main --input FILE --serve PORT} first.
+ */
+public final class ServerLoadTest {
+    private static final int DEFAULT_CLIENTS = 64;
+    private static final int DEFAULT_SECONDS = 10;
+    // Latencies recorded per client, at most this many
+    private static final int MAX_SAMPLES_PER_CLIENT = 100_000;
+
+    // Latencies measured by one client
+    private static final class Samples {
+        final long[] nanos = new long[MAX_SAMPLES_PER_CLIENT];
+        int count;
+
+        void add(long latency) {
+            if (count < nanos.length) {
+                nanos[count++] = latency;
+            }
+        }
+    }
+
+    private ServerLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: ServerLoadTest URL [clients] [seconds] [revalidate]");
+            System.exit(2);
+        }
+        URI uri = URI.create(args[0]);
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CLIENTS;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SECONDS;
+        boolean revalidate = args.length > 3 && args[3].equals("revalidate");
+
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        LongAdder requests = new LongAdder();
+        LongAdder failures = new LongAdder();
+        AtomicLong bytes = new AtomicLong();
+        List<Samples> samples = new ArrayList<>();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                Samples latencies = new Samples();
+                samples.add(latencies);
+                workers.submit(() -> {
+                    String etag = null;
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest.Builder request = HttpRequest.newBuilder(uri).GET();
+                        if (etag != null) {
+                            request.header("If-None-Match", etag);
+                        }
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+                            if (response.statusCode() != 200 && response.statusCode() != 304) {
+                                failures.increment();
+                            }
+                            bytes.addAndGet(response.body().length);
+                            if (revalidate) {
+                                etag = response.headers().firstValue("ETag").orElse(null);
+                            }
+                        } catch (Exception e) {
+                            failures.increment();
+                        }
+                        latencies.add(System.nanoTime() - start);
+                        requests.increment();
+                    }
+                    return null;
+                });
+            }
+        }
+
+        int total = 0;
+        for (Samples latencies : samples) {
+            total += latencies.count;
+        }
+        long[] all = new long[total];
+        int n = 0;
+        for (Samples latencies : samples) {
+            System.arraycopy(latencies.nanos, 0, all, n, latencies.count);
+            n += latencies.count;
+        }
+        Arrays.sort(all);
+
+        System.out.printf("%,d requests in %d s from %d clients: %,.0f requests/s, %,d failed, %,.1f MB received%n",
+                requests.sum(), seconds, clients, requests.sum() / (double) seconds, failures.sum(), bytes.get() / 1e6);
+        if (total > 0) {
+            System.out.printf("latency ms: p50 %.2f, p90 %.2f, p99 %.2f, max %.2f%n",
+                    percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), all[total - 1] / 1e6);
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))] / 1e6;
+    }
+}
@@ -0,0 +1,28 @@
+package main.java.benchmarks;
+
+import main.java.data.MetricQuery;
+import main.java.model.ValueSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The statistics of a filter result, over the worst case of every loaded row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatsBenchmark {
+    @Benchmark
+    public ValueSummary metric(Dataset dataset) {
+        return MetricQuery.summarize(dataset.rows, Dataset.METRIC);
+    }
+}
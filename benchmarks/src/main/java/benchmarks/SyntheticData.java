@@ -0,0 +1,134 @@
+package main.java.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * SyntheticData writes CSV files shaped like a World Bank WDI export: a header of
+ * "Country Name,Country Code,Series Name,Series Code" followed by one
+ * "YYYY [YRYYYY]" column per year, then one row per (country, series).
+ * <p>
+ * Rows cycle through a fixed set of real GDP series, some of whose names need
+ * quoting, so every country gets the same metrics as in the bundled data. Values
+ * follow a random walk per row, and about one value in twenty is missing ("..").
+ * The output depends only on the arguments, so runs are comparable.
+ */
+public final class SyntheticData {
+    // Last year column; the year span counts back from it
+    public static final int LAST_YEAR = 2016;
+
+    // Series names and codes as they appear in the World Bank export
+    private static final String[][] SERIES = {
+            {"GDP (constant 2005 US$)", "NY.GDP.MKTP.KD"},
+            {"GDP growth (annual %)", "NY.GDP.MKTP.KD.ZG"},
+            {"GDP per capita (constant 2005 US$)", "NY.GDP.PCAP.KD"},
+            {"GDP per capita growth (annual %)", "NY.GDP.PCAP.KD.ZG"},
+            {"GDP per capita, PPP (constant 2011 international $)", "NY.GDP.PCAP.PP.KD"},
+            {"GDP, PPP (constant 2011 international $)", "NY.GDP.MKTP.PP.KD"},
+            {"GDP per capita (current US$)", "NY.GDP.PCAP.CD"},
+            {"GDP (current US$)", "NY.GDP.MKTP.CD"},
+    };
+    private static final double MISSING_RATE = 0.05;
+
+    private SyntheticData() {
+    }
+
+    // Number of distinct metrics in generated files.
+    public static int seriesCount() {
+        return SERIES.length;
+    }
+
+    // Name of the i-th generated metric.
+    public static String seriesName(int i) {
+        return SERIES[i][0];
+    }
+
+    // Name of the i-th generated country.
+    public static String countryName(int i) {
+        return "Country " + i;
+    }
+
+    // Number of countries in a file of the given number of rows.
+    public static int countryCount(int rows) {
+        return (rows + SERIES.length - 1) / SERIES.length;
+    }
+
+    /**
+     * Writes a file of {@code rows} data rows with {@code yearSpan} year columns
+     * ending at {@link #LAST_YEAR}.
+     */
+    public static void write(Path file, int rows, int yearSpan, long seed) throws IOException {
+        write(file, rows, yearSpan, seed, 0);
+    }
+
+    /**
+     * Writes a file like {@link #write(Path, int, int, long)} whose countries are
+     * numbered from {@code firstCountry}, so several files can split one dataset.
+     */
+    public static void write(Path file, int rows, int yearSpan, long seed, int firstCountry) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        int firstYear = LAST_YEAR - yearSpan + 1;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("Country Name,Country Code,Series Name,Series Code");
+            for (int year = firstYear; year <= LAST_YEAR; year++) {
+                out.write("," + year + " [YR" + year + "]");
+            }
+            out.newLine();
+
+            StringBuilder line = new StringBuilder(64 + yearSpan * 16);
+            for (int row = 0; row < rows; row++) {
+                int country = firstCountry + row / SERIES.length;
+                String[] series = SERIES[row % SERIES.length];
+                line.setLength(0);
+                line.append(countryName(country)).append(',').append(countryCode(country)).append(',');
+                appendField(line, series[0]);
+                line.append(',').append(series[1]);
+
+                double value = Math.exp(4 + random.nextDouble() * 8);
+                for (int year = firstYear; year <= LAST_YEAR; year++) {
+                    value *= 1 + (random.nextDouble() - 0.45) * 0.1;
+                    line.append(',');
+                    if (random.nextDouble() < MISSING_RATE) {
+                        line.append("..");
+                    } else {
+                        appendDecimal(line, value);
+                    }
+                }
+                out.append(line);
+                out.newLine();
+            }
+        }
+    }
+
+    // Three-letter code: AAA, AAB, ... then digits once the letters run out.
+    private static String countryCode(int i) {
+        if (i < 26 * 26 * 26) {
+            return new String(new char[]{(char) ('A' + i / 676), (char) ('A' + i / 26 % 26), (char) ('A' + i % 26)});
+        }
+        return "C" + i;
+    }
+
+    // Appends a value with four decimals and no exponent, like the export.
+    private static void appendDecimal(StringBuilder line, double value) {
+        long scaled = Math.round(value * 10_000);
+        long fraction = scaled % 10_000;
+        line.append(scaled / 10_000).append('.');
+        for (long digit = 1_000; digit > fraction && digit > 1; digit /= 10) {
+            line.append('0');
+        }
+        line.append(fraction);
+    }
+
+    // Appends a field, quoted if it holds a comma.
+    private static void appendField(StringBuilder line, String value) {
+        if (value.indexOf(',') >= 0) {
+            line.append('"').append(value.replace("\"", "\"\"")).append('"');
+        } else {
+            line.append(value);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package main.java.benchmarks;
+
+import main.java.ui.TablePanel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading every cell of the table model showing all rows, as painting and
+ * exporting a full table would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TableBenchmark {
+    private TablePanel.CountryTableModel model;
+
+    @Setup(Level.Trial)
+    public void setUp(Dataset dataset) {
+        model = new TablePanel.CountryTableModel(dataset.rows);
+        model.setYearRange(dataset.index.getFirstYear(), dataset.index.getLastYear());
+        int[] all = new int[dataset.rows.size()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        model.setRows(all, all.length);
+    }
+
+    @Benchmark
+    public void getValueAtSweep(Blackhole blackhole) {
+        int rows = model.getRowCount();
+        int columns = model.getColumnCount();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                blackhole.consume(model.getValueAt(row, column));
+            }
+        }
+    }
+}
@@ -1,15 +1,27 @@
 package main.java;
 
+import main.java.cli.BatchCli;
+import main.java.metrics.Metrics;
 import main.java.ui.MainFrame;
+import main.java.ui.TimedEventQueue;
 
 import javax.swing.SwingUtilities;
 
 public class Main {
+    private static final String DEFAULT_DATA_FILE = "src/main/resources/Data.csv";
+
+    // Opens the window, or runs headless when --metric, --queries, --serve or --charts is given.
     public static void main(String[] args) {
+        // -Dmetrics.dump=FILE writes the pipeline timings to FILE at exit
+        Metrics.dumpOnExit();
+        if (BatchCli.isBatch(args)) {
+            System.setProperty("java.awt.headless", "true");
+            System.exit(BatchCli.run(args, System.out, System.err));
+        }
+        String csvFilePath = args.length == 2 && args[0].equals("--input") ? args[1] : DEFAULT_DATA_FILE;
+
         // Ensure GUI creation is done on the Event Dispatch Thread
-        SwingUtilities.invokeLater(() -> {
-            String csvFilePath = "src/main/resources/data.csv";
-            new MainFrame(csvFilePath);
-        });
+        TimedEventQueue.install();
+        SwingUtilities.invokeLater(() -> new MainFrame(csvFilePath));
     }
 }
@@ -0,0 +1,381 @@
+package main.java.cli;
+
+import main.java.data.ConflictPolicy;
+import main.java.data.DataIndex;
+import main.java.data.ExportFormat;
+import main.java.data.MetricQuery;
+import main.java.data.MultiSourceLoader;
+import main.java.data.ParallelCSVReader;
+import main.java.data.RowExporter;
+import main.java.model.CountryData;
+import main.java.model.ValueSummary;
+import main.java.server.QueryServer;
+import main.java.ui.ChartRenderer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * BatchCli runs filter and statistics queries without a display, for scripts and
+ * scheduled jobs.
+ * <p>
+ * The data file is loaded once; the queries, given as options or read from a query
+ * file, then run in parallel against that one dataset. Each result is written to
+ * standard output, in query order, as soon as it and all results before it are
+ * done, so a long batch streams instead of being held in memory. Load time and
+ * queries per second are reported on standard error. Only --charts and the
+ * server's /chart endpoint use AWT, drawing into images without a display.
+ * <p>
+ * With --serve the loaded data is instead served over HTTP by a {@link QueryServer}
+ * until the process is stopped. With --charts one PNG chart per country and metric
+ * is written by a {@link ChartRenderer}.
+ */
+public final class BatchCli {
+    private static final String USAGE = """
+            Usage: Main --input SOURCE --metric NAME [--countries "A;B;..."] [--from YEAR] [--to YEAR]
+                        [--format csv|json] [--threads N] [--conflict first|last|mean|fail]
+                        [--export FILE]
+                   Main --input SOURCE --queries FILE [--format csv|json] [--threads N]
+                   Main --input SOURCE --serve PORT [--host ADDRESS]
+                   Main --input SOURCE --charts DIR [--metric NAME] [--countries "A;B;..."]
+                        [--width PIXELS] [--height PIXELS] [--threads N]
+            SOURCE is a CSV file, a directory of CSV files or a glob such as
+            "exports/WDI_*.csv". Several files are parsed in parallel and merged by
+            country code and series code; --conflict decides cells found in more than
+            one file (default: first file listed wins).
+            A query file has one query per line: metric, countries separated by ';',
+            first year and last year, separated by tabs. The years are optional, and
+            lines that are blank or start with # are skipped. "All Series" selects
+            every series. A metric may be a series followed by one of [YoY %],
+            [3-yr avg], [5-yr avg], [CAGR %] or [Index, first year = 100]. --serve answers /filter, /stats, /series and /chart over HTTP on
+            the address (default 127.0.0.1) until stopped.
+            --export writes the selected rows, of every country unless --countries is
+            given, to FILE instead of the statistics, as CSV, newline-delimited JSON or
+            binary columnar data by its extension (.csv, .ndjson or .gdpc).
+            --charts draws one PNG chart per country and metric into DIR, named after
+            the country and series codes, for every stored series unless --metric is
+            given and every country unless --countries is (default size 800x500).""";
+    private static final Set<String> OPTIONS = Set.of(
+            "input", "metric", "countries", "from", "to", "format", "queries", "threads", "serve", "host", "conflict",
+            "export", "charts", "width", "height");
+    private static final String DEFAULT_HOST = "127.0.0.1";
+    // Results computed ahead of the one being written, per thread
+    private static final int QUERIES_AHEAD_PER_THREAD = 4;
+    private static final int OUTPUT_BUFFER_CHARS = 1 << 16;
+    private static final int DEFAULT_CHART_WIDTH = 800;
+    private static final int DEFAULT_CHART_HEIGHT = 500;
+
+    private BatchCli() {
+    }
+
+    // True if the arguments ask for a batch run rather than the window.
+    public static boolean isBatch(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--metric") || arg.startsWith("--metric=")
+                    || arg.equals("--queries") || arg.startsWith("--queries=")
+                    || arg.equals("--serve") || arg.startsWith("--serve=")
+                    || arg.equals("--charts") || arg.startsWith("--charts=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs the batch described by the arguments.
+     *
+     * @return the process exit code: 0 on success, 1 if the run failed, 2 for invalid arguments
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        Map<String, String> options;
+        ResultFormat format;
+        int threads;
+        ConflictPolicy conflictPolicy;
+        int chartWidth;
+        int chartHeight;
+        try {
+            options = parseOptions(args);
+            // --charts takes an optional --metric of its own
+            int modes = (options.containsKey("metric") && !options.containsKey("charts") ? 1 : 0)
+                    + (options.containsKey("queries") ? 1 : 0) + (options.containsKey("serve") ? 1 : 0)
+                    + (options.containsKey("charts") ? 1 : 0);
+            if (!options.containsKey("input") || modes != 1) {
+                throw new IllegalArgumentException(
+                        "Give --input and exactly one of --metric, --queries, --serve or --charts");
+            }
+            if (options.containsKey("charts") && options.containsKey("export")) {
+                throw new IllegalArgumentException("--export cannot be combined with --charts");
+            }
+            if (options.containsKey("export") && !options.containsKey("metric")) {
+                throw new IllegalArgumentException("--export needs --metric");
+            }
+            format = ResultFormat.of(options.getOrDefault("format", "csv"));
+            threads = Integer.parseInt(options.getOrDefault("threads",
+                    Integer.toString(Runtime.getRuntime().availableProcessors())));
+            if (threads < 1) {
+                throw new IllegalArgumentException("--threads must be at least 1");
+            }
+            conflictPolicy = ConflictPolicy.of(options.getOrDefault("conflict", "first"));
+            chartWidth = sizeOption(options, "width", DEFAULT_CHART_WIDTH);
+            chartHeight = sizeOption(options, "height", DEFAULT_CHART_HEIGHT);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        try {
+            long loadStart = System.nanoTime();
+            DataIndex index = new DataIndex();
+            index.addAll(load(options.get("input"), conflictPolicy, threads, err));
+            err.printf("Loaded %,d rows in %.2f s%n", index.size(), (System.nanoTime() - loadStart) / 1e9);
+            if (options.containsKey("serve")) {
+                return serve(index, options.getOrDefault("host", DEFAULT_HOST), options.get("serve"), err);
+            }
+
+            if (options.containsKey("export")) {
+                return export(index, options, err);
+            }
+            if (options.containsKey("charts")) {
+                return charts(index, options, chartWidth, chartHeight, threads, err);
+            }
+
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), OUTPUT_BUFFER_CHARS);
+            long queryStart = System.nanoTime();
+            int count;
+            if (options.containsKey("queries")) {
+                try (BufferedReader reader = Files.newBufferedReader(Paths.get(options.get("queries")), StandardCharsets.UTF_8)) {
+                    count = runQueries(index, readQueries(reader), format, threads, writer);
+                }
+            } else {
+                BatchQuery query = new BatchQuery(options.get("metric"),
+                        BatchQuery.parseCountries(options.get("countries")),
+                        BatchQuery.parseYear(options.get("from"), Integer.MIN_VALUE),
+                        BatchQuery.parseYear(options.get("to"), Integer.MAX_VALUE));
+                count = runQueries(index, Collections.singletonList(query).iterator(), format, threads, writer);
+            }
+            writer.flush();
+            double seconds = (System.nanoTime() - queryStart) / 1e9;
+            err.printf("Ran %,d queries in %.3f s on %d threads (%,.0f queries/s)%n",
+                    count, seconds, threads, count / Math.max(seconds, 1e-9));
+            return 0;
+        } catch (IOException | UncheckedIOException e) {
+            err.println("Batch failed: " + e.getMessage());
+            return 1;
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return 2;
+        }
+    }
+
+    // Writes the rows of the --metric query to the --export file.
+    private static int export(DataIndex index, Map<String, String> options, PrintStream err) throws IOException {
+        BatchQuery query = new BatchQuery(options.get("metric"), BatchQuery.parseCountries(options.get("countries")),
+                BatchQuery.parseYear(options.get("from"), Integer.MIN_VALUE),
+                BatchQuery.parseYear(options.get("to"), Integer.MAX_VALUE));
+        int fromYear = Math.max(query.fromYear(), index.getFirstYear());
+        int toYear = Math.min(query.toYear(), index.getLastYear());
+        if (toYear < fromYear) {
+            throw new IllegalArgumentException("No years to export between --from and --to");
+        }
+        Path file = Paths.get(options.get("export"));
+        long start = System.nanoTime();
+        // Without --countries every country is exported
+        List<String> countries = options.containsKey("countries") ? query.countries() : index.getCountryNames();
+        List<CountryData> rows = MetricQuery.select(index, query.metric(), countries);
+        long bytes = new RowExporter(ExportFormat.forFile(file), fromYear, toYear).export(rows, file, written -> {
+        });
+        err.printf("Exported %,d rows (%,d bytes) to %s in %.2f s%n", rows.size(), bytes, file,
+                (System.nanoTime() - start) / 1e9);
+        return 0;
+    }
+
+    // Draws the charts of the selected countries and metrics into the --charts directory.
+    private static int charts(DataIndex index, Map<String, String> options, int width, int height, int threads,
+                              PrintStream err) throws IOException {
+        List<String> metrics = options.containsKey("metric") ? List.of(options.get("metric")) : index.getSeriesNames();
+        List<String> countries = options.containsKey("countries")
+                ? BatchQuery.parseCountries(options.get("countries")) : index.getCountryNames();
+        Path directory = Paths.get(options.get("charts"));
+        long start = System.nanoTime();
+        int written;
+        try (ChartRenderer renderer = new ChartRenderer(threads)) {
+            written = renderer.renderBatch(index, countries, metrics, directory, width, height, done -> {
+            });
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        err.printf("Wrote %,d charts (%dx%d) to %s in %.2f s on %d threads (%,.1f charts/s)%n", written, width, height,
+                directory, seconds, threads, written / Math.max(seconds, 1e-9));
+        return 0;
+    }
+
+    // A chart side in pixels, from 1 to ChartRenderer.MAX_SIZE.
+    private static int sizeOption(Map<String, String> options, String name, int missing) {
+        String value = options.get(name);
+        if (value == null) {
+            return missing;
+        }
+        try {
+            int size = Integer.parseInt(value.trim());
+            if (size >= 1 && size <= ChartRenderer.MAX_SIZE) {
+                return size;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid --" + name + ": " + value + " (1 to " + ChartRenderer.MAX_SIZE + ")");
+    }
+
+    // Reads one file on all cores, or parses and merges the files of a directory or glob, one file per thread.
+    private static List<CountryData> load(String source, ConflictPolicy policy, int threads, PrintStream err)
+            throws IOException {
+        if (!MultiSourceLoader.isMultiSource(source)) {
+            return new ParallelCSVReader(source).parse();
+        }
+        List<Path> files = MultiSourceLoader.resolve(source);
+        if (files.isEmpty()) {
+            throw new IOException("No CSV files match " + source);
+        }
+        MultiSourceLoader.Result result = new MultiSourceLoader(files, policy, threads).load(err::println);
+        err.printf("Merged %,d files into %,d rows, %,d conflicting cells%n",
+                files.size(), result.rows().size(), result.conflicts());
+        return result.rows();
+    }
+
+    // Serves the data over HTTP until the process is stopped.
+    private static int serve(DataIndex index, String host, String port, PrintStream err) throws IOException {
+        QueryServer server;
+        try {
+            server = new QueryServer(index, new InetSocketAddress(host, Integer.parseInt(port)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid port: " + port, e);
+        }
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+        err.printf("Serving on http://%s:%d/%n", host, server.getPort());
+        try {
+            new CountDownLatch(1).await(); // Until the process is stopped
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 0;
+    }
+
+    // Reads "--name value" and "--name=value" pairs.
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            String name;
+            String value;
+            int equals = arg.indexOf('=');
+            if (equals >= 0) {
+                name = arg.substring(2, equals);
+                value = arg.substring(equals + 1);
+            } else {
+                name = arg.substring(2);
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                }
+                value = args[++i];
+            }
+            if (!OPTIONS.contains(name)) {
+                throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+            options.put(name, value);
+        }
+        return options;
+    }
+
+    // Reads queries lazily, skipping blank and comment lines.
+    private static Iterator<BatchQuery> readQueries(BufferedReader reader) {
+        return reader.lines()
+                .filter(line -> !line.isBlank() && !line.startsWith("#"))
+                .map(BatchQuery::parse)
+                .iterator();
+    }
+
+    /**
+     * Runs the queries on a pool of threads and writes their results in query order.
+     * At most a few results per thread are kept waiting for earlier ones.
+     *
+     * @return the number of queries run
+     */
+    private static int runQueries(DataIndex index, Iterator<BatchQuery> queries, ResultFormat format,
+                                  int threads, Writer writer) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "query-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            writer.write(format.header());
+            Deque<Future<String>> pending = new ArrayDeque<>();
+            int window = threads * QUERIES_AHEAD_PER_THREAD;
+            int count = 0;
+            while (queries.hasNext()) {
+                BatchQuery query = queries.next();
+                int number = ++count;
+                pending.addLast(pool.submit(() -> answer(index, number, query, format)));
+                if (pending.size() >= window) {
+                    writer.write(await(pending.removeFirst()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                writer.write(await(pending.removeFirst()));
+            }
+            return count;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Runs one query and renders its result.
+    private static String answer(DataIndex index, int number, BatchQuery query, ResultFormat format) {
+        List<CountryData> rows = MetricQuery.select(index, query.metric(), query.countries());
+        ValueSummary stats = MetricQuery.summarize(rows, query.metric(), query.fromYear(), query.toYear());
+        StringBuilder out = new StringBuilder();
+        format.format(out, number, query, rows, MetricQuery.statsMetric(query.metric()), stats);
+        return out.toString();
+    }
+
+    private static String await(Future<String> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package main.java.cli;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One query of a batch run: a metric, the countries to select and an inclusive
+ * range of years for the statistics.
+ *
+ * @param metric    series name, or "All Series"
+ * @param countries country names
+ * @param fromYear  first year, or Integer.MIN_VALUE for no lower bound
+ * @param toYear    last year, or Integer.MAX_VALUE for no upper bound
+ */
+public record BatchQuery(String metric, List<String> countries, int fromYear, int toYear) {
+    // Separates country names, which may themselves contain commas
+    static final String COUNTRY_SEPARATOR = ";";
+
+    /**
+     * Reads a query file line: metric, countries, first year and last year,
+     * separated by tabs. The years may be left out or empty.
+     *
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    public static BatchQuery parse(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length < 2 || fields.length > 4 || fields[0].isBlank()) {
+            throw new IllegalArgumentException("Expected metric, countries and optional years separated by tabs: " + line);
+        }
+        return new BatchQuery(fields[0].trim(), parseCountries(fields[1]),
+                parseYear(fields.length > 2 ? fields[2] : null, Integer.MIN_VALUE),
+                parseYear(fields.length > 3 ? fields[3] : null, Integer.MAX_VALUE));
+    }
+
+    // Splits a list of country names separated by semicolons.
+    static List<String> parseCountries(String text) {
+        if (text == null || text.isBlank()) {
+            return Collections.emptyList();
+        }
+        List<String> countries = new ArrayList<>();
+        for (String country : text.split(COUNTRY_SEPARATOR)) {
+            if (!country.isBlank()) {
+                countries.add(country.trim());
+            }
+        }
+        return countries;
+    }
+
+    // Parses a year, or returns the default for a missing one.
+    static int parseYear(String text, int missing) {
+        if (text == null || text.isBlank()) {
+            return missing;
+        }
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid year: " + text, e);
+        }
+    }
+
+    // True if the query has a lower or upper year bound.
+    public boolean hasYearRange() {
+        return fromYear != Integer.MIN_VALUE || toYear != Integer.MAX_VALUE;
+    }
+}
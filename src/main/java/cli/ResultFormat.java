@@ -0,0 +1,130 @@
+package main.java.cli;
+
+import main.java.data.JsonWriter;
+import main.java.model.CountryData;
+import main.java.model.ValueSummary;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * ResultFormat renders the result of a {@link BatchQuery} as text.
+ * <p>
+ * CSV gives one line per selected row with the statistics of its values in the
+ * year range, and one line without a country holding the statistics of the query,
+ * as the stats panel computes them. JSON gives one object per query on one line,
+ * with the rows, their values in the year range and the same statistics.
+ */
+public enum ResultFormat {
+    CSV {
+        @Override
+        public String header() {
+            return "query,country_name,country_code,series_name,series_code,"
+                    + "count,mean,min,max,std_dev,first_year,last_year\n";
+        }
+
+        @Override
+        public void format(StringBuilder out, int number, BatchQuery query, List<CountryData> rows,
+                           String statsMetric, ValueSummary stats) {
+            for (CountryData data : rows) {
+                out.append(number).append(',');
+                csvField(out, data.getCountryName()).append(',');
+                csvField(out, data.getCountryCode()).append(',');
+                csvField(out, data.getSeriesName()).append(',');
+                csvField(out, data.getSeriesCode()).append(',');
+                csvSummary(out, ValueSummary.of(data, query.fromYear(), query.toYear()));
+            }
+            out.append(number).append(",,,");
+            csvField(out, statsMetric).append(",,");
+            csvSummary(out, stats);
+        }
+    },
+
+    JSON {
+        @Override
+        public String header() {
+            return "";
+        }
+
+        @Override
+        public void format(StringBuilder out, int number, BatchQuery query, List<CountryData> rows,
+                           String statsMetric, ValueSummary stats) {
+            JsonWriter json = new JsonWriter(out);
+            json.beginObject().name("query").value(number).name("metric").value(query.metric());
+            json.name("countries").beginArray();
+            for (String country : query.countries()) {
+                json.value(country);
+            }
+            json.endArray();
+            if (query.fromYear() == Integer.MIN_VALUE) {
+                json.name("from").nullValue();
+            } else {
+                json.name("from").value(query.fromYear());
+            }
+            if (query.toYear() == Integer.MAX_VALUE) {
+                json.name("to").nullValue();
+            } else {
+                json.name("to").value(query.toYear());
+            }
+            json.name("rows").beginArray();
+            for (CountryData data : rows) {
+                json.row(data, query.fromYear(), query.toYear());
+            }
+            json.endArray().name("stats").summary(statsMetric, stats).endObject();
+            out.append('\n');
+        }
+    };
+
+    // Text written once before the first result.
+    public abstract String header();
+
+    /**
+     * Appends the result of one query.
+     *
+     * @param number      position of the query in the batch, starting at 1
+     * @param rows        selected rows
+     * @param statsMetric metric the statistics were computed for
+     * @param stats       statistics of the selection in the year range
+     */
+    public abstract void format(StringBuilder out, int number, BatchQuery query, List<CountryData> rows,
+                                String statsMetric, ValueSummary stats);
+
+    // Parses a format name, ignoring case.
+    public static ResultFormat of(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown format: " + name + " (expected csv or json)", e);
+        }
+    }
+
+    private static void csvSummary(StringBuilder out, ValueSummary summary) {
+        out.append(summary.getCount()).append(',');
+        csvNumber(out, summary.getMean()).append(',');
+        csvNumber(out, summary.getMin()).append(',');
+        csvNumber(out, summary.getMax()).append(',');
+        csvNumber(out, summary.getStandardDeviation()).append(',');
+        if (summary.getCount() > 0) {
+            out.append(summary.getFirstYear()).append(',').append(summary.getLastYear());
+        } else {
+            out.append(',');
+        }
+        out.append('\n');
+    }
+
+    // Appends a field, quoted if it holds a separator, quote or line break.
+    private static StringBuilder csvField(StringBuilder out, String value) {
+        if (value == null) {
+            return out;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return out.append(value);
+        }
+        return out.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    // Appends a number, or nothing if it is undefined.
+    private static StringBuilder csvNumber(StringBuilder out, double value) {
+        return Double.isNaN(value) ? out : out.append(value);
+    }
+}
@@ -0,0 +1,42 @@
+package main.java.data;
+
+import java.util.Locale;
+
+/**
+ * How {@link GroupAggregator} combines the values of a group's countries in one year.
+ */
+public enum Aggregate {
+    // Total of the values
+    SUM("Sum"),
+    // Plain average of the values
+    MEAN("Mean"),
+    // Average weighted by each country's value of the weight series, population by default
+    WEIGHTED_MEAN("Weighted mean"),
+    // Middle value; the average of the two middle values for an even count
+    MEDIAN("Median");
+
+    private final String label;
+
+    Aggregate(String label) {
+        this.label = label;
+    }
+
+    // Label shown after the series name of a rollup.
+    public String getLabel() {
+        return label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+
+    // Parses an aggregate name, ignoring case; "weighted-mean" and "weighted_mean" are the same.
+    public static Aggregate of(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown aggregate: " + name + " (use sum, mean, weighted-mean or median)");
+        }
+    }
+}
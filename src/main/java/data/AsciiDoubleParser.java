@@ -0,0 +1,135 @@
+package main.java.data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses decimal numbers straight from a byte buffer without building a String.
+ * <p>
+ * Values with at most 15 significant digits and a small decimal exponent are
+ * converted exactly with a single multiply or divide by a power of ten. Anything
+ * else falls back to {@link Double#parseDouble(String)} so results always match
+ * the JDK parser.
+ */
+final class AsciiDoubleParser {
+    // Exactly representable powers of ten.
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int MAX_FAST_DIGITS = 15;
+
+    private AsciiDoubleParser() {
+    }
+
+    /**
+     * Parses the bytes in [start, end) as a double.
+     *
+     * @throws NumberFormatException if the bytes are not a valid number
+     */
+    static double parse(ByteBuffer buf, int start, int end) {
+        // Trim surrounding whitespace the same way Double.parseDouble does
+        while (start < end && buf.get(start) <= ' ') {
+            start++;
+        }
+        while (end > start && buf.get(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            throw new NumberFormatException("empty String");
+        }
+
+        int pos = start;
+        boolean negative = false;
+        byte b = buf.get(pos);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;      // Significant digits accumulated into mantissa
+        int exponent = 0;    // Decimal exponent applied to mantissa
+        boolean sawDigit = false;
+
+        while (pos < end && (b = buf.get(pos)) >= '0' && b <= '9') {
+            sawDigit = true;
+            if (digits > 0 || b != '0') {
+                if (digits < 19) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                } else {
+                    return slowParse(buf, start, end);
+                }
+            }
+            pos++;
+        }
+        if (pos < end && buf.get(pos) == '.') {
+            pos++;
+            while (pos < end && (b = buf.get(pos)) >= '0' && b <= '9') {
+                sawDigit = true;
+                if (digits > 0 || b != '0') {
+                    if (digits < 19) {
+                        mantissa = mantissa * 10 + (b - '0');
+                        digits++;
+                    } else {
+                        return slowParse(buf, start, end);
+                    }
+                }
+                exponent--;
+                pos++;
+            }
+        }
+        if (!sawDigit) {
+            return slowParse(buf, start, end);
+        }
+        if (pos < end && ((b = buf.get(pos)) == 'e' || b == 'E')) {
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < end && ((b = buf.get(pos)) == '-' || b == '+')) {
+                negativeExponent = b == '-';
+                pos++;
+            }
+            int explicit = 0;
+            int exponentDigits = 0;
+            while (pos < end && (b = buf.get(pos)) >= '0' && b <= '9') {
+                if (explicit < 100_000) {
+                    explicit = explicit * 10 + (b - '0');
+                }
+                exponentDigits++;
+                pos++;
+            }
+            if (exponentDigits == 0) {
+                return slowParse(buf, start, end);
+            }
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+        if (pos != end) {
+            // Trailing characters such as 'd', 'f', hex floats or garbage
+            return slowParse(buf, start, end);
+        }
+
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (digits > MAX_FAST_DIGITS || exponent < -22 || exponent > 22) {
+            return slowParse(buf, start, end);
+        }
+        double value = exponent >= 0
+                ? (double) mantissa * POWERS_OF_TEN[exponent]
+                : (double) mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    // Fallback for inputs outside the exact fast path.
+    private static double slowParse(ByteBuffer buf, int start, int end) {
+        return Double.parseDouble(decode(buf, start, end));
+    }
+
+    // Decodes the bytes in [start, end) as an ASCII/UTF-8 String.
+    static String decode(ByteBuffer buf, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buf.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,10 +1,7 @@
 package main.java.data;
 
-import com.opencsv.CSVReaderHeaderAware;
-import com.opencsv.exceptions.CsvValidationException;
 import main.java.model.CountryData;
 
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
 import java.util.logging.Level;
@@ -12,6 +9,8 @@ import java.util.logging.Logger;
 
 /**
  * CSVReader handles the ingestion and parsing of GDP data from a CSV file.
+ * Parsing is delegated to {@link MappedCSVReader}, or to {@link ParallelCSVReader}
+ * when the parallel mode is requested.
  */
 public class CSVReader {
     private static final Logger LOGGER = Logger.getLogger(CSVReader.class.getName());
@@ -26,36 +25,23 @@ public class CSVReader {
     public List<CountryData> parse() {
         List<CountryData> dataList = new ArrayList<>();
 
-        try (CSVReaderHeaderAware reader = new CSVReaderHeaderAware(new FileReader(csvFilePath))) {
-            Map<String, String> values;
-            while ((values = reader.readMap()) != null) {
-                String countryName = values.get("Country Name");
-                String countryCode = values.get("Country Code");
-                String seriesName = values.get("Series Name");
-                String seriesCode = values.get("Series Code");
-
-                CountryData countryData = new CountryData(countryName, countryCode, seriesName, seriesCode);
-
-                // Iterate through years 1990 to 2016
-                for (int year = 1990; year <= 2016; year++) {
-                    String key = year + " [YR" + year + "]";
-                    String valueStr = values.get(key);
-                    Double value = null;
+        try {
+            new MappedCSVReader(csvFilePath).parse(dataList::add);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Error reading CSV file: {0}", e.getMessage());
+        }
 
-                    if (valueStr != null && !valueStr.equals("..")) {
-                        try {
-                            value = Double.parseDouble(valueStr);
-                        } catch (NumberFormatException e) {
-                            LOGGER.log(Level.WARNING, "Invalid number format for year {0} in country {1}: {2}", new Object[]{year, countryName, valueStr});
-                        }
-                    }
+        return dataList;
+    }
 
-                    countryData.addYearlyData(year, value);
-                }
+    // Parses the CSV file on all cores; returns the same rows, in the same order, as parse().
+    public List<CountryData> parseParallel() {
+        List<CountryData> dataList = new ArrayList<>();
 
-                dataList.add(countryData);
-            }
-        } catch (IOException | CsvValidationException e) {
+        try {
+            new ParallelCSVReader(csvFilePath).parse(dataList::addAll, bytes -> {
+            });
+        } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Error reading CSV file: {0}", e.getMessage());
         }
 
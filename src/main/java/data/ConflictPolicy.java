@@ -0,0 +1,28 @@
+package main.java.data;
+
+import java.util.Locale;
+
+/**
+ * What {@link MultiSourceLoader} does when two files hold a value for the same
+ * (country code, series code, year) cell. Files are merged in the order they are
+ * listed, so "first" and "last" refer to that order, not to parse completion.
+ */
+public enum ConflictPolicy {
+    // Keep the value of the file listed first
+    FIRST,
+    // Take the value of the file listed last
+    LAST,
+    // Average the values of all files that hold the cell
+    MEAN,
+    // Fail the load
+    FAIL;
+
+    // Parses a policy name, ignoring case.
+    public static ConflictPolicy of(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown conflict policy: " + name + " (use first, last, mean or fail)");
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package main.java.data;
+
+import main.java.model.CountryData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * CsvDeltaReader reads a CSV file again after it changed and works out which rows
+ * of a {@link DataIndex} were changed, added or removed, matching rows by country
+ * code and series code.
+ * <p>
+ * Every record's bytes are fingerprinted as they are scanned, and only records
+ * whose fingerprint differs from the previous read are decoded, so the cost beyond
+ * one pass over the bytes grows with the size of the change, not of the file. The
+ * first read has no fingerprints yet; it decodes every record and compares it with
+ * the indexed row, which also picks up changes made since the index was loaded.
+ * <p>
+ * Not thread-safe; one reader serves one file and one index. The delta of each
+ * read must be applied to the index before the next read, then {@link #commit()}
+ * called. A read that is not committed leaves the fingerprints as they were, so
+ * the next read finds the changes of a delta that failed to apply again.
+ */
+public class CsvDeltaReader {
+    private final String csvFilePath;
+    private final DataIndex index;
+    // Fingerprint of each key's record as of the last read
+    private Map<String, Long> fingerprints = new HashMap<>();
+    // Fingerprints of the last read, kept once its delta is applied; null if committed
+    private Map<String, Long> uncommitted;
+
+    public CsvDeltaReader(String csvFilePath, DataIndex index) {
+        this.csvFilePath = csvFilePath;
+        this.index = index;
+    }
+
+    // Reads the file and returns how its rows differ from the index.
+    public RowDelta read() throws IOException {
+        Map<String, Long> seen = new HashMap<>(Math.max(16, fingerprints.size() * 4 / 3 + 1));
+        List<CountryData> candidates = new ArrayList<>();
+        new MappedCSVReader(csvFilePath).parseFiltered((countryCode, seriesCode, fingerprint) -> {
+            String key = DataIndex.rowKey(countryCode, seriesCode);
+            if (seen.putIfAbsent(key, fingerprint) != null) {
+                return false; // Later records with the same key are not indexed either
+            }
+            Long previous = fingerprints.get(key);
+            return previous == null || previous != fingerprint;
+        }, candidates::add);
+
+        List<CountryData> added = new ArrayList<>();
+        // Candidates come in file order, which need not be row order after earlier reloads
+        SortedMap<Integer, CountryData> updated = new TreeMap<>();
+        for (CountryData data : candidates) {
+            int row = index.rowOf(DataIndex.rowKey(data.getCountryCode(), data.getSeriesCode()));
+            if (row < 0) {
+                added.add(data);
+            } else if (!index.get(row).sameContent(data)) {
+                updated.put(row, data);
+            }
+        }
+        int[] removedRows = index.rowsWithoutKey(seen.keySet());
+        uncommitted = seen;
+
+        int[] updatedRows = updated.keySet().stream().mapToInt(Integer::intValue).toArray();
+        return new RowDelta(added, updatedRows, new ArrayList<>(updated.values()), removedRows);
+    }
+
+    // Keeps the fingerprints of the last read; called once its delta has been applied to the index.
+    public void commit() {
+        if (uncommitted != null) {
+            fingerprints = uncommitted;
+            uncommitted = null;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package main.java.data;
+
+import java.util.Arrays;
+
+/**
+ * CsvSchema is the compiled form of a CSV header: the role of every column and the
+ * year range covered by the year columns.
+ * <p>
+ * Year columns are recognised by header, either in the World Bank form
+ * "YYYY [YRYYYY]" or as a bare four-digit year, so exports with any year range are
+ * read in full. Row decoding dispatches on the per-column role in a single pass.
+ */
+public final class CsvSchema {
+    // Column roles; non-negative roles are the year held by the column
+    static final int IGNORED = -1;
+    static final int COUNTRY_NAME = -2;
+    static final int COUNTRY_CODE = -3;
+    static final int SERIES_NAME = -4;
+    static final int SERIES_CODE = -5;
+
+    private final int[] columnRoles;
+    private final int[] years;
+    private final int firstYear;
+    private final int lastYear;
+
+    private CsvSchema(int[] columnRoles) {
+        this.columnRoles = columnRoles;
+        this.years = Arrays.stream(columnRoles).filter(role -> role >= 0).sorted().distinct().toArray();
+        this.firstYear = years.length > 0 ? years[0] : Integer.MAX_VALUE;
+        this.lastYear = years.length > 0 ? years[years.length - 1] : Integer.MIN_VALUE;
+    }
+
+    // Compiles the header fields into a schema.
+    public static CsvSchema compile(String[] headers) {
+        int[] roles = new int[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            String name = headers[i] == null ? "" : headers[i].trim();
+            roles[i] = switch (name) {
+                case "Country Name" -> COUNTRY_NAME;
+                case "Country Code" -> COUNTRY_CODE;
+                case "Series Name" -> SERIES_NAME;
+                case "Series Code" -> SERIES_CODE;
+                default -> parseYear(name);
+            };
+        }
+        return new CsvSchema(roles);
+    }
+
+    /**
+     * Returns the year of a "YYYY [YRYYYY]" or "YYYY" header.
+     *
+     * @return the year, or {@link #IGNORED} if the header is not a year column
+     */
+    static int parseYear(String header) {
+        if (header.length() < 4) {
+            return IGNORED;
+        }
+        int year = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = header.charAt(i);
+            if (c < '0' || c > '9') {
+                return IGNORED;
+            }
+            year = year * 10 + (c - '0');
+        }
+        if (header.length() == 4) {
+            return year;
+        }
+        String suffix = header.substring(4).trim();
+        return suffix.equals("[YR" + header.substring(0, 4) + "]") ? year : IGNORED;
+    }
+
+    // Role of the given column; columns beyond the header are ignored.
+    int role(int column) {
+        return column < columnRoles.length ? columnRoles[column] : IGNORED;
+    }
+
+    // First column with the given role, or -1 if the header has none.
+    int columnOf(int role) {
+        for (int i = 0; i < columnRoles.length; i++) {
+            if (columnRoles[i] == role) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Number of columns in the header.
+    public int getColumnCount() {
+        return columnRoles.length;
+    }
+
+    // Distinct years covered by year columns, ascending.
+    public int[] getYears() {
+        return years.clone();
+    }
+
+    // Earliest year column, or Integer.MAX_VALUE if there are none.
+    public int getFirstYear() {
+        return firstYear;
+    }
+
+    // Latest year column, or Integer.MIN_VALUE if there are none.
+    public int getLastYear() {
+        return lastYear;
+    }
+}
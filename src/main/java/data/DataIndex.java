@@ -0,0 +1,554 @@
+package main.java.data;
+
+import main.java.model.CountryData;
+import main.java.model.NameDictionary;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * DataIndex holds the loaded rows together with inverted indexes from series
+ * and country to the set of row numbers carrying them. The indexes are arrays
+ * indexed by {@link NameDictionary} id; a name selects the rows of every id with it.
+ * <p>
+ * The indexes are maintained as rows are appended, so a filter becomes the
+ * intersection of the selected countries' row bitsets with the series bitset, each
+ * side skipping ahead to the other's next row. Results
+ * are returned as read-only views over the row store instead of copied lists.
+ * A {@link SummaryCube} over the same rows is kept up to date alongside.
+ * <p>
+ * A {@link RowDelta} from a reload is applied in place: changed rows keep their
+ * row number, and removed rows stay in the store as tombstones that no selection
+ * returns, so row numbers held by views and the table stay valid. The summary cube
+ * is adjusted value by value and rescans a (series, year) cell only when it lost
+ * its minimum or maximum.
+ * <p>
+ * Rows are appended from a single thread. Every other method may be called from
+ * any thread: reads take the read lock, and lists returned are immutable snapshots,
+ * except for the live {@link #rowStore()}.
+ */
+public class DataIndex {
+    // Above this many countries, a series is selected by walking its rows instead of each country's
+    private static final int SCAN_SERIES_COUNTRIES = 64;
+
+    private final List<CountryData> rows = new ArrayList<>();
+    // Dictionary id -> rows carrying it; null for ids no row has used
+    private BitSet[] seriesRows = new BitSet[0];
+    private BitSet[] countryRows = new BitSet[0];
+    private final SummaryCube summaryCube = new SummaryCube();
+    private int firstYear = Integer.MAX_VALUE;
+    private int lastYear = Integer.MIN_VALUE;
+    // Guards rows and the bitsets against background selects during appends
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Incremented by every change to the rows
+    private volatile long version;
+
+    // Distinct names in the order they were first seen
+    private final List<String> seriesNames = new ArrayList<>();
+    private final List<String> countryNames = new ArrayList<>();
+
+    // Row number of the first row with each key; removed rows have none
+    private final Map<String, Integer> rowsByKey = new HashMap<>();
+    private final BitSet removedRows = new BitSet();
+    private final List<CountryData> storeView = new StoreView();
+
+    // Appends rows and indexes them.
+    public void addAll(Collection<CountryData> newRows) {
+        lock.writeLock().lock();
+        try {
+            for (CountryData data : newRows) {
+                append(data);
+            }
+            if (!newRows.isEmpty()) {
+                version++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(CountryData data) {
+        int row = rows.size();
+        rows.add(data);
+        index(row, data);
+        rowsByKey.putIfAbsent(rowKey(data.getCountryCode(), data.getSeriesCode()), row);
+        summaryCube.add(data);
+    }
+
+    // Adds a row to the name indexes and the year range.
+    private void index(int row, CountryData data) {
+        seriesRows = bitsFor(seriesRows, seriesNames, NameDictionary.SERIES, data.getSeriesId());
+        seriesRows[data.getSeriesId()].set(row);
+        countryRows = bitsFor(countryRows, countryNames, NameDictionary.COUNTRIES, data.getCountryId());
+        countryRows[data.getCountryId()].set(row);
+        if (data.lastYear() != Integer.MIN_VALUE) {
+            firstYear = Math.min(firstYear, data.firstYear());
+            lastYear = Math.max(lastYear, data.lastYear());
+        }
+    }
+
+    // Removes a row from the name indexes; names stay known even once they have no rows.
+    private void unindex(int row, CountryData data) {
+        seriesRows[data.getSeriesId()].clear(row);
+        countryRows[data.getCountryId()].clear(row);
+    }
+
+    /**
+     * Applies a reload: changed rows are replaced in place, removed rows become
+     * tombstones and added rows are appended. The (series, year) summaries take the
+     * old values out and the new ones in; only years of a series whose minimum or
+     * maximum was taken out are rescanned from that series' rows.
+     */
+    public void apply(RowDelta delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            // Years per series id whose summaries lost their minimum or maximum; every
+            // id of a stored row is below seriesRows.length
+            List<Set<Integer>> staleYears = new ArrayList<>(Collections.nCopies(seriesRows.length, null));
+            int[] updatedRows = delta.updatedRows();
+            for (int i = 0; i < updatedRows.length; i++) {
+                int row = updatedRows[i];
+                CountryData previous = rows.get(row);
+                CountryData data = delta.updated().get(i);
+                unindex(row, previous);
+                summaryCube.remove(previous, staleYearsOf(staleYears, previous.getSeriesId()));
+                rows.set(row, data);
+                index(row, data);
+                summaryCube.add(data);
+            }
+            for (int row : delta.removedRows()) {
+                CountryData previous = rows.get(row);
+                unindex(row, previous);
+                summaryCube.remove(previous, staleYearsOf(staleYears, previous.getSeriesId()));
+                removedRows.set(row);
+                rowsByKey.remove(rowKey(previous.getCountryCode(), previous.getSeriesCode()), row);
+            }
+            for (CountryData data : delta.added()) {
+                append(data);
+            }
+            for (int seriesId = 0; seriesId < staleYears.size(); seriesId++) {
+                Set<Integer> years = staleYears.get(seriesId);
+                if (years != null && !years.isEmpty()) {
+                    summaryCube.rebuildYears(seriesId, years, view(seriesRows[seriesId]));
+                }
+            }
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Stale years of a series id, created on first use.
+    private static Set<Integer> staleYearsOf(List<Set<Integer>> staleYears, int seriesId) {
+        Set<Integer> years = staleYears.get(seriesId);
+        if (years == null) {
+            years = new HashSet<>();
+            staleYears.set(seriesId, years);
+        }
+        return years;
+    }
+
+    // Rows of a row number set, in row order; the caller holds the lock.
+    private List<CountryData> view(BitSet bits) {
+        List<CountryData> picked = new ArrayList<>(bits.cardinality());
+        for (int row = bits.nextSetBit(0); row >= 0; row = bits.nextSetBit(row + 1)) {
+            picked.add(rows.get(row));
+        }
+        return picked;
+    }
+
+    // Key identifying a row across reloads of its source.
+    public static String rowKey(String countryCode, String seriesCode) {
+        return countryCode + '\u001F' + seriesCode;
+    }
+
+    // Row number of the row with the key, or -1 if there is none.
+    public int rowOf(String key) {
+        lock.readLock().lock();
+        try {
+            Integer row = rowsByKey.get(key);
+            return row != null ? row : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns the row with the given row number; removed rows are still returned.
+    public CountryData get(int row) {
+        lock.readLock().lock();
+        try {
+            return rows.get(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns true if the row was removed by a reload.
+    public boolean isRemoved(int row) {
+        lock.readLock().lock();
+        try {
+            return removedRows.get(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Row numbers, ascending, of the rows whose key is not among the given keys.
+    public int[] rowsWithoutKey(Set<String> keys) {
+        lock.readLock().lock();
+        try {
+            int[] missing = new int[16];
+            int count = 0;
+            for (Map.Entry<String, Integer> entry : rowsByKey.entrySet()) {
+                if (!keys.contains(entry.getKey())) {
+                    if (count == missing.length) {
+                        missing = Arrays.copyOf(missing, count * 2);
+                    }
+                    missing[count++] = entry.getValue();
+                }
+            }
+            Arrays.sort(missing, 0, count);
+            return Arrays.copyOf(missing, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Makes sure the index has a bitset for the id, growing it if needed, and
+     * records the id's name the first time any id with that name is used.
+     *
+     * @return the index, or its grown copy
+     */
+    private static BitSet[] bitsFor(BitSet[] index, List<String> names, NameDictionary dictionary, int id) {
+        if (id < index.length && index[id] != null) {
+            return index;
+        }
+        if (id >= index.length) {
+            index = Arrays.copyOf(index, Math.max(id + 1, index.length * 2));
+        }
+        String name = dictionary.name(id);
+        if (!hasRows(index, dictionary, name)) {
+            names.add(name);
+        }
+        index[id] = new BitSet();
+        return index;
+    }
+
+    // True if the index has a bitset for any id with the name.
+    private static boolean hasRows(BitSet[] index, NameDictionary dictionary, String name) {
+        for (int id : dictionary.idsNamed(name)) {
+            if (id < index.length && index[id] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Rows of every id with the name; null if no row has used one. The caller holds the lock.
+    private static BitSet rowsOf(BitSet[] index, NameDictionary dictionary, String name) {
+        BitSet rows = null;
+        boolean shared = true;
+        for (int id : dictionary.idsNamed(name)) {
+            BitSet bits = id < index.length ? index[id] : null;
+            if (bits == null) {
+                continue;
+            }
+            if (rows == null) {
+                rows = bits; // Most names have a single id; use its bitset as is
+            } else {
+                if (shared) {
+                    rows = (BitSet) rows.clone();
+                    shared = false;
+                }
+                rows.or(bits);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the number of changes to the rows so far. A result computed from the
+     * rows stays valid for as long as the version it was computed at is current.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    // Returns a snapshot of all rows in load order, including rows removed by a reload.
+    public List<CountryData> getRows() {
+        lock.readLock().lock();
+        try {
+            return List.copyOf(rows);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a live read-only view of all rows by row number, for the table: it grows
+     * as rows are appended, and each call reads under the lock.
+     */
+    public List<CountryData> rowStore() {
+        return storeView;
+    }
+
+    // Returns the pre-aggregated summaries of the indexed rows.
+    public SummaryCube getSummaryCube() {
+        return summaryCube;
+    }
+
+    // Earliest year covered by any row, or Integer.MAX_VALUE if no row has years.
+    public int getFirstYear() {
+        lock.readLock().lock();
+        try {
+            return firstYear;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Latest year covered by any row, or Integer.MIN_VALUE if no row has years.
+    public int getLastYear() {
+        lock.readLock().lock();
+        try {
+            return lastYear;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns the number of indexed rows.
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rows.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns a snapshot of the distinct series names in the order they were first seen.
+    public List<String> getSeriesNames() {
+        lock.readLock().lock();
+        try {
+            return List.copyOf(seriesNames);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns a snapshot of the distinct country names in the order they were first seen.
+    public List<String> getCountryNames() {
+        lock.readLock().lock();
+        try {
+            return List.copyOf(countryNames);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns the country code first seen with the country name, or null.
+    public String getCountryCode(String countryName) {
+        lock.readLock().lock();
+        try {
+            for (int id : NameDictionary.COUNTRIES.idsNamed(countryName)) {
+                if (id < countryRows.length && countryRows[id] != null) {
+                    return NameDictionary.COUNTRIES.code(id);
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns true if any row carries the given series name.
+    public boolean containsSeries(String seriesName) {
+        lock.readLock().lock();
+        try {
+            return hasRows(seriesRows, NameDictionary.SERIES, seriesName);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns true if any row carries the given country name.
+    public boolean containsCountry(String countryName) {
+        lock.readLock().lock();
+        try {
+            return hasRows(countryRows, NameDictionary.COUNTRIES, countryName);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Selects the rows for the given series and countries, in load order.
+     *
+     * @param seriesName series to keep, or null to keep every series
+     * @param countries  countries to keep; an empty collection selects nothing
+     * @return a read-only view of the matching rows
+     */
+    public List<CountryData> select(String seriesName, Collection<String> countries) {
+        return view(selectRows(seriesName, countries));
+    }
+
+    /**
+     * Selects the row numbers for the given series and countries.
+     *
+     * @param seriesName series to keep, or null to keep every series
+     * @param countries  countries to keep; an empty collection selects nothing
+     * @return the matching row numbers in ascending order
+     */
+    public int[] selectRows(String seriesName, Collection<String> countries) {
+        return selectRows(seriesName, countries, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Selects the row numbers for the given series and countries among the rows
+     * below {@code rowLimit}, so a caller can tell which later rows it has not seen.
+     *
+     * @return the matching row numbers in ascending order
+     */
+    public int[] selectRows(String seriesName, Collection<String> countries, int rowLimit) {
+        lock.readLock().lock();
+        try {
+            BitSet series = null;
+            if (seriesName != null) {
+                series = rowsOf(seriesRows, NameDictionary.SERIES, seriesName);
+                if (series == null) {
+                    return new int[0];
+                }
+            }
+
+            if (series != null && countries.size() > SCAN_SERIES_COUNTRIES) {
+                return selectFromSeries(series, countries, rowLimit);
+            }
+
+            int[] selected = new int[16];
+            int count = 0;
+            int matchedCountries = 0;
+            for (String country : countries) {
+                BitSet bits = rowsOf(countryRows, NameDictionary.COUNTRIES, country);
+                if (bits == null) {
+                    continue;
+                }
+                matchedCountries++;
+                // Leapfrog intersection: each side skips ahead to the other's next row,
+                // so rows of the country outside the series are jumped over, not tested
+                int row = bits.nextSetBit(0);
+                while (row >= 0 && row < rowLimit) {
+                    int next = series == null ? row : series.nextSetBit(row);
+                    if (next < 0 || next >= rowLimit) {
+                        break;
+                    }
+                    if (next == row) {
+                        if (count == selected.length) {
+                            selected = Arrays.copyOf(selected, count * 2);
+                        }
+                        selected[count++] = row;
+                        row = bits.nextSetBit(row + 1);
+                    } else {
+                        row = bits.nextSetBit(next);
+                    }
+                }
+            }
+            if (matchedCountries > 1) {
+                Arrays.sort(selected, 0, count); // Restore load order across countries
+            }
+            return Arrays.copyOf(selected, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Selects by walking the series' rows and testing each row's country id, which
+     * beats walking every country's rows once many countries are selected. The rows
+     * come out in load order without sorting. The caller holds the lock.
+     */
+    private int[] selectFromSeries(BitSet series, Collection<String> countries, int rowLimit) {
+        BitSet countryIds = new BitSet();
+        for (String country : countries) {
+            for (int id : NameDictionary.COUNTRIES.idsNamed(country)) {
+                countryIds.set(id);
+            }
+        }
+        int[] selected = new int[16];
+        int count = 0;
+        for (int row = series.nextSetBit(0); row >= 0 && row < rowLimit; row = series.nextSetBit(row + 1)) {
+            if (countryIds.get(rows.get(row).getCountryId())) {
+                if (count == selected.length) {
+                    selected = Arrays.copyOf(selected, count * 2);
+                }
+                selected[count++] = row;
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    // Returns a read-only list of the rows with the given row numbers, in that order.
+    public List<CountryData> view(int[] rowNumbers) {
+        CountryData[] picked = new CountryData[rowNumbers.length];
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < rowNumbers.length; i++) {
+                picked[i] = rows.get(rowNumbers[i]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new RowView(picked);
+    }
+
+    // Live read-only list of the row store, read under the lock.
+    private final class StoreView extends AbstractList<CountryData> implements RandomAccess {
+        @Override
+        public CountryData get(int index) {
+            return DataIndex.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return DataIndex.this.size();
+        }
+    }
+
+    // Read-only list of rows picked out of the row store by row number.
+    private static final class RowView extends AbstractList<CountryData> implements RandomAccess {
+        private final CountryData[] rows;
+
+        RowView(CountryData[] rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public CountryData get(int index) {
+            if (index < 0 || index >= rows.length) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + rows.length);
+            }
+            return rows[index];
+        }
+
+        @Override
+        public int size() {
+            return rows.length;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package main.java.data;
+
+/**
+ * Downsampler reduces a line series to the points that preserve its visual shape,
+ * using the Largest-Triangle-Three-Buckets algorithm.
+ * <p>
+ * The first and last points are always kept. The points in between are split into
+ * equal buckets, and from each bucket the point forming the largest triangle with
+ * the previously kept point and the average of the next bucket is kept. Peaks and
+ * troughs therefore survive, which plain striding would drop.
+ */
+public final class Downsampler {
+    private Downsampler() {
+    }
+
+    /**
+     * Selects at most {@code threshold} of the first {@code count} points.
+     *
+     * @param x         x values in ascending order
+     * @param y         y values
+     * @param count     number of points
+     * @param threshold maximum number of points to keep; below 3 keeps every point
+     * @param selected  receives the indexes of the kept points in ascending order;
+     *                  must hold {@code min(count, threshold)} entries
+     * @return the number of indexes written to {@code selected}
+     */
+    public static int lttb(double[] x, double[] y, int count, int threshold, int[] selected) {
+        if (threshold < 3 || threshold >= count) {
+            for (int i = 0; i < count; i++) {
+                selected[i] = i;
+            }
+            return count;
+        }
+
+        double bucketSize = (double) (count - 2) / (threshold - 2);
+        int kept = 0;
+        int anchor = 0;
+        selected[kept++] = anchor;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket is the third corner of the triangle
+            int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, count);
+            double avgX = 0;
+            double avgY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += x[i];
+                avgY += y[i];
+            }
+            int nextSize = nextEnd - nextStart;
+            avgX /= nextSize;
+            avgY /= nextSize;
+
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+            double anchorX = x[anchor];
+            double anchorY = y[anchor];
+            double maxArea = -1;
+            int best = start;
+            for (int i = start; i < end; i++) {
+                // Twice the triangle area; the factor does not change the maximum
+                double area = Math.abs((anchorX - avgX) * (y[i] - anchorY) - (anchorX - x[i]) * (avgY - anchorY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    best = i;
+                }
+            }
+            selected[kept++] = best;
+            anchor = best;
+        }
+
+        selected[kept++] = count - 1;
+        return kept;
+    }
+}
@@ -0,0 +1,68 @@
+package main.java.data;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * ExportFormat is a file format rows can be exported to by a {@link RowExporter}.
+ * <p>
+ * CSV has the layout of the World Bank export the application reads, so an export
+ * can be loaded again. NDJSON has one JSON object per row and line, as the query
+ * server writes rows. COLUMNAR is a compact binary file of row groups whose values
+ * are stored year by year; its layout is described on {@link RowExporter}.
+ */
+public enum ExportFormat {
+    CSV("CSV", "csv"),
+    NDJSON("Newline-delimited JSON", "ndjson"),
+    COLUMNAR("Binary columnar", "gdpc");
+
+    private final String label;
+    private final String extension;
+
+    ExportFormat(String label, String extension) {
+        this.label = label;
+        this.extension = extension;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    // File name extension, without the dot.
+    public String getExtension() {
+        return extension;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+
+    // Parses a format name or extension, ignoring case.
+    public static ExportFormat of(String name) {
+        String normalized = name.trim().toLowerCase(Locale.ROOT);
+        for (ExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(normalized) || format.extension.equals(normalized)) {
+                return format;
+            }
+        }
+        if (normalized.equals("jsonl")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Unknown export format: " + name + " (expected csv, ndjson or columnar)");
+    }
+
+    // Format named by the file's extension, or CSV if it has none that is known.
+    public static ExportFormat forFile(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0) {
+            try {
+                return of(name.substring(dot + 1));
+            } catch (IllegalArgumentException e) {
+                // Not a known extension
+            }
+        }
+        return CSV;
+    }
+}
@@ -0,0 +1,88 @@
+package main.java.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * FileWatcher runs an action on a background thread whenever a file is written or
+ * replaced, using a {@link WatchService} on the file's directory.
+ * <p>
+ * A writer usually touches a file several times per update, so events are
+ * coalesced: the action runs once no event for the file has arrived for the quiet
+ * period. The action runs on the watcher thread, one run at a time; an exception
+ * it throws is logged and watching continues.
+ */
+public class FileWatcher implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(FileWatcher.class.getName());
+
+    private final Path file;
+    private final long quietMillis;
+    private final Runnable onChange;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    public FileWatcher(Path file, long quietMillis, Runnable onChange) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.quietMillis = quietMillis;
+        this.onChange = onChange;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::watch, "file-watcher");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    // Waits for changes to the file and runs the action once each burst of them is over.
+    private void watch() {
+        try {
+            while (true) {
+                boolean changed = takeEvents(watchService.take());
+                // Keep collecting until the file has been quiet for the whole period
+                for (WatchKey key; changed && (key = watchService.poll(quietMillis, TimeUnit.MILLISECONDS)) != null; ) {
+                    takeEvents(key);
+                }
+                if (changed) {
+                    try {
+                        onChange.run();
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Handling a change of " + file + " failed", e);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed; stop watching
+        }
+    }
+
+    // Consumes the events of a key; returns true if any of them concerns the file.
+    private boolean takeEvents(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        watchService.close();
+    }
+}
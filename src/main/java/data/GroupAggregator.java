@@ -0,0 +1,314 @@
+package main.java.data;
+
+import main.java.metrics.Metrics;
+import main.java.metrics.Stage;
+import main.java.model.CountryData;
+import main.java.model.NameDictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * GroupAggregator rolls the rows of a metric up into one row per group of a
+ * {@link GroupMapping}: for every group and year, the {@link Aggregate} of the
+ * values of the group's countries. The results are rows of their own, named after
+ * the group and "metric [Aggregate]", so the table and chart show them like any row.
+ * <p>
+ * The selected rows are split into ranges on a {@link ForkJoinPool}. Each range
+ * fills a partial (group, year) table and partials are merged as the tasks join,
+ * so no cell is shared between threads. Medians keep the values of each cell and
+ * pick the middle one once everything is merged.
+ */
+public final class GroupAggregator {
+    // Series the weighted mean is weighted by, unless -DweightSeries names another
+    public static final String DEFAULT_WEIGHT_SERIES = "Population, total";
+    // Rows aggregated by one task without splitting further
+    private static final int LEAF_ROWS = 512;
+
+    private final ForkJoinPool pool;
+
+    public GroupAggregator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public GroupAggregator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // Series name of the rollup rows of a metric.
+    public static String rollupName(String metric, Aggregate aggregate) {
+        return metric + " [" + aggregate.getLabel() + "]";
+    }
+
+    // Rolls up the metric, weighting by the -DweightSeries series or population.
+    public List<CountryData> rollup(DataIndex index, String metric, Collection<String> countries, GroupMapping groups,
+                                    Aggregate aggregate) {
+        return rollup(index, metric, countries, groups, aggregate,
+                System.getProperty("weightSeries", DEFAULT_WEIGHT_SERIES));
+    }
+
+    /**
+     * Rolls up the metric's rows of the countries into one row per group that has
+     * a value in any year, in the order of the group names. Countries in no group
+     * are left out.
+     *
+     * @param weightSeries series whose value for a country and year weighs its value;
+     *                     only used by {@link Aggregate#WEIGHTED_MEAN}
+     */
+    public List<CountryData> rollup(DataIndex index, String metric, Collection<String> countries, GroupMapping groups,
+                                    Aggregate aggregate, String weightSeries) {
+        Stage.Sample sample = Metrics.ROLLUP.start();
+        List<CountryData> rows = MetricQuery.select(index, metric, countries);
+        int firstYear = index.getFirstYear();
+        int lastYear = index.getLastYear();
+        if (rows.isEmpty() || groups.size() == 0 || lastYear < firstYear) {
+            sample.stop(0);
+            return List.of();
+        }
+
+        // Groups of every country id, resolved once instead of per row
+        int countryCount = NameDictionary.COUNTRIES.size();
+        int[][] groupsOf = new int[countryCount][];
+        for (int id = 0; id < countryCount; id++) {
+            groupsOf[id] = groups.groupsOf(NameDictionary.COUNTRIES.code(id));
+        }
+        CountryData[] weights = null;
+        if (aggregate == Aggregate.WEIGHTED_MEAN) {
+            weights = new CountryData[countryCount];
+            for (CountryData weight : index.select(weightSeries, countries)) {
+                // The first row of a country wins, as for row keys
+                if (weight.getCountryId() < countryCount && weights[weight.getCountryId()] == null) {
+                    weights[weight.getCountryId()] = weight;
+                }
+            }
+        }
+
+        Context context = new Context(rows, groupsOf, weights, aggregate, groups.size(), firstYear,
+                lastYear - firstYear + 1);
+        Partial total = pool.invoke(new RollupTask(context, 0, rows.size()));
+
+        List<CountryData> result = build(total, context, groups, rollupName(metric, aggregate));
+        sample.stop(rows.size());
+        return result;
+    }
+
+    // One row per group with a value, holding the finished aggregate of each year.
+    private static List<CountryData> build(Partial total, Context context, GroupMapping groups, String seriesName) {
+        int seriesId = NameDictionary.SERIES.idOf(seriesName, null);
+        List<CountryData> result = new ArrayList<>();
+        for (int group = 0; group < groups.size(); group++) {
+            double[] values = new double[context.years];
+            long[] validity = new long[(context.years + 63) >>> 6];
+            boolean any = false;
+            for (int offset = 0; offset < context.years; offset++) {
+                int cell = group * context.years + offset;
+                if (total.weight[cell] > 0) {
+                    values[offset] = total.finish(cell, context.aggregate);
+                    validity[offset >>> 6] |= 1L << offset;
+                    any = true;
+                }
+            }
+            if (any) {
+                int countryId = NameDictionary.COUNTRIES.idOf(groups.getGroupNames().get(group), null);
+                result.add(new CountryData(countryId, seriesId, context.firstYear, values, validity));
+            }
+        }
+        return result;
+    }
+
+    // What every task reads; nothing in it is written once the tasks start.
+    private record Context(List<CountryData> rows, int[][] groupsOf, CountryData[] weights, Aggregate aggregate,
+                           int groupCount, int firstYear, int years) {
+    }
+
+    // Aggregates a range of rows, splitting it in halves until it is small enough.
+    private static final class RollupTask extends RecursiveTask<Partial> {
+        private final Context context;
+        private final int from;
+        private final int to;
+
+        RollupTask(Context context, int from, int to) {
+            this.context = context;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= LEAF_ROWS) {
+                return aggregate();
+            }
+            int middle = (from + to) >>> 1;
+            RollupTask left = new RollupTask(context, from, middle);
+            left.fork();
+            Partial right = new RollupTask(context, middle, to).compute();
+            return left.join().merge(right);
+        }
+
+        private Partial aggregate() {
+            Partial partial = new Partial(context.groupCount * context.years, context.aggregate == Aggregate.MEDIAN);
+            int[][] groupsOf = context.groupsOf;
+            for (int i = from; i < to; i++) {
+                CountryData data = context.rows.get(i);
+                int countryId = data.getCountryId();
+                int[] groups = countryId < groupsOf.length ? groupsOf[countryId] : null;
+                if (groups == null || groups.length == 0) {
+                    continue;
+                }
+                CountryData weightRow = context.weights == null ? null
+                        : countryId < context.weights.length ? context.weights[countryId] : null;
+                if (context.weights != null && weightRow == null) {
+                    continue;
+                }
+                int first = Math.max(data.firstYear(), context.firstYear);
+                int last = Math.min(data.lastYear(), context.firstYear + context.years - 1);
+                for (int year = first; year <= last; year++) {
+                    if (!data.hasValue(year)) {
+                        continue;
+                    }
+                    double weight = 1;
+                    if (weightRow != null) {
+                        weight = weightRow.valueAt(year);
+                        if (!(weight > 0)) {
+                            continue; // Missing or unusable weight
+                        }
+                    }
+                    double value = data.valueAt(year);
+                    int offset = year - context.firstYear;
+                    for (int group : groups) {
+                        partial.add(group * context.years + offset, value, weight);
+                    }
+                }
+            }
+            return partial;
+        }
+    }
+
+    // Running totals of each (group, year) cell, indexed by group * years + year offset.
+    private static final class Partial {
+        final double[] sum;    // Sum of value * weight
+        final double[] weight; // Sum of weights; the count when unweighted
+        final double[][] values; // Values of each cell, for medians only
+        final int[] counts;
+
+        Partial(int cells, boolean keepValues) {
+            sum = new double[cells];
+            weight = new double[cells];
+            values = keepValues ? new double[cells][] : null;
+            counts = keepValues ? new int[cells] : null;
+        }
+
+        void add(int cell, double value, double w) {
+            sum[cell] += value * w;
+            weight[cell] += w;
+            if (values != null) {
+                double[] cellValues = values[cell];
+                if (cellValues == null) {
+                    cellValues = values[cell] = new double[4];
+                } else if (counts[cell] == cellValues.length) {
+                    cellValues = values[cell] = Arrays.copyOf(cellValues, counts[cell] * 2);
+                }
+                cellValues[counts[cell]++] = value;
+            }
+        }
+
+        // Adds the other partial's cells into this one and returns this.
+        Partial merge(Partial other) {
+            for (int cell = 0; cell < sum.length; cell++) {
+                sum[cell] += other.sum[cell];
+                weight[cell] += other.weight[cell];
+            }
+            if (values != null) {
+                for (int cell = 0; cell < values.length; cell++) {
+                    int added = other.counts[cell];
+                    if (added == 0) {
+                        continue;
+                    }
+                    int count = counts[cell];
+                    double[] target = values[cell];
+                    double[] source = other.values[cell];
+                    if (count < added) {
+                        // Copy the smaller array into the larger one
+                        double[] swap = target;
+                        target = source;
+                        source = swap;
+                        int swapCount = count;
+                        count = added;
+                        added = swapCount;
+                    }
+                    if (count + added > target.length) {
+                        target = Arrays.copyOf(target, Math.max(count + added, target.length * 2));
+                    }
+                    if (added > 0) {
+                        System.arraycopy(source, 0, target, count, added);
+                    }
+                    values[cell] = target;
+                    counts[cell] = count + added;
+                }
+            }
+            return this;
+        }
+
+        // Final value of a cell that has at least one value.
+        double finish(int cell, Aggregate aggregate) {
+            return switch (aggregate) {
+                case SUM -> sum[cell];
+                case MEAN, WEIGHTED_MEAN -> sum[cell] / weight[cell];
+                case MEDIAN -> median(values[cell], counts[cell]);
+            };
+        }
+
+        // Median by quickselect, reordering the values; no full sort is needed.
+        private static double median(double[] cellValues, int count) {
+            int middle = count >>> 1;
+            double upper = select(cellValues, count, middle);
+            if ((count & 1) == 1) {
+                return upper;
+            }
+            // Everything below the middle is now no greater than it; the largest of them is the other middle value
+            double lower = cellValues[0];
+            for (int i = 1; i < middle; i++) {
+                lower = Math.max(lower, cellValues[i]);
+            }
+            return (lower + upper) / 2;
+        }
+
+        // Puts the k-th smallest value at index k, smaller ones before it and larger ones after, and returns it.
+        private static double select(double[] a, int count, int k) {
+            int left = 0;
+            int right = count - 1;
+            while (left < right) {
+                double pivot = a[(left + right) >>> 1];
+                int i = left;
+                int j = right;
+                while (i <= j) {
+                    while (a[i] < pivot) {
+                        i++;
+                    }
+                    while (a[j] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        double swap = a[i];
+                        a[i] = a[j];
+                        a[j] = swap;
+                        i++;
+                        j--;
+                    }
+                }
+                if (k <= j) {
+                    right = j;
+                } else if (k >= i) {
+                    left = i;
+                } else {
+                    break; // Between j and i every value equals the pivot
+                }
+            }
+            return a[k];
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package main.java.data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GroupMapping assigns countries, by country code, to named groups such as regions
+ * or income groups, as read from a CSV side file. The header must have a
+ * "Country Code" column; every other column except "Country Name" is a grouping,
+ * and each non-empty cell puts the row's country in the group it names. So both
+ * the long form ("Country Code,Group", one line per membership) and the wide form
+ * ("Country Code,Region,Income Group") work. A country may be in any number of groups.
+ */
+public final class GroupMapping {
+    private static final int[] NO_GROUPS = new int[0];
+
+    private final List<String> groupNames;
+    private final Map<String, int[]> groupsByCode;
+
+    private GroupMapping(List<String> groupNames, Map<String, int[]> groupsByCode) {
+        this.groupNames = groupNames;
+        this.groupsByCode = groupsByCode;
+    }
+
+    /**
+     * Reads a grouping file.
+     *
+     * @throws IOException if the file cannot be read or has no "Country Code" column
+     */
+    public static GroupMapping load(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = in.readLine();
+            if (header == null) {
+                throw new IOException("Empty grouping file: " + file);
+            }
+            List<String> columns = splitLine(header.startsWith("\uFEFF") ? header.substring(1) : header);
+            int codeColumn = -1;
+            int nameColumn = -1;
+            for (int i = 0; i < columns.size(); i++) {
+                String column = columns.get(i).trim();
+                if (column.equalsIgnoreCase("Country Code")) {
+                    codeColumn = i;
+                } else if (column.equalsIgnoreCase("Country Name")) {
+                    nameColumn = i;
+                }
+            }
+            if (codeColumn < 0) {
+                throw new IOException("No \"Country Code\" column in " + file);
+            }
+
+            Map<String, Integer> groupIds = new LinkedHashMap<>();
+            Map<String, int[]> groupsByCode = new HashMap<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                List<String> fields = splitLine(line);
+                String code = codeColumn < fields.size() ? fields.get(codeColumn).trim() : "";
+                if (code.isEmpty()) {
+                    continue;
+                }
+                for (int i = 0; i < fields.size(); i++) {
+                    String group = fields.get(i).trim();
+                    if (i == codeColumn || i == nameColumn || group.isEmpty()) {
+                        continue;
+                    }
+                    int id = groupIds.computeIfAbsent(group, name -> groupIds.size());
+                    groupsByCode.merge(code, new int[]{id}, GroupMapping::union);
+                }
+            }
+            return new GroupMapping(List.copyOf(groupIds.keySet()), groupsByCode);
+        }
+    }
+
+    // Group names in the order they first appear; a group's index in this list is its number.
+    public List<String> getGroupNames() {
+        return groupNames;
+    }
+
+    // Numbers of the groups the country belongs to; empty if it is in none.
+    public int[] groupsOf(String countryCode) {
+        int[] groups = countryCode == null ? null : groupsByCode.get(countryCode);
+        return groups == null ? NO_GROUPS : groups;
+    }
+
+    // Number of groups.
+    public int size() {
+        return groupNames.size();
+    }
+
+    // The groups of both arrays, each once.
+    private static int[] union(int[] groups, int[] added) {
+        for (int group : groups) {
+            if (group == added[0]) {
+                return groups;
+            }
+        }
+        int[] merged = Arrays.copyOf(groups, groups.length + 1);
+        merged[groups.length] = added[0];
+        return merged;
+    }
+
+    // Splits a CSV line into fields, honouring double quotes.
+    private static List<String> splitLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
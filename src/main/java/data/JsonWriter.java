@@ -0,0 +1,199 @@
+package main.java.data;
+
+import main.java.model.CountryData;
+import main.java.model.ValueSummary;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * JsonWriter writes JSON text to an {@link Appendable} as it is produced, so large
+ * results can be streamed without building them in memory first. Separators are
+ * inserted automatically; the caller only opens, names and closes.
+ * <p>
+ * Besides plain values it writes the JSON forms of a data row and of a
+ * {@link ValueSummary}, so every output of the application shows them the same way.
+ * Numbers JSON cannot represent (NaN, infinities) are written as null. Write errors
+ * are rethrown as {@link UncheckedIOException}.
+ */
+public final class JsonWriter {
+    private final Appendable out;
+    // Per nesting level: true until the first member or element has been written
+    private boolean[] first = new boolean[8];
+    private int depth;
+    private boolean afterName; // A member name was written; its value comes next
+
+    public JsonWriter(Appendable out) {
+        this.out = out;
+    }
+
+    public JsonWriter beginObject() {
+        beforeValue();
+        return open('{');
+    }
+
+    public JsonWriter endObject() {
+        return close('}');
+    }
+
+    public JsonWriter beginArray() {
+        beforeValue();
+        return open('[');
+    }
+
+    public JsonWriter endArray() {
+        return close(']');
+    }
+
+    // Writes the name of the next object member.
+    public JsonWriter name(String name) {
+        beforeValue();
+        string(name);
+        append(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        beforeValue();
+        if (value == null) {
+            append("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        beforeValue();
+        append(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(double value) {
+        beforeValue();
+        append(Double.isFinite(value) ? Double.toString(value) : "null");
+        return this;
+    }
+
+    public JsonWriter nullValue() {
+        beforeValue();
+        append("null");
+        return this;
+    }
+
+    /**
+     * Writes a row as an object with its country, series, the values from
+     * {@code fromYear} to {@code toYear} keyed by year, and their summary.
+     */
+    public JsonWriter row(CountryData data, int fromYear, int toYear) {
+        beginObject()
+                .name("country").value(data.getCountryName())
+                .name("countryCode").value(data.getCountryCode())
+                .name("series").value(data.getSeriesName())
+                .name("seriesCode").value(data.getSeriesCode())
+                .name("values").beginObject();
+        for (int year = Math.max(fromYear, data.firstYear()), last = Math.min(toYear, data.lastYear()); year <= last; year++) {
+            if (data.hasValue(year)) {
+                name(Integer.toString(year)).value(data.valueAt(year));
+            }
+        }
+        endObject().name("stats");
+        return summary(data.getSeriesName(), ValueSummary.of(data, fromYear, toYear)).endObject();
+    }
+
+    // Writes a summary as an object; the years are null if it is empty.
+    public JsonWriter summary(String metric, ValueSummary summary) {
+        beginObject()
+                .name("metric").value(metric)
+                .name("count").value(summary.getCount())
+                .name("mean").value(summary.getMean())
+                .name("min").value(summary.getMin())
+                .name("max").value(summary.getMax())
+                .name("stdDev").value(summary.getStandardDeviation());
+        if (summary.getCount() > 0) {
+            name("firstYear").value(summary.getFirstYear()).name("lastYear").value(summary.getLastYear());
+        } else {
+            name("firstYear").nullValue().name("lastYear").nullValue();
+        }
+        return endObject();
+    }
+
+    // Writes a comma before every member or element but the first of its container.
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (first[depth]) {
+                first[depth] = false;
+            } else {
+                append(',');
+            }
+        }
+    }
+
+    private JsonWriter open(char bracket) {
+        append(bracket);
+        if (++depth == first.length) {
+            first = Arrays.copyOf(first, depth * 2);
+        }
+        first[depth] = true;
+        return this;
+    }
+
+    private JsonWriter close(char bracket) {
+        if (depth == 0) {
+            throw new IllegalStateException("Nothing to close");
+        }
+        depth--;
+        append(bracket);
+        return this;
+    }
+
+    // Writes a quoted string, escaping what JSON requires.
+    private void string(String value) {
+        append('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String escape = switch (c) {
+                case '"' -> "\\\"";
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                default -> c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+            };
+            if (escape != null) {
+                append(value, start, i);
+                append(escape);
+                start = i + 1;
+            }
+        }
+        append(value, start, value.length());
+        append('"');
+    }
+
+    private void append(char c) {
+        try {
+            out.append(c);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void append(CharSequence text) {
+        append(text, 0, text.length());
+    }
+
+    private void append(CharSequence text, int start, int end) {
+        try {
+            out.append(text, start, end);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
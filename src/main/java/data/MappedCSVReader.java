@@ -0,0 +1,443 @@
+package main.java.data;
+
+import main.java.metrics.Metrics;
+import main.java.metrics.Stage;
+import main.java.model.CountryData;
+import main.java.model.NameDictionary;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * MappedCSVReader parses World Bank style CSV exports straight from a memory-mapped file.
+ * <p>
+ * The header is compiled once into a {@link CsvSchema}, so every year column the
+ * export carries is read, whatever its range.
+ * Records are tokenized in place on the mapped bytes. Numeric cells and the ".." sentinel
+ * are decoded without creating intermediate Strings, and each row is written directly into
+ * a {@link CountryData}. Files larger than one mapping window are processed window by window.
+ */
+public class MappedCSVReader {
+    private static final Logger LOGGER = Logger.getLogger(MappedCSVReader.class.getName());
+
+    // Largest region mapped at once; records never straddle two windows.
+    private static final long MAX_WINDOW = 1L << 30;
+
+    // Number of records between progress reports and interruption checks.
+    private static final int PROGRESS_INTERVAL = 1024;
+
+    private final Path path;
+
+    /**
+     * Decides from a record's key fields and a fingerprint of its bytes whether
+     * the record is decoded at all.
+     */
+    interface RecordFilter {
+        boolean accept(String countryCode, String seriesCode, long fingerprint);
+    }
+
+    // Compiled header; empty until the header has been read
+    private CsvSchema schema = CsvSchema.compile(new String[0]);
+    private int yearSpan;
+
+    // Field boundaries of the record being decoded
+    private int[] fieldStart = new int[32];
+    private int[] fieldEnd = new int[32];
+    private boolean[] fieldEscaped = new boolean[32];
+    private int fieldCount;
+    private int[] invalidFields = new int[4];
+
+    // Last decoded value of each text column, reused while the bytes repeat.
+    private final String[] lastText = new String[4];
+    private final byte[][] lastBytes = new byte[4][];
+    // Dictionary ids of the last decoded (name, code) pairs, reused while the strings repeat
+    private String lastCountryName, lastCountryCode, lastSeriesName, lastSeriesCode;
+    private int lastCountryId = -1, lastSeriesId = -1;
+    private byte[] scratch = new byte[256];
+
+    // Constructor initializes the reader with the file path.
+    public MappedCSVReader(String csvFilePath) {
+        this.path = Paths.get(csvFilePath);
+    }
+
+    // Parses the whole file and returns its rows in file order.
+    public List<CountryData> parse() throws IOException {
+        List<CountryData> dataList = new ArrayList<>();
+        parse(dataList::add);
+        return dataList;
+    }
+
+    // Parses the whole file, handing every row to the sink in file order.
+    public void parse(Consumer<CountryData> sink) throws IOException {
+        parse(sink, bytes -> {
+        });
+    }
+
+    /**
+     * Parses the whole file, handing every row to the sink in file order and
+     * reporting the number of bytes consumed so far to {@code progress}.
+     *
+     * @throws InterruptedIOException if the calling thread is interrupted
+     */
+    public void parse(Consumer<CountryData> sink, LongConsumer progress) throws IOException {
+        Stage.Sample sample = Metrics.CSV_PARSE.start();
+        long[] rows = new long[1];
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long dataStart = readHeader(channel);
+            parseRange(channel, dataStart, channel.size(), row -> {
+                rows[0]++;
+                sink.accept(row);
+            }, progress);
+            progress.accept(channel.size());
+        }
+        sample.stop(rows[0]);
+    }
+
+    // Returns a reader for the same file that shares this reader's compiled header.
+    MappedCSVReader fork() {
+        MappedCSVReader reader = new MappedCSVReader(path.toString());
+        reader.schema = schema;
+        reader.yearSpan = yearSpan;
+        return reader;
+    }
+
+    // Returns the schema compiled from the header; empty before the header has been read.
+    public CsvSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Reads and compiles the header record.
+     *
+     * @return the file offset of the first data record
+     */
+    long readHeader(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long length = Math.min(MAX_WINDOW, size);
+        boolean lastWindow = length == size;
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        int limit = (int) length;
+        int pos = skipByteOrderMark(buf, limit);
+
+        while (pos < limit) {
+            int next = tokenizeRecord(buf, pos, limit, lastWindow);
+            if (next < 0) {
+                throw new IOException("CSV header larger than " + MAX_WINDOW + " bytes");
+            }
+            pos = next;
+            if (fieldCount > 1 || fieldEnd[0] > fieldStart[0]) {
+                compileHeader(buf);
+                return pos;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Parses the data records in [start, end), which must begin and end on record
+     * boundaries, handing every row to the sink in file order.
+     *
+     * @throws InterruptedIOException if the calling thread is interrupted
+     */
+    void parseRange(FileChannel channel, long start, long end, Consumer<CountryData> sink, LongConsumer progress)
+            throws IOException {
+        parseRange(channel, start, end, null, sink, progress);
+    }
+
+    /**
+     * Reads the whole file but decodes only the records the filter accepts, handing
+     * them to the sink in file order. Rejected records cost a scan of their bytes.
+     */
+    void parseFiltered(RecordFilter filter, Consumer<CountryData> sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long dataStart = readHeader(channel);
+            parseRange(channel, dataStart, channel.size(), filter, sink, bytes -> {
+            });
+        }
+    }
+
+    // Parses the data records in [start, end), decoding those the filter accepts; a null filter accepts all.
+    private void parseRange(FileChannel channel, long start, long end, RecordFilter filter,
+                            Consumer<CountryData> sink, LongConsumer progress) throws IOException {
+        int countryCodeField = schema.columnOf(CsvSchema.COUNTRY_CODE);
+        int seriesCodeField = schema.columnOf(CsvSchema.SERIES_CODE);
+        int records = 0;
+        long offset = start;
+
+        while (offset < end) {
+            long length = Math.min(MAX_WINDOW, end - offset);
+            boolean lastWindow = offset + length == end;
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            int limit = (int) length;
+            int pos = 0;
+
+            while (pos < limit) {
+                int next = tokenizeRecord(buf, pos, limit, lastWindow);
+                if (next < 0) {
+                    break; // Record continues past this window
+                }
+                if ((fieldCount > 1 || fieldEnd[0] > fieldStart[0])
+                        && (filter == null || filter.accept(keyText(buf, countryCodeField, 1),
+                        keyText(buf, seriesCodeField, 3), fingerprint(buf, pos, next)))) {
+                    sink.accept(decodeRecord(buf));
+                }
+                pos = next;
+                if (++records % PROGRESS_INTERVAL == 0) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("CSV parsing interrupted");
+                    }
+                    progress.accept(offset + pos);
+                }
+            }
+
+            if (pos == 0 && !lastWindow) {
+                throw new IOException("CSV record larger than " + MAX_WINDOW + " bytes at offset " + offset);
+            }
+            offset += pos;
+            if (lastWindow && pos < limit) {
+                break;
+            }
+        }
+    }
+
+    private static int skipByteOrderMark(MappedByteBuffer buf, int limit) {
+        if (limit >= 3 && (buf.get(0) & 0xFF) == 0xEF && (buf.get(1) & 0xFF) == 0xBB && (buf.get(2) & 0xFF) == 0xBF) {
+            return 3;
+        }
+        return 0;
+    }
+
+    /**
+     * Splits one record starting at {@code pos} into field boundaries.
+     *
+     * @return the position after the record's line break, or -1 if the record
+     * is not complete before {@code limit} and more input follows
+     */
+    private int tokenizeRecord(MappedByteBuffer buf, int pos, int limit, boolean atEof) {
+        fieldCount = 0;
+        while (true) {
+            if (fieldCount == fieldStart.length) {
+                growFields();
+            }
+            boolean quoted = pos < limit && buf.get(pos) == '"';
+            boolean escaped = false;
+            int start;
+            int end;
+
+            if (quoted) {
+                start = ++pos;
+                while (true) {
+                    if (pos >= limit) {
+                        if (!atEof) {
+                            return -1;
+                        }
+                        end = pos;
+                        break;
+                    }
+                    if (buf.get(pos) == '"') {
+                        if (pos + 1 < limit && buf.get(pos + 1) == '"') {
+                            escaped = true;
+                            pos += 2;
+                            continue;
+                        }
+                        if (pos + 1 >= limit && !atEof) {
+                            return -1;
+                        }
+                        end = pos++;
+                        break;
+                    }
+                    pos++;
+                }
+                // Skip anything between the closing quote and the delimiter
+                while (pos < limit && buf.get(pos) != ',' && buf.get(pos) != '\n') {
+                    pos++;
+                }
+            } else {
+                start = pos;
+                while (pos < limit && buf.get(pos) != ',' && buf.get(pos) != '\n') {
+                    pos++;
+                }
+                end = pos;
+                if (end > start && buf.get(end - 1) == '\r' && (pos < limit || atEof)) {
+                    end--;
+                }
+            }
+
+            fieldStart[fieldCount] = start;
+            fieldEnd[fieldCount] = end;
+            fieldEscaped[fieldCount] = escaped;
+            fieldCount++;
+
+            if (pos >= limit) {
+                return atEof ? limit : -1;
+            }
+            if (buf.get(pos) == '\n') {
+                return pos + 1;
+            }
+            pos++; // Skip the comma
+        }
+    }
+
+    private void growFields() {
+        int capacity = fieldStart.length * 2;
+        fieldStart = Arrays.copyOf(fieldStart, capacity);
+        fieldEnd = Arrays.copyOf(fieldEnd, capacity);
+        fieldEscaped = Arrays.copyOf(fieldEscaped, capacity);
+    }
+
+    // Compiles the header record into the schema used to decode every row.
+    private void compileHeader(MappedByteBuffer buf) {
+        String[] headers = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            headers[i] = text(buf, i);
+        }
+        schema = CsvSchema.compile(headers);
+        yearSpan = schema.getYears().length > 0 ? schema.getLastYear() - schema.getFirstYear() + 1 : 0;
+    }
+
+    // Builds a CountryData from the fields of the current record in a single pass.
+    private CountryData decodeRecord(MappedByteBuffer buf) {
+        String countryName = null;
+        String countryCode = null;
+        String seriesName = null;
+        String seriesCode = null;
+        int firstYear = schema.getFirstYear();
+        double[] values = new double[yearSpan];
+        long[] validity = new long[(yearSpan + 63) >>> 6];
+        int invalidCount = 0;
+
+        for (int i = 0; i < fieldCount; i++) {
+            int role = schema.role(i);
+            if (role >= 0) {
+                if (isMissing(buf, i)) {
+                    continue;
+                }
+                int offset = role - firstYear;
+                try {
+                    values[offset] = AsciiDoubleParser.parse(buf, fieldStart[i], fieldEnd[i]);
+                    validity[offset >>> 6] |= 1L << offset;
+                } catch (NumberFormatException e) {
+                    if (invalidCount == invalidFields.length) {
+                        invalidFields = Arrays.copyOf(invalidFields, invalidCount * 2);
+                    }
+                    invalidFields[invalidCount++] = i;
+                }
+                continue;
+            }
+            switch (role) {
+                case CsvSchema.COUNTRY_NAME -> countryName = cachedText(buf, i, 0);
+                case CsvSchema.COUNTRY_CODE -> countryCode = cachedText(buf, i, 1);
+                case CsvSchema.SERIES_NAME -> seriesName = cachedText(buf, i, 2);
+                case CsvSchema.SERIES_CODE -> seriesCode = cachedText(buf, i, 3);
+                default -> {
+                }
+            }
+        }
+
+        for (int i = 0; i < invalidCount; i++) {
+            int field = invalidFields[i];
+            LOGGER.log(Level.WARNING, "Invalid number format for year {0} in country {1}: {2}",
+                    new Object[]{schema.role(field), countryName, text(buf, field)});
+        }
+        return new CountryData(countryId(countryName, countryCode), seriesId(seriesName, seriesCode),
+                firstYear, values, validity);
+    }
+
+    // Dictionary id of the country; consecutive rows of a country skip the lookup.
+    private int countryId(String name, String code) {
+        if (lastCountryId < 0 || name != lastCountryName || code != lastCountryCode) {
+            lastCountryId = NameDictionary.COUNTRIES.idOf(name, code);
+            lastCountryName = name;
+            lastCountryCode = code;
+        }
+        return lastCountryId;
+    }
+
+    // Dictionary id of the series; repeated series skip the lookup.
+    private int seriesId(String name, String code) {
+        if (lastSeriesId < 0 || name != lastSeriesName || code != lastSeriesCode) {
+            lastSeriesId = NameDictionary.SERIES.idOf(name, code);
+            lastSeriesName = name;
+            lastSeriesCode = code;
+        }
+        return lastSeriesId;
+    }
+
+    // Text of a key field of the current record, or null if the record is too short.
+    private String keyText(MappedByteBuffer buf, int field, int slot) {
+        return field >= 0 && field < fieldCount ? cachedText(buf, field, slot) : null;
+    }
+
+    // 64-bit FNV-1a hash of the bytes in [start, end).
+    private static long fingerprint(MappedByteBuffer buf, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ (buf.get(i) & 0xFF)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // True if the field holds the ".." missing-value sentinel.
+    private boolean isMissing(MappedByteBuffer buf, int field) {
+        int start = fieldStart[field];
+        return fieldEnd[field] - start == 2 && buf.get(start) == '.' && buf.get(start + 1) == '.';
+    }
+
+    // Decodes a text field, reusing the previous String when the bytes have not changed.
+    private String cachedText(MappedByteBuffer buf, int field, int slot) {
+        int start = fieldStart[field];
+        int length = fieldEnd[field] - start;
+        byte[] previous = lastBytes[slot];
+        if (previous != null && previous.length == length && !fieldEscaped[field]) {
+            boolean same = true;
+            for (int i = 0; i < length; i++) {
+                if (buf.get(start + i) != previous[i]) {
+                    same = false;
+                    break;
+                }
+            }
+            if (same) {
+                return lastText[slot];
+            }
+        }
+        String value = text(buf, field);
+        if (!fieldEscaped[field]) {
+            byte[] bytes = new byte[length];
+            buf.get(start, bytes);
+            lastBytes[slot] = bytes;
+            lastText[slot] = value;
+        }
+        return value;
+    }
+
+    // Decodes a field to a String, collapsing doubled quotes in quoted fields.
+    private String text(MappedByteBuffer buf, int field) {
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+        if (scratch.length < end - start) {
+            scratch = new byte[Math.max(end - start, scratch.length * 2)];
+        }
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buf.get(i);
+            scratch[length++] = b;
+            if (b == '"' && fieldEscaped[field] && i + 1 < end && buf.get(i + 1) == '"') {
+                i++;
+            }
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
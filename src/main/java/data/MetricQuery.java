@@ -0,0 +1,111 @@
+package main.java.data;
+
+import main.java.metrics.Metrics;
+import main.java.metrics.Stage;
+import main.java.model.CountryData;
+import main.java.model.Transform;
+import main.java.model.ValueSummary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * MetricQuery holds the rules of a filter that do not depend on the display: which
+ * rows a metric and a set of countries select, and which of them the statistics
+ * are computed over. The panels use it, and so can code running without a screen.
+ * <p>
+ * A metric is either a series of the data or a {@link Transform} of one. A derived
+ * metric selects the rows of its source series, and its results are views that
+ * compute the derived rows as they are read.
+ */
+public final class MetricQuery {
+    // Metric choice that selects every series
+    public static final String ALL_SERIES = "All Series";
+    // Metric the statistics fall back to when every series is selected
+    public static final String DEFAULT_STATS_METRIC = "GDP per capita (constant 2005 US$)";
+
+    private MetricQuery() {
+    }
+
+    // Series name of the metric's rows, derived rows included; null selects every series.
+    public static String seriesFilter(String metric) {
+        return ALL_SERIES.equals(metric) ? null : metric;
+    }
+
+    // Stored series the metric is computed from; null selects every series.
+    public static String sourceSeries(String metric) {
+        return ALL_SERIES.equals(metric) ? null : Transform.sourceSeries(metric);
+    }
+
+    // The metric's rows computed from stored rows of its source series; the rows themselves if it is not derived.
+    public static List<CountryData> derive(List<CountryData> rows, String metric) {
+        Transform transform = Transform.of(metric);
+        return transform == null ? rows : transform.view(rows);
+    }
+
+    // Filter for the stored rows that a metric and the countries select.
+    public static RowFilter filter(String metric, Collection<String> countries) {
+        return RowFilter.of(sourceSeries(metric), countries);
+    }
+
+    // True if the stored row is selected by the metric and one of the countries.
+    public static boolean matches(CountryData data, String metric, Collection<String> countries) {
+        return filter(metric, countries).matches(data);
+    }
+
+    /**
+     * Returns the ascending numbers of the stored rows, among the first
+     * {@code rowLimit}, that the metric and one of the countries select.
+     */
+    public static int[] selectRows(DataIndex index, String metric, Collection<String> countries, int rowLimit) {
+        Stage.Sample sample = Metrics.FILTER_SELECT.start();
+        int[] rows = index.selectRows(sourceSeries(metric), countries, rowLimit);
+        sample.stop(rows.length);
+        return rows;
+    }
+
+    // Rows of the metric and countries, as a view on the index's rows or their derived rows.
+    public static List<CountryData> select(DataIndex index, String metric, Collection<String> countries) {
+        return derive(index.view(selectRows(index, metric, countries, index.size())), metric);
+    }
+
+    // Metric the statistics of a selection are computed for.
+    public static String statsMetric(String metric) {
+        return ALL_SERIES.equals(metric) ? DEFAULT_STATS_METRIC : metric;
+    }
+
+    // Rows of the selection that the statistics of the metric cover.
+    public static List<CountryData> statsRows(List<CountryData> dataList, String metric) {
+        String metricForStats = statsMetric(metric);
+        RowFilter filter = RowFilter.ofSeries(name -> name.trim().equalsIgnoreCase(metricForStats));
+        List<CountryData> matching = new ArrayList<>();
+        for (CountryData data : dataList) {
+            if (filter.matches(data)) {
+                matching.add(data);
+            } else if (data.getSeriesName() == null) {
+                Metrics.NULL_SERIES_ROWS.increment();
+            }
+        }
+        return matching;
+    }
+
+    // Combined summary of the rows the statistics of the metric cover.
+    public static ValueSummary summarize(List<CountryData> dataList, String metric) {
+        Stage.Sample sample = Metrics.FILTER_STATS.start();
+        ValueSummary summary = SummaryCube.combine(statsRows(dataList, metric));
+        sample.stop(dataList.size());
+        return summary;
+    }
+
+    // Combined summary of the values from fromYear to toYear, inclusive, that the statistics of the metric cover.
+    public static ValueSummary summarize(List<CountryData> dataList, String metric, int fromYear, int toYear) {
+        Stage.Sample sample = Metrics.FILTER_STATS.start();
+        ValueSummary total = new ValueSummary();
+        for (CountryData data : statsRows(dataList, metric)) {
+            total.merge(ValueSummary.of(data, fromYear, toYear));
+        }
+        sample.stop(dataList.size());
+        return total;
+    }
+}
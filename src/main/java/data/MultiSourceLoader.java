@@ -0,0 +1,237 @@
+package main.java.data;
+
+import main.java.model.CountryData;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * MultiSourceLoader loads a dataset split over many CSV exports, such as one file
+ * per indicator group or per region, and merges them into one set of rows keyed by
+ * (country code, series code).
+ * <p>
+ * The files are parsed concurrently on a bounded pool, one file per task, so a
+ * load takes about as long as its largest file once there are enough cores. They
+ * are merged in listing order as their parses complete: a key seen for the first
+ * time becomes a row, and a key seen again has its cells added to that row. A cell
+ * held by more than one file is settled by the {@link ConflictPolicy}. A key that
+ * repeats within one file keeps its first record there, as in a single-file load.
+ */
+public class MultiSourceLoader {
+    private final List<Path> files;
+    private final ConflictPolicy policy;
+    private final int threads;
+
+    /**
+     * Time and size of the parse of one file.
+     *
+     * @param file  the file
+     * @param rows  rows read from it
+     * @param bytes its size
+     * @param nanos wall time of its parse
+     */
+    public record FileTiming(Path file, int rows, long bytes, long nanos) {
+        @Override
+        public String toString() {
+            return String.format("%s: %,d rows (%.1f MB) in %.0f ms", file, rows, bytes / 1e6, nanos / 1e6);
+        }
+    }
+
+    /**
+     * Outcome of a load.
+     *
+     * @param rows      merged rows, in the order their keys were first seen
+     * @param timings   parse timing of every file, in listing order
+     * @param conflicts cells held by more than one file
+     * @param nanos     wall time of the whole load
+     */
+    public record Result(List<CountryData> rows, List<FileTiming> timings, int conflicts, long nanos) {
+    }
+
+    public MultiSourceLoader(List<Path> files, ConflictPolicy policy, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        this.files = List.copyOf(files);
+        this.policy = policy;
+        this.threads = threads;
+    }
+
+    // True if the source names a directory or a glob pattern rather than one file.
+    public static boolean isMultiSource(String source) {
+        return firstWildcard(source) >= 0 || Files.isDirectory(Paths.get(source));
+    }
+
+    // Index of the first glob metacharacter, or -1 if there is none.
+    private static int firstWildcard(String source) {
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Lists the CSV files a source names, sorted by path: the .csv files directly in
+     * a directory, the files matching a glob such as {@code exports/WDI_*.csv} or
+     * {@code exports/**.csv}, or a single file.
+     */
+    public static List<Path> resolve(String source) throws IOException {
+        int wildcard = firstWildcard(source);
+        if (wildcard < 0) {
+            Path path = Paths.get(source);
+            if (!Files.isDirectory(path)) {
+                return List.of(path);
+            }
+            try (Stream<Path> listed = Files.list(path)) {
+                return listed.filter(file -> Files.isRegularFile(file)
+                                && file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv"))
+                        .sorted().toList();
+            }
+        }
+
+        // Walk from the deepest directory before the first wildcard, matching the rest
+        int separator = Math.max(source.lastIndexOf('/', wildcard), source.lastIndexOf('\\', wildcard));
+        Path base = separator < 0 ? Paths.get("") : Paths.get(source.substring(0, separator + 1));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + source.substring(separator + 1));
+        Path root = base.toString().isEmpty() ? Paths.get(".") : base;
+        try (Stream<Path> walked = Files.walk(root)) {
+            return walked.filter(Files::isRegularFile)
+                    .filter(file -> matcher.matches(root.relativize(file)))
+                    .map(file -> base.resolve(root.relativize(file)))
+                    .sorted().toList();
+        }
+    }
+
+    /**
+     * Parses and merges every file.
+     *
+     * @param fileDone called with each file's timing as it is merged, in listing order
+     * @throws IOException if a file cannot be read, or a conflict is found under {@link ConflictPolicy#FAIL}
+     */
+    public Result load(Consumer<FileTiming> fileDone) throws IOException {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, files.size())), task -> {
+            Thread thread = new Thread(task, "source-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<List<CountryData>>> parses = new ArrayList<>(files.size());
+            long[] parseNanos = new long[files.size()];
+            for (int i = 0; i < files.size(); i++) {
+                Path file = files.get(i);
+                int slot = i;
+                parses.add(pool.submit(() -> {
+                    long parseStart = System.nanoTime();
+                    List<CountryData> rows = new MappedCSVReader(file.toString()).parse();
+                    parseNanos[slot] = System.nanoTime() - parseStart;
+                    return rows;
+                }));
+            }
+
+            Merger merger = new Merger();
+            List<FileTiming> timings = new ArrayList<>(files.size());
+            for (int i = 0; i < files.size(); i++) {
+                List<CountryData> rows = await(parses.get(i), files.get(i));
+                merger.merge(rows, files.get(i));
+                FileTiming timing = new FileTiming(files.get(i), rows.size(), Files.size(files.get(i)), parseNanos[i]);
+                timings.add(timing);
+                fileDone.accept(timing);
+            }
+            return new Result(merger.rows(), Collections.unmodifiableList(timings), merger.conflicts,
+                    System.nanoTime() - start);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static List<CountryData> await(Future<List<CountryData>> parse, Path file) throws IOException {
+        try {
+            return parse.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Loading interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw new IOException(file + ": " + io.getMessage(), io);
+            }
+            throw new IOException(file + ": " + e.getCause(), e.getCause());
+        }
+    }
+
+    // Merges rows file by file under the conflict policy.
+    private final class Merger {
+        private final Map<String, CountryData> rowsByKey = new LinkedHashMap<>();
+        // Number of files that contributed to each cell averaged so far; MEAN only
+        private final Map<String, Map<Integer, Integer>> contributions = new HashMap<>();
+        int conflicts;
+
+        void merge(List<CountryData> rows, Path file) throws IOException {
+            Set<String> keysInFile = new HashSet<>(Math.max(16, rows.size() * 4 / 3 + 1));
+            for (CountryData data : rows) {
+                String key = DataIndex.rowKey(data.getCountryCode(), data.getSeriesCode());
+                if (!keysInFile.add(key)) {
+                    continue; // Later records of a key in the same file are ignored
+                }
+                CountryData existing = rowsByKey.putIfAbsent(key, data);
+                if (existing != null) {
+                    mergeCells(key, existing, data, file);
+                }
+            }
+        }
+
+        private void mergeCells(String key, CountryData existing, CountryData incoming, Path file) throws IOException {
+            for (int year = incoming.firstYear(), last = incoming.lastYear(); year <= last; year++) {
+                if (!incoming.hasValue(year)) {
+                    continue;
+                }
+                double value = incoming.valueAt(year);
+                if (!existing.hasValue(year)) {
+                    existing.setValue(year, value);
+                    continue;
+                }
+                conflicts++;
+                switch (policy) {
+                    case FIRST -> {
+                    }
+                    case LAST -> existing.setValue(year, value);
+                    case MEAN -> {
+                        Map<Integer, Integer> counts = contributions.computeIfAbsent(key, k -> new HashMap<>());
+                        int n = counts.getOrDefault(year, 1);
+                        existing.setValue(year, existing.valueAt(year) + (value - existing.valueAt(year)) / (n + 1));
+                        counts.put(year, n + 1);
+                    }
+                    case FAIL -> throw new IOException(String.format("%s: %s, %s, %d is also in an earlier file",
+                            file, incoming.getCountryName(), incoming.getSeriesName(), year));
+                }
+            }
+        }
+
+        List<CountryData> rows() {
+            return new ArrayList<>(rowsByKey.values());
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package main.java.data;
+
+import main.java.metrics.Metrics;
+import main.java.metrics.Stage;
+import main.java.model.CountryData;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * ParallelCSVReader parses one CSV file on several cores.
+ * <p>
+ * The data section is cut into byte ranges that end on record boundaries. To find
+ * the boundaries without a sequential pre-pass, the quote characters of every raw
+ * chunk are counted in parallel; the running parity tells whether a raw split point
+ * lies inside a quoted field, so the scan for the next record-ending newline can
+ * start in the right state. Each range is then decoded by its own
+ * {@link MappedCSVReader} on a {@link ForkJoinPool}, and the per-range results are
+ * delivered in file order, giving exactly the rows of the sequential reader.
+ */
+public class ParallelCSVReader {
+    // Smallest range worth handing to a separate task.
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+    // Ranges per worker, so uneven ranges still balance out.
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final String csvFilePath;
+    private final ForkJoinPool pool;
+
+    // Constructor initializes the reader with the file path, using the common pool.
+    public ParallelCSVReader(String csvFilePath) {
+        this(csvFilePath, ForkJoinPool.commonPool());
+    }
+
+    // Constructor initializes the reader with the file path and the pool to parse on.
+    public ParallelCSVReader(String csvFilePath, ForkJoinPool pool) {
+        this.csvFilePath = csvFilePath;
+        this.pool = pool;
+    }
+
+    // Parses the whole file and returns its rows in file order.
+    public List<CountryData> parse() throws IOException {
+        List<CountryData> dataList = new ArrayList<>();
+        parse(dataList::addAll, bytes -> {
+        });
+        return dataList;
+    }
+
+    /**
+     * Parses the whole file, handing each range's rows to {@code chunkSink} in file
+     * order as soon as the range and all ranges before it are done, and reporting
+     * the bytes delivered so far to {@code progress}.
+     *
+     * @throws InterruptedIOException if the calling thread is interrupted
+     */
+    public void parse(Consumer<List<CountryData>> chunkSink, LongConsumer progress) throws IOException {
+        Stage.Sample sample = Metrics.CSV_PARSE.start();
+        long rowCount = 0;
+        try (FileChannel channel = FileChannel.open(Paths.get(csvFilePath), StandardOpenOption.READ)) {
+            MappedCSVReader headerReader = new MappedCSVReader(csvFilePath);
+            long dataStart = headerReader.readHeader(channel);
+            long size = channel.size();
+            long[] bounds = recordBoundaries(channel, dataStart, size);
+
+            AtomicBoolean cancelled = new AtomicBoolean();
+            List<ForkJoinTask<List<CountryData>>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                MappedCSVReader reader = headerReader.fork();
+                tasks.add(pool.submit(() -> {
+                    List<CountryData> rows = new ArrayList<>();
+                    try {
+                        reader.parseRange(channel, start, end, rows::add, bytes -> {
+                            if (cancelled.get()) {
+                                throw new CancellationException();
+                            }
+                        });
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return rows;
+                }));
+            }
+
+            try {
+                for (int i = 0; i < tasks.size(); i++) {
+                    List<CountryData> chunk = await(tasks.get(i));
+                    rowCount += chunk.size();
+                    chunkSink.accept(chunk);
+                    progress.accept(bounds[i + 1]);
+                }
+            } finally {
+                cancelled.set(true);
+                tasks.forEach(task -> task.cancel(false));
+            }
+            progress.accept(size);
+        }
+        sample.stop(rowCount);
+    }
+
+    // Waits for a task to finish, unwrapping its failure.
+    private static <T> T await(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("CSV parsing interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Splits [dataStart, size) into ranges that begin and end on record boundaries.
+     *
+     * @return ascending offsets; range i is [bounds[i], bounds[i + 1])
+     */
+    private long[] recordBoundaries(FileChannel channel, long dataStart, long size) throws IOException {
+        long dataBytes = size - dataStart;
+        int chunks = (int) Math.max(1, Math.min((long) pool.getParallelism() * CHUNKS_PER_THREAD,
+                dataBytes / MIN_CHUNK_BYTES));
+        long chunkBytes = (dataBytes + chunks - 1) / Math.max(1, chunks);
+
+        long[] rawStarts = new long[chunks + 1];
+        for (int i = 0; i < chunks; i++) {
+            rawStarts[i] = Math.min(size, dataStart + i * chunkBytes);
+        }
+        rawStarts[chunks] = size;
+
+        // Count quotes per raw chunk in parallel
+        List<ForkJoinTask<Long>> counts = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            long start = rawStarts[i];
+            long end = rawStarts[i + 1];
+            counts.add(pool.submit(() -> countQuotes(channel, start, end)));
+        }
+
+        // Running parity says whether each raw split point is inside quotes
+        boolean[] insideQuotes = new boolean[chunks];
+        long quotes = 0;
+        for (int i = 0; i < chunks; i++) {
+            insideQuotes[i] = (quotes & 1) != 0;
+            quotes += await(counts.get(i));
+        }
+
+        // Move every split point forward to the end of its record, in parallel
+        List<ForkJoinTask<Long>> aligned = new ArrayList<>();
+        for (int i = 1; i < chunks; i++) {
+            long start = rawStarts[i];
+            boolean quoted = insideQuotes[i];
+            aligned.add(pool.submit(() -> nextRecordStart(channel, start, size, quoted)));
+        }
+
+        long[] bounds = new long[chunks + 1];
+        bounds[0] = dataStart;
+        for (int i = 1; i < chunks; i++) {
+            bounds[i] = Math.max(bounds[i - 1], await(aligned.get(i - 1)));
+        }
+        bounds[chunks] = size;
+        return bounds;
+    }
+
+    // Counts the quote characters in [start, end).
+    private static long countQuotes(FileChannel channel, long start, long end) {
+        long quotes = 0;
+        try {
+            for (long offset = start; offset < end; offset += Integer.MAX_VALUE) {
+                int length = (int) Math.min(Integer.MAX_VALUE, end - offset);
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                for (int i = 0; i < length; i++) {
+                    if (buf.get(i) == '"') {
+                        quotes++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return quotes;
+    }
+
+    // Returns the offset just past the first record-ending newline at or after start.
+    private static long nextRecordStart(FileChannel channel, long start, long size, boolean insideQuotes) {
+        final int window = 1 << 16;
+        try {
+            for (long offset = start; offset < size; offset += window) {
+                int length = (int) Math.min(window, size - offset);
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                for (int i = 0; i < length; i++) {
+                    byte b = buf.get(i);
+                    if (b == '"') {
+                        insideQuotes = !insideQuotes;
+                    } else if (b == '\n' && !insideQuotes) {
+                        return offset + i + 1;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,21 @@
+package main.java.data;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * A filter query in normal form: the metric, the selected countries sorted and
+ * without duplicates, and the dataset version the result belongs to. Queries that
+ * select the same rows from the same data have equal keys, whatever the order in
+ * which the countries were picked.
+ *
+ * @param metric    selected metric
+ * @param countries selected countries, sorted
+ * @param version   {@link DataIndex#getVersion()} the result is computed at
+ */
+public record QueryKey(String metric, List<String> countries, long version) {
+    public static QueryKey of(String metric, Collection<String> countries, long version) {
+        return new QueryKey(metric, List.copyOf(new TreeSet<>(countries)), version);
+    }
+}
@@ -0,0 +1,111 @@
+package main.java.data;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * ResultCache keeps recently computed query results, evicting the least recently
+ * used ones once either the number of entries or their estimated size in bytes
+ * exceeds its bound.
+ * <p>
+ * Results are keyed by a {@link QueryKey}, or a key that contains one, which includes
+ * the dataset version, so a change to the data makes older entries unreachable; they
+ * age out like any other. Hits and misses are counted. Instances are safe for use
+ * from several threads.
+ *
+ * @param <K> key of a result
+ * @param <V> cached result
+ */
+public class ResultCache<K, V> {
+    private final int maxEntries;
+    private final long maxBytes;
+    private final ToLongFunction<V> weigher;
+
+    // Entries in access order, least recently used first
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private record Entry<V>(V value, long bytes) {
+    }
+
+    /**
+     * @param maxEntries most results kept
+     * @param maxBytes   most estimated bytes kept; a larger single result is not cached
+     * @param weigher    estimates the bytes a result holds on to
+     */
+    public ResultCache(int maxEntries, long maxBytes, ToLongFunction<V> weigher) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.weigher = weigher;
+    }
+
+    // Returns the cached result of the query, or null, and counts a hit or miss.
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value();
+    }
+
+    // Caches the result of a query, evicting least recently used results as needed.
+    public synchronized void put(K key, V value) {
+        long size = weigher.applyAsLong(value);
+        Entry<V> previous = entries.remove(key);
+        if (previous != null) {
+            bytes -= previous.bytes();
+        }
+        if (size > maxBytes || maxEntries <= 0) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, size));
+        bytes += size;
+
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries || bytes > maxBytes) {
+            bytes -= eldest.next().getValue().bytes();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Estimated bytes held by the cached results.
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    // Hit and miss counts and the space in use, for status displays.
+    @Override
+    public synchronized String toString() {
+        return String.format("%,d hits, %,d misses, %,d evictions; %d entries, %,d KB",
+                hits, misses, evictions, entries.size(), bytes / 1024);
+    }
+}
@@ -0,0 +1,38 @@
+package main.java.data;
+
+import main.java.model.CountryData;
+
+import java.util.List;
+
+/**
+ * The difference between the rows of a {@link DataIndex} and a newer version of
+ * their source, as found by {@link CsvDeltaReader}. Rows are matched by country
+ * code and series code; changed and removed rows are addressed by row number.
+ *
+ * @param added       rows whose key the index does not hold, in file order
+ * @param updatedRows row numbers whose contents changed, ascending
+ * @param updated     the new contents of those rows, in the same order
+ * @param removedRows row numbers whose key is no longer in the source, ascending
+ */
+public record RowDelta(List<CountryData> added, int[] updatedRows, List<CountryData> updated, int[] removedRows) {
+    public RowDelta {
+        if (updatedRows.length != updated.size()) {
+            throw new IllegalArgumentException(updatedRows.length + " row numbers for " + updated.size() + " updated rows");
+        }
+    }
+
+    // True if the source holds the same rows as the index.
+    public boolean isEmpty() {
+        return added.isEmpty() && updatedRows.length == 0 && removedRows.length == 0;
+    }
+
+    // Number of rows added, changed or removed.
+    public int size() {
+        return added.size() + updatedRows.length + removedRows.length;
+    }
+
+    @Override
+    public String toString() {
+        return updatedRows.length + " changed, " + added.size() + " added, " + removedRows.length + " removed";
+    }
+}
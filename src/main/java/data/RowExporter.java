@@ -0,0 +1,315 @@
+package main.java.data;
+
+import main.java.metrics.Metrics;
+import main.java.metrics.Stage;
+import main.java.model.CountryData;
+import main.java.model.NameDictionary;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * RowExporter writes rows to a file in an {@link ExportFormat}, streaming: each row
+ * is encoded into one reused buffer that is written to a {@link FileChannel}
+ * whenever it fills, so the output is never held in memory. Values are written for
+ * the years from {@code fromYear} to {@code toYear}.
+ * <p>
+ * The file is written next to the target under a temporary name and moved into
+ * place once complete; a failed or cancelled export leaves no partial file. The
+ * export stops with an {@link InterruptedIOException} when the thread is interrupted.
+ * <p>
+ * COLUMNAR layout (big-endian):
+ * <pre>
+ * header:  magic, version, first year, year count, rows per group
+ * groups:  row count n, country ids int[n], series ids int[n],
+ *          then per year: validity long[(n + 63) / 64], values double[n]
+ * footer:  country table (name, code), series table (name, code),
+ *          row count, group count, footer position (long, the last 8 bytes)
+ * </pre>
+ * Strings are a byte length, -1 for null, followed by UTF-8 bytes. Ids index the
+ * tables in the footer; missing values are stored as 0 with their validity bit clear.
+ */
+public final class RowExporter {
+    static final int COLUMNAR_MAGIC = 0x47445043; // "GDPC"
+    static final int COLUMNAR_VERSION = 1;
+    // Rows buffered per group of the columnar format
+    static final int GROUP_ROWS = 1024;
+    private static final int BUFFER_BYTES = 1 << 16;
+    // Rows written between progress reports
+    private static final int PROGRESS_ROWS = 1024;
+
+    private final ExportFormat format;
+    private final int fromYear;
+    private final int toYear;
+
+    public RowExporter(ExportFormat format, int fromYear, int toYear) {
+        if (toYear < fromYear) {
+            throw new IllegalArgumentException("No years to export: " + fromYear + " to " + toYear);
+        }
+        this.format = format;
+        this.fromYear = fromYear;
+        this.toYear = toYear;
+    }
+
+    /**
+     * Writes the rows to the target file, replacing it.
+     *
+     * @param progress told the number of rows written so far, now and then
+     * @return the number of bytes written
+     * @throws InterruptedIOException if the thread was interrupted; nothing is left behind
+     */
+    public long export(List<CountryData> rows, Path target, LongConsumer progress) throws IOException {
+        Stage.Sample sample = Metrics.EXPORT.start();
+        Path tempPath = target.resolveSibling(target.getFileName() + ".part");
+        long bytes;
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            switch (format) {
+                case CSV -> writeCsv(rows, out, progress);
+                case NDJSON -> writeNdjson(rows, out, progress);
+                case COLUMNAR -> writeColumnar(rows, out, progress);
+            }
+            bytes = out.finish();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        Files.move(tempPath, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        progress.accept(rows.size());
+        sample.stop(rows.size());
+        return bytes;
+    }
+
+    private void writeCsv(List<CountryData> rows, Output out, LongConsumer progress) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        line.append("Country Name,Country Code,Series Name,Series Code");
+        for (int year = fromYear; year <= toYear; year++) {
+            line.append(',').append(year).append(" [YR").append(year).append(']');
+        }
+        out.text(line.append('\n'));
+        for (int i = 0; i < rows.size(); i++) {
+            CountryData data = rows.get(i);
+            line.setLength(0);
+            csvField(line, data.getCountryName()).append(',');
+            csvField(line, data.getCountryCode()).append(',');
+            csvField(line, data.getSeriesName()).append(',');
+            csvField(line, data.getSeriesCode());
+            for (int year = fromYear; year <= toYear; year++) {
+                line.append(',');
+                if (data.hasValue(year)) {
+                    line.append(data.valueAt(year));
+                } else {
+                    line.append(".."); // Missing, as in the World Bank export
+                }
+            }
+            out.text(line.append('\n'));
+            rowDone(i, progress);
+        }
+    }
+
+    private void writeNdjson(List<CountryData> rows, Output out, LongConsumer progress) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        for (int i = 0; i < rows.size(); i++) {
+            line.setLength(0);
+            new JsonWriter(line).row(rows.get(i), fromYear, toYear);
+            out.text(line.append('\n'));
+            rowDone(i, progress);
+        }
+    }
+
+    private void writeColumnar(List<CountryData> rows, Output out, LongConsumer progress) throws IOException {
+        int years = toYear - fromYear + 1;
+        out.room(20).putInt(COLUMNAR_MAGIC).putInt(COLUMNAR_VERSION).putInt(fromYear).putInt(years).putInt(GROUP_ROWS);
+
+        // Dictionary id -> id in the footer tables, assigned as rows are written
+        int[] countryIds = new int[0];
+        int[] seriesIds = new int[0];
+        List<Integer> countries = new ArrayList<>();
+        List<Integer> series = new ArrayList<>();
+        double[] column = new double[Math.min(GROUP_ROWS, rows.size())];
+        long[] validity = new long[(column.length + 63) >>> 6];
+        int groups = 0;
+        for (int start = 0; start < rows.size(); start += GROUP_ROWS) {
+            int n = Math.min(GROUP_ROWS, rows.size() - start);
+            out.room(4).putInt(n);
+            for (int i = 0; i < n; i++) {
+                int id = rows.get(start + i).getCountryId();
+                countryIds = grow(countryIds, id);
+                out.room(4).putInt(localId(countryIds, countries, id));
+            }
+            for (int i = 0; i < n; i++) {
+                int id = rows.get(start + i).getSeriesId();
+                seriesIds = grow(seriesIds, id);
+                out.room(4).putInt(localId(seriesIds, series, id));
+            }
+            for (int year = fromYear; year <= toYear; year++) {
+                Arrays.fill(validity, 0L);
+                for (int i = 0; i < n; i++) {
+                    CountryData data = rows.get(start + i);
+                    if (data.hasValue(year)) {
+                        column[i] = data.valueAt(year);
+                        validity[i >>> 6] |= 1L << i;
+                    } else {
+                        column[i] = 0.0;
+                    }
+                }
+                for (int word = 0; word < (n + 63) >>> 6; word++) {
+                    out.room(8).putLong(validity[word]);
+                }
+                for (int i = 0; i < n; i++) {
+                    out.room(8).putDouble(column[i]);
+                }
+            }
+            groups++;
+            progress.accept(start + n);
+            checkInterrupted();
+        }
+
+        long footerPosition = out.position();
+        writeTable(out, countries, NameDictionary.COUNTRIES);
+        writeTable(out, series, NameDictionary.SERIES);
+        out.room(16).putInt(rows.size()).putInt(groups).putLong(footerPosition);
+    }
+
+    // Reports progress every PROGRESS_ROWS rows and stops if the thread was interrupted.
+    private static void rowDone(int index, LongConsumer progress) throws InterruptedIOException {
+        if ((index + 1) % PROGRESS_ROWS == 0) {
+            progress.accept(index + 1);
+            checkInterrupted();
+        }
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.interrupted()) {
+            throw new InterruptedIOException("Export cancelled");
+        }
+    }
+
+    // Grows an id map so the id fits; new entries are -1 until the id is first used.
+    private static int[] grow(int[] ids, int id) {
+        if (id < ids.length) {
+            return ids;
+        }
+        int oldLength = ids.length;
+        int[] grown = Arrays.copyOf(ids, Math.max(id + 1, oldLength * 2));
+        Arrays.fill(grown, oldLength, grown.length, -1);
+        return grown;
+    }
+
+    private static int localId(int[] ids, List<Integer> table, int id) {
+        if (ids[id] < 0) {
+            ids[id] = table.size();
+            table.add(id);
+        }
+        return ids[id];
+    }
+
+    private static void writeTable(Output out, List<Integer> table, NameDictionary dictionary) throws IOException {
+        out.room(4).putInt(table.size());
+        for (int id : table) {
+            writeString(out, dictionary.name(id));
+            writeString(out, dictionary.code(id));
+        }
+    }
+
+    private static void writeString(Output out, String value) throws IOException {
+        if (value == null) {
+            out.room(4).putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.room(4).putInt(bytes.length);
+        out.bytes(bytes);
+    }
+
+    // Appends a field, quoted if it holds a separator, quote or line break.
+    private static StringBuilder csvField(StringBuilder out, String value) {
+        if (value == null) {
+            return out;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return out.append(value);
+        }
+        return out.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    // The buffer the output is encoded into, written to the channel whenever it fills.
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        // Unpaired surrogates are replaced, as String.getBytes does
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private long written;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        // The buffer, with at least the given number of bytes free.
+        ByteBuffer room(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+
+        // Encodes text as UTF-8.
+        void text(CharSequence text) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(text);
+            encoder.reset();
+            while (encoder.encode(chars, buffer, true).isOverflow()) {
+                flush();
+            }
+            while (encoder.flush(buffer).isOverflow()) {
+                flush();
+            }
+        }
+
+        void bytes(byte[] bytes) throws IOException {
+            for (int from = 0; from < bytes.length; ) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int length = Math.min(buffer.remaining(), bytes.length - from);
+                buffer.put(bytes, from, length);
+                from += length;
+            }
+        }
+
+        // Bytes produced so far, written or not.
+        long position() {
+            return written + buffer.position();
+        }
+
+        // Writes what is left and returns the total number of bytes.
+        long finish() throws IOException {
+            flush();
+            return written;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
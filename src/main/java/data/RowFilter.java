@@ -0,0 +1,76 @@
+package main.java.data;
+
+import main.java.model.CountryData;
+import main.java.model.NameDictionary;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * RowFilter decides which rows a series and a set of countries select by testing
+ * the rows' dictionary ids against id sets built once, so no string is compared
+ * per row. Ids assigned after the filter was built, by rows loaded later, are
+ * tested by name instead.
+ */
+public final class RowFilter {
+    // Selects every row
+    public static final RowFilter ALL = new RowFilter(null, null, null, null);
+
+    private final IdSet series;    // null keeps every series
+    private final IdSet countries; // null keeps every country
+
+    private RowFilter(NameDictionary seriesDictionary, Predicate<String> seriesNames,
+                      NameDictionary countryDictionary, Predicate<String> countryNames) {
+        this.series = seriesNames == null ? null : new IdSet(seriesDictionary, seriesNames);
+        this.countries = countryNames == null ? null : new IdSet(countryDictionary, countryNames);
+    }
+
+    /**
+     * Filter for the rows of a series and countries.
+     *
+     * @param seriesName series to keep, or null to keep every series
+     * @param countries  country names to keep, or null to keep every country
+     */
+    public static RowFilter of(String seriesName, Collection<String> countries) {
+        Set<String> countrySet = countries == null ? null : new HashSet<>(countries);
+        return new RowFilter(NameDictionary.SERIES, seriesName == null ? null : seriesName::equals,
+                NameDictionary.COUNTRIES, countrySet == null ? null : countrySet::contains);
+    }
+
+    // Filter for the rows whose series name passes the test; rows without a series name never do.
+    public static RowFilter ofSeries(Predicate<String> seriesNames) {
+        return new RowFilter(NameDictionary.SERIES, name -> name != null && seriesNames.test(name), null, null);
+    }
+
+    // True if the row belongs to the series and one of the countries.
+    public boolean matches(CountryData data) {
+        return (series == null || series.contains(data.getSeriesId()))
+                && (countries == null || countries.contains(data.getCountryId()));
+    }
+
+    // Ids of a dictionary whose names pass a test, as of when it was built.
+    private static final class IdSet {
+        private final NameDictionary dictionary;
+        private final Predicate<String> names;
+        private final BitSet ids = new BitSet();
+        private final int limit; // Ids from here on were assigned later
+
+        IdSet(NameDictionary dictionary, Predicate<String> names) {
+            this.dictionary = dictionary;
+            this.names = names;
+            this.limit = dictionary.size();
+            for (int id = 0; id < limit; id++) {
+                if (names.test(dictionary.name(id))) {
+                    ids.set(id);
+                }
+            }
+        }
+
+        boolean contains(int id) {
+            return id < limit ? ids.get(id) : names.test(dictionary.name(id));
+        }
+    }
+}
@@ -0,0 +1,512 @@
+package main.java.data;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * SearchIndex finds entities, such as countries, by name or code as the user types.
+ * <p>
+ * Entities are kept sorted by name, and their number in that order is their id.
+ * Every name, every word start inside a name and every code is a key in one sorted
+ * array; a prefix lookup is a binary search followed by a scan of the matching
+ * keys. A query of several words matches names in which every word starts a word.
+ * <p>
+ * Names that are not prefix matches are tried with a bounded edit distance against
+ * the start of the name and of each word, so small typos still match. Only names
+ * sharing enough character bigrams with the query are tried: k edits can remove at
+ * most 2k of the query's distinct bigrams, so the others must all occur in the name.
+ * Bigram posting lists find those names without looking at the rest.
+ * <p>
+ * Matches are ranked (exact code, exact name, name prefix, code prefix, word
+ * prefix, then by edit distance) and ties are broken by name. A search only uses
+ * buffers allocated when the index is built, so it allocates nothing per query.
+ * Instances are not thread-safe.
+ */
+public final class SearchIndex {
+    // Match ranks, best first; fuzzy matches rank FUZZY + edit distance
+    private static final int EXACT_CODE = 0;
+    private static final int EXACT_NAME = 1;
+    private static final int NAME_PREFIX = 2;
+    private static final int CODE_PREFIX = 3;
+    private static final int WORD_PREFIX = 4;
+    private static final int FUZZY = 5;
+    private static final int MAX_DISTANCE = 2;
+    private static final int RANK_COUNT = FUZZY + MAX_DISTANCE + 1;
+
+    // Key kinds
+    private static final byte NAME = 0;
+    private static final byte WORD = 1;
+    private static final byte CODE = 2;
+
+    private static final int INF = 1 << 20;
+
+    // Bigram buckets: [a-z0-9] map to 0..35, every other character to 36
+    private static final int CHAR_CLASSES = 37;
+
+    private final String[] names; // Sorted by name; the index is the entity id
+    private final char[][] foldedNames;
+    private final int[][] wordStarts; // Offsets of the words after the first in each folded name
+    private int[][] bigramPostings; // Ids of the entities whose name has each bigram
+
+    // Prefix keys in sorted order
+    private final char[][] keys;
+    private final int[] keyEntity;
+    private final byte[] keyKind;
+
+    // Per-query scratch space, reused by every search
+    private char[] query = new char[32];
+    private int[] tokenFrom = new int[8]; // Words of the query, as offsets into query
+    private int[] tokenTo = new int[8];
+    private int[] queryBigrams = new int[32];
+    private final int[] stamp; // Query number that last matched each entity
+    private final int[] rank; // Best rank of each entity in the current query
+    private final int[] bigramStamp; // Query number that last counted bigrams of each entity
+    private final int[] bigramHits; // Query bigrams found in each entity's name
+    private final int[] rankCounts = new int[RANK_COUNT + 1];
+    private int[] previousRow;
+    private int[] currentRow;
+    private int queryNumber;
+
+    /**
+     * Builds an index over the given entities.
+     *
+     * @param names entity names; duplicates are indexed once
+     * @param codes code of the entity at the same position, or null if it has none
+     */
+    public SearchIndex(List<String> names, List<String> codes) {
+        Integer[] order = new Integer[names.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Comparator<Integer> byName = Comparator.comparing(names::get, String.CASE_INSENSITIVE_ORDER);
+        Arrays.sort(order, byName.thenComparing(names::get));
+
+        List<String> sortedNames = new ArrayList<>();
+        List<String> sortedCodes = new ArrayList<>();
+        for (int i : order) {
+            String name = names.get(i);
+            if (!sortedNames.isEmpty() && sortedNames.get(sortedNames.size() - 1).equals(name)) {
+                continue;
+            }
+            sortedNames.add(name);
+            sortedCodes.add(i < codes.size() ? codes.get(i) : null);
+        }
+
+        int count = sortedNames.size();
+        this.names = sortedNames.toArray(new String[0]);
+        this.foldedNames = new char[count][];
+        this.wordStarts = new int[count][];
+        List<char[]> keyList = new ArrayList<>();
+        List<int[]> keyInfo = new ArrayList<>(); // {entity, kind}
+        int longest = 0;
+        for (int id = 0; id < count; id++) {
+            char[] folded = fold(this.names[id]);
+            foldedNames[id] = folded;
+            longest = Math.max(longest, folded.length);
+            keyList.add(folded);
+            keyInfo.add(new int[]{id, NAME});
+
+            List<Integer> starts = new ArrayList<>();
+            for (int i = 1; i < folded.length; i++) {
+                if (Character.isLetterOrDigit(folded[i]) && !Character.isLetterOrDigit(folded[i - 1])) {
+                    starts.add(i);
+                    keyList.add(Arrays.copyOfRange(folded, i, folded.length));
+                    keyInfo.add(new int[]{id, WORD});
+                }
+            }
+            wordStarts[id] = starts.stream().mapToInt(Integer::intValue).toArray();
+
+            String code = sortedCodes.get(id);
+            if (code != null && !code.isBlank()) {
+                keyList.add(fold(code.trim()));
+                keyInfo.add(new int[]{id, CODE});
+            }
+        }
+
+        Integer[] keyOrder = new Integer[keyList.size()];
+        for (int i = 0; i < keyOrder.length; i++) {
+            keyOrder[i] = i;
+        }
+        Arrays.sort(keyOrder, (a, b) -> Arrays.compare(keyList.get(a), keyList.get(b)));
+        this.keys = new char[keyOrder.length][];
+        this.keyEntity = new int[keyOrder.length];
+        this.keyKind = new byte[keyOrder.length];
+        for (int i = 0; i < keyOrder.length; i++) {
+            keys[i] = keyList.get(keyOrder[i]);
+            keyEntity[i] = keyInfo.get(keyOrder[i])[0];
+            keyKind[i] = (byte) keyInfo.get(keyOrder[i])[1];
+        }
+
+        // Posting lists: each entity at most once per bigram of its name
+        int[] postingSizes = new int[CHAR_CLASSES * CHAR_CLASSES];
+        int[] lastEntity = new int[postingSizes.length];
+        Arrays.fill(lastEntity, -1);
+        for (int pass = 0; pass < 2; pass++) {
+            if (pass == 1) {
+                bigramPostings = new int[postingSizes.length][];
+                for (int b = 0; b < postingSizes.length; b++) {
+                    bigramPostings[b] = new int[postingSizes[b]];
+                    postingSizes[b] = 0;
+                }
+                Arrays.fill(lastEntity, -1);
+            }
+            for (int id = 0; id < count; id++) {
+                char[] folded = foldedNames[id];
+                for (int i = 0; i + 1 < folded.length; i++) {
+                    int b = bigram(folded[i], folded[i + 1]);
+                    if (lastEntity[b] != id) {
+                        lastEntity[b] = id;
+                        if (pass == 1) {
+                            bigramPostings[b][postingSizes[b]] = id;
+                        }
+                        postingSizes[b]++;
+                    }
+                }
+            }
+        }
+
+        this.stamp = new int[count];
+        this.rank = new int[count];
+        this.bigramStamp = new int[count];
+        this.bigramHits = new int[count];
+        this.previousRow = new int[longest + MAX_DISTANCE + 2];
+        this.currentRow = new int[previousRow.length];
+    }
+
+    // Bucket of a character pair.
+    private static int bigram(char first, char second) {
+        return charClass(first) * CHAR_CLASSES + charClass(second);
+    }
+
+    private static int charClass(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        if (c >= '0' && c <= '9') {
+            return 26 + c - '0';
+        }
+        return 36;
+    }
+
+    // Lower-cases and strips accents, so "Côte" is found by "cote".
+    private static char[] fold(String text) {
+        String stripped = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return stripped.toLowerCase(Locale.ROOT).toCharArray();
+    }
+
+    // Number of indexed entities.
+    public int size() {
+        return names.length;
+    }
+
+    // Name of the entity with the given id.
+    public String getName(int id) {
+        return names[id];
+    }
+
+    // Returns the id of the entity with exactly this name, or -1.
+    public int indexOf(String name) {
+        int lo = 0;
+        int hi = names.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = String.CASE_INSENSITIVE_ORDER.compare(names[mid], name);
+            if (cmp == 0) {
+                cmp = names[mid].compareTo(name);
+            }
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the entities matching the query, best match first. A blank query
+     * matches every entity in name order.
+     *
+     * @param text    the query
+     * @param results receives the ids of the matches; must hold {@link #size()} entries
+     * @return the number of ids written to {@code results}
+     */
+    public int search(CharSequence text, int[] results) {
+        int length = foldQuery(text);
+        if (length == 0) {
+            for (int id = 0; id < names.length; id++) {
+                results[id] = id;
+            }
+            return names.length;
+        }
+        int current = ++queryNumber;
+
+        // Prefix matches: the keys starting with the query form one run in the sorted keys
+        for (int k = lowerBound(0, length); k < keys.length && startsWithQuery(keys[k], 0, length); k++) {
+            boolean exact = keys[k].length == length;
+            int keyRank = switch (keyKind[k]) {
+                case NAME -> exact ? EXACT_NAME : NAME_PREFIX;
+                case CODE -> exact ? EXACT_CODE : CODE_PREFIX;
+                default -> WORD_PREFIX;
+            };
+            offer(keyEntity[k], keyRank, current);
+        }
+
+        // Several words: names where the first word starts a word and so do all others
+        int tokens = tokenize(length);
+        if (tokens > 1) {
+            int from = tokenFrom[0];
+            int tokenLength = tokenTo[0] - from;
+            for (int k = lowerBound(from, tokenLength); k < keys.length && startsWithQuery(keys[k], from, tokenLength); k++) {
+                if (keyKind[k] != CODE && allTokensStartWords(keyEntity[k], tokens)) {
+                    offer(keyEntity[k], WORD_PREFIX, current);
+                }
+            }
+        }
+
+        // Fuzzy matches for entities the prefix passes missed
+        int maxDistance = length <= 3 ? 0 : length <= 6 ? 1 : MAX_DISTANCE;
+        if (maxDistance > 0) {
+            int distinct = collectQueryBigrams(length);
+            int needed = distinct - 2 * maxDistance;
+            if (needed <= 0) {
+                // Too few bigrams to rule anything out: try every entity
+                for (int id = 0; id < names.length; id++) {
+                    tryFuzzy(id, length, maxDistance, current);
+                }
+            } else {
+                for (int i = 0; i < distinct; i++) {
+                    for (int id : bigramPostings[queryBigrams[i]]) {
+                        if (bigramStamp[id] != current) {
+                            bigramStamp[id] = current;
+                            bigramHits[id] = 0;
+                        }
+                        if (++bigramHits[id] == needed) {
+                            tryFuzzy(id, length, maxDistance, current);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Order by rank, then by id (name order): a counting sort over the ranks
+        Arrays.fill(rankCounts, 0);
+        for (int id = 0; id < names.length; id++) {
+            if (stamp[id] == current) {
+                rankCounts[rank[id] + 1]++;
+            }
+        }
+        for (int r = 1; r <= RANK_COUNT; r++) {
+            rankCounts[r] += rankCounts[r - 1];
+        }
+        for (int id = 0; id < names.length; id++) {
+            if (stamp[id] == current) {
+                results[rankCounts[rank[id]]++] = id;
+            }
+        }
+        return rankCounts[RANK_COUNT - 1];
+    }
+
+    // Offers the entity as a fuzzy match if the start of its name or of a word is close to the query.
+    private void tryFuzzy(int id, int length, int maxDistance, int current) {
+        if (stamp[id] == current) {
+            return; // Already a prefix match
+        }
+        char[] name = foldedNames[id];
+        int best = prefixDistance(length, name, 0, maxDistance);
+        for (int start : wordStarts[id]) {
+            if (best <= 1) {
+                break;
+            }
+            best = Math.min(best, prefixDistance(length, name, start, maxDistance));
+        }
+        if (best <= maxDistance) {
+            offer(id, FUZZY + best, current);
+        }
+    }
+
+    // True if every query word after the first is a prefix of some word of the entity's name.
+    private boolean allTokensStartWords(int id, int tokens) {
+        char[] name = foldedNames[id];
+        for (int t = 1; t < tokens; t++) {
+            int from = tokenFrom[t];
+            int tokenLength = tokenTo[t] - from;
+            boolean found = startsWithAt(name, 0, from, tokenLength);
+            for (int i = 0; !found && i < wordStarts[id].length; i++) {
+                found = startsWithAt(name, wordStarts[id][i], from, tokenLength);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean startsWithAt(char[] name, int start, int from, int tokenLength) {
+        return name.length - start >= tokenLength
+                && Arrays.equals(name, start, start + tokenLength, query, from, from + tokenLength);
+    }
+
+    // Splits the folded query into words; returns their number.
+    private int tokenize(int length) {
+        int tokens = 0;
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(query[i])) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            if (tokens == tokenFrom.length) {
+                tokenFrom = Arrays.copyOf(tokenFrom, tokens * 2);
+                tokenTo = Arrays.copyOf(tokenTo, tokens * 2);
+            }
+            tokenFrom[tokens] = i;
+            while (i < length && Character.isLetterOrDigit(query[i])) {
+                i++;
+            }
+            tokenTo[tokens++] = i;
+        }
+        return tokens;
+    }
+
+    // Collects the distinct bigram buckets of the query; returns their number.
+    private int collectQueryBigrams(int length) {
+        if (queryBigrams.length < length) {
+            queryBigrams = new int[Math.max(length, queryBigrams.length * 2)];
+        }
+        int distinct = 0;
+        for (int i = 0; i + 1 < length; i++) {
+            int b = bigram(query[i], query[i + 1]);
+            boolean seen = false;
+            for (int j = 0; j < distinct && !seen; j++) {
+                seen = queryBigrams[j] == b;
+            }
+            if (!seen) {
+                queryBigrams[distinct++] = b;
+            }
+        }
+        return distinct;
+    }
+
+    // Records a match, keeping the best rank per entity.
+    private void offer(int id, int matchRank, int current) {
+        if (stamp[id] != current) {
+            stamp[id] = current;
+            rank[id] = matchRank;
+        } else if (matchRank < rank[id]) {
+            rank[id] = matchRank;
+        }
+    }
+
+    /**
+     * Folds the query into the reusable buffer as {@link #fold} folds indexed names;
+     * returns its length without surrounding blanks. ASCII queries, the usual case,
+     * are lower-cased in place without normalizing.
+     */
+    private int foldQuery(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) >= 128) {
+                return copyQuery(fold(text.subSequence(start, end).toString()));
+            }
+        }
+        int length = end - start;
+        if (length > query.length) {
+            query = new char[Math.max(length, query.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(start + i);
+            query[i] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return length;
+    }
+
+    private int copyQuery(char[] folded) {
+        if (folded.length > query.length) {
+            query = new char[Math.max(folded.length, query.length * 2)];
+        }
+        System.arraycopy(folded, 0, query, 0, folded.length);
+        return folded.length;
+    }
+
+    // Index of the first key not less than query[from, from + length).
+    private int lowerBound(int from, int length) {
+        int lo = 0;
+        int hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Arrays.compare(keys[mid], 0, keys[mid].length, query, from, from + length) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private boolean startsWithQuery(char[] key, int from, int length) {
+        return key.length >= length && Arrays.equals(key, 0, length, query, from, from + length);
+    }
+
+    /**
+     * Edit distance between the query and the closest prefix of {@code text}
+     * starting at {@code start}, computed only within a band of width
+     * {@code 2 * maxDistance + 1}.
+     *
+     * @return the distance, or {@code maxDistance + 1} if it exceeds maxDistance
+     */
+    private int prefixDistance(int length, char[] text, int start, int maxDistance) {
+        int n = Math.min(text.length - start, length + maxDistance);
+        int[] prev = previousRow;
+        int[] cur = currentRow;
+        for (int j = 0; j <= n; j++) {
+            prev[j] = j <= maxDistance ? j : INF;
+        }
+        for (int i = 1; i <= length; i++) {
+            int lo = Math.max(1, i - maxDistance);
+            int hi = Math.min(n, i + maxDistance);
+            cur[0] = i <= maxDistance ? i : INF;
+            if (lo > 1) {
+                cur[lo - 1] = INF;
+            }
+            int rowMin = lo == 1 ? cur[0] : INF;
+            char q = query[i - 1];
+            for (int j = lo; j <= hi; j++) {
+                int value = prev[j - 1] + (q == text[start + j - 1] ? 0 : 1);
+                value = Math.min(value, prev[j] + 1);
+                value = Math.min(value, cur[j - 1] + 1);
+                cur[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (hi < n) {
+                cur[hi + 1] = INF;
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] swap = prev;
+            prev = cur;
+            cur = swap;
+        }
+        int best = INF;
+        for (int j = Math.max(0, length - maxDistance); j <= Math.min(n, length + maxDistance); j++) {
+            best = Math.min(best, prev[j]);
+        }
+        return Math.min(best, maxDistance + 1);
+    }
+}
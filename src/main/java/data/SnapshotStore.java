@@ -0,0 +1,419 @@
+package main.java.data;
+
+import main.java.metrics.Metrics;
+import main.java.metrics.Stage;
+import main.java.model.CountryData;
+import main.java.model.NameDictionary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * SnapshotStore keeps a binary, columnar copy of a parsed CSV file next to it so
+ * that later launches can skip text parsing entirely.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * header:  magic, version, source mtime, source size, payload CRC32, payload length
+ * payload: row count, first year, year count,
+ *          country table (name, code), series table (name, code),
+ *          per-row country id and series id,
+ *          values as double[rows * years], validity as long[rows * words]
+ * </pre>
+ * The snapshot is memory-mapped when read, a window at a time so files over 2 GB
+ * load too, and several running instances share the same page cache. It is treated
+ * as stale when the CSV's modification time or size no longer matches, or when the
+ * checksum does not verify.
+ */
+public class SnapshotStore {
+    private static final int MAGIC = 0x47445053; // "GDPS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8 + 8;
+    private static final String SUFFIX = ".snapshot";
+    // Largest region of the snapshot mapped at once
+    private static final int WINDOW_BYTES = 1 << 26;
+
+    private final Path sourcePath;
+    private final Path snapshotPath;
+
+    // Constructor initializes the store for the given CSV file.
+    public SnapshotStore(String csvFilePath) {
+        this.sourcePath = Paths.get(csvFilePath);
+        this.snapshotPath = Paths.get(csvFilePath + SUFFIX);
+    }
+
+    /**
+     * Identity of a version of the CSV file: its modification time and size.
+     * Take it before parsing, so a file rewritten during the parse stamps the
+     * snapshot with the old identity and is parsed again on the next launch.
+     */
+    public record SourceStamp(long modifiedMillis, long size) {
+    }
+
+    // Returns the current identity of the CSV file.
+    public SourceStamp stampSource() throws IOException {
+        return new SourceStamp(Files.getLastModifiedTime(sourcePath).toMillis(), Files.size(sourcePath));
+    }
+
+    // Returns the path of the snapshot file.
+    public Path getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    // Returns true if a snapshot exists and was written from the current version of the CSV.
+    public boolean isFresh() {
+        if (!Files.isRegularFile(snapshotPath) || !Files.isRegularFile(sourcePath)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return false;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading until the header is complete
+            }
+            header.flip();
+            return header.getInt() == MAGIC
+                    && header.getInt() == VERSION
+                    && new SourceStamp(header.getLong(), header.getLong()).equals(stampSource());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Loads all rows from the snapshot.
+    public List<CountryData> load() throws IOException {
+        List<CountryData> dataList = new ArrayList<>();
+        load(dataList::add, rows -> {
+        });
+        return dataList;
+    }
+
+    /**
+     * Loads the snapshot, handing every row to the sink in the original file order
+     * and reporting the share of snapshot bytes consumed so far to {@code progress}.
+     *
+     * @throws IOException if the snapshot is unreadable or its checksum does not match
+     * @throws InterruptedIOException if the calling thread is interrupted
+     */
+    public void load(Consumer<CountryData> sink, LongConsumer progress) throws IOException {
+        Stage.Sample sample = Metrics.SNAPSHOT_LOAD.start();
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Not a snapshot file: " + snapshotPath);
+            }
+            MappedReader in = new MappedReader(channel, 0);
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Not a snapshot file: " + snapshotPath);
+            }
+            in.getLong(); // Source mtime, checked by isFresh()
+            in.getLong(); // Source size
+            long checksum = in.getLong();
+            long payloadLength = in.getLong();
+            if (payloadLength != size - HEADER_BYTES) {
+                throw new IOException("Truncated snapshot file: " + snapshotPath);
+            }
+
+            CRC32 crc = new CRC32();
+            for (long position = HEADER_BYTES; position < size; position += WINDOW_BYTES) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_BYTES, size - position)));
+            }
+            if (crc.getValue() != checksum) {
+                throw new IOException("Snapshot checksum mismatch: " + snapshotPath);
+            }
+
+            int rowCount = in.getInt();
+            int firstYear = in.getInt();
+            int yearCount = in.getInt();
+            int words = (yearCount + 63) >>> 6;
+            if (rowCount < 0 || yearCount < 0) {
+                throw new IOException("Corrupt snapshot file: " + snapshotPath);
+            }
+
+            int[] countries = readTable(in, NameDictionary.COUNTRIES);
+            int[] series = readTable(in, NameDictionary.SERIES);
+            int[] countryIds = new int[rowCount];
+            int[] seriesIds = new int[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                countryIds[row] = countries[in.getInt()];
+            }
+            for (int row = 0; row < rowCount; row++) {
+                seriesIds[row] = series[in.getInt()];
+            }
+            long payloadOffset = in.position() - HEADER_BYTES;
+            long valuesStart = in.position() + (8 - payloadOffset % 8) % 8;
+            long validityStart = valuesStart + (long) rowCount * yearCount * 8;
+            if (validityStart + (long) rowCount * words * 8 != size) {
+                throw new IOException("Corrupt snapshot file: " + snapshotPath);
+            }
+
+            // Values and validity are separate blocks, each read through its own window
+            MappedReader values = new MappedReader(channel, valuesStart);
+            MappedReader validity = new MappedReader(channel, validityStart);
+            for (int row = 0; row < rowCount; row++) {
+                // The row takes ownership of the decoded arrays
+                double[] rowValues = new double[yearCount];
+                long[] rowValidity = new long[words];
+                values.getDoubles(rowValues);
+                validity.getLongs(rowValidity);
+                sink.accept(new CountryData(countryIds[row], seriesIds[row], firstYear, rowValues, rowValidity));
+                if ((row & 1023) == 1023) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Snapshot loading interrupted");
+                    }
+                    progress.accept((long) ((double) size * (row + 1) / rowCount));
+                }
+            }
+            progress.accept(size);
+            sample.stop(rowCount);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the rows, stamped with the identity the CSV had before it
+     * was parsed. The file is written to a temporary name and moved into place.
+     */
+    public void save(List<CountryData> dataList, SourceStamp source) throws IOException {
+        // Year span covering every row
+        int firstYear = Integer.MAX_VALUE;
+        int lastYear = Integer.MIN_VALUE;
+        for (CountryData data : dataList) {
+            if (data.lastYear() != Integer.MIN_VALUE) {
+                firstYear = Math.min(firstYear, data.firstYear());
+                lastYear = Math.max(lastYear, data.lastYear());
+            }
+        }
+        int yearCount = lastYear >= firstYear ? lastYear - firstYear + 1 : 0;
+        if (yearCount == 0) {
+            firstYear = 0;
+        }
+        int words = (yearCount + 63) >>> 6;
+
+        // Renumber the dictionary ids the rows use from 0, so the tables hold only those
+        int[] countryIds = newIdMap(NameDictionary.COUNTRIES);
+        int[] seriesIds = newIdMap(NameDictionary.SERIES);
+        List<Integer> countries = new ArrayList<>();
+        List<Integer> series = new ArrayList<>();
+        int[] rowCountry = new int[dataList.size()];
+        int[] rowSeries = new int[dataList.size()];
+        for (int row = 0; row < dataList.size(); row++) {
+            CountryData data = dataList.get(row);
+            rowCountry[row] = localId(countryIds, countries, data.getCountryId());
+            rowSeries[row] = localId(seriesIds, series, data.getSeriesId());
+        }
+
+        Path tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_BYTES);
+            CRC32 crc = new CRC32();
+            long payloadLength;
+            CountingOutputStream counter = new CountingOutputStream(Channels.newOutputStream(channel));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(counter, crc), 1 << 16));
+            out.writeInt(dataList.size());
+            out.writeInt(firstYear);
+            out.writeInt(yearCount);
+            writeTable(out, countries, NameDictionary.COUNTRIES);
+            writeTable(out, series, NameDictionary.SERIES);
+            for (int id : rowCountry) {
+                out.writeInt(id);
+            }
+            for (int id : rowSeries) {
+                out.writeInt(id);
+            }
+            for (int i = out.size() % 8; i != 0 && i < 8; i++) {
+                out.writeByte(0); // Align the double block
+            }
+            for (CountryData data : dataList) {
+                for (int offset = 0; offset < yearCount; offset++) {
+                    out.writeDouble(data.hasValue(firstYear + offset) ? data.valueAt(firstYear + offset) : 0.0);
+                }
+            }
+            for (CountryData data : dataList) {
+                for (int word = 0; word < words; word++) {
+                    long bits = 0;
+                    for (int bit = 0; bit < 64 && word * 64 + bit < yearCount; bit++) {
+                        if (data.hasValue(firstYear + word * 64 + bit)) {
+                            bits |= 1L << bit;
+                        }
+                    }
+                    out.writeLong(bits);
+                }
+            }
+            out.flush();
+            payloadLength = counter.count;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(source.modifiedMillis()).putLong(source.size())
+                    .putLong(crc.getValue()).putLong(payloadLength).flip();
+            channel.write(header, 0);
+        }
+        Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Dictionary id -> snapshot id, -1 until the id is first used.
+    private static int[] newIdMap(NameDictionary dictionary) {
+        int[] ids = new int[dictionary.size()];
+        Arrays.fill(ids, -1);
+        return ids;
+    }
+
+    private static int localId(int[] ids, List<Integer> table, int id) {
+        if (ids[id] < 0) {
+            ids[id] = table.size();
+            table.add(id);
+        }
+        return ids[id];
+    }
+
+    private static void writeTable(DataOutputStream out, List<Integer> table, NameDictionary dictionary) throws IOException {
+        out.writeInt(table.size());
+        for (int id : table) {
+            writeString(out, dictionary.name(id));
+            writeString(out, dictionary.code(id));
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Reads a (name, code) table, returning the dictionary id of each entry.
+    private static int[] readTable(MappedReader in, NameDictionary dictionary) throws IOException {
+        int[] table = new int[in.getInt()];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = dictionary.idOf(readString(in), readString(in));
+        }
+        return table;
+    }
+
+    private static String readString(MappedReader in) throws IOException {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Reads the file sequentially from a position through a mapped window that moves along.
+    private static final class MappedReader {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        MappedReader(FileChannel channel, long position) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(position);
+        }
+
+        // File position of the next byte.
+        long position() {
+            return windowStart + window.position();
+        }
+
+        int getInt() throws IOException {
+            return need(4).getInt();
+        }
+
+        long getLong() throws IOException {
+            return need(8).getLong();
+        }
+
+        void get(byte[] dst) throws IOException {
+            for (int from = 0; from < dst.length; ) {
+                int length = Math.min(need(1).remaining(), dst.length - from);
+                window.get(dst, from, length);
+                from += length;
+            }
+        }
+
+        void getDoubles(double[] dst) throws IOException {
+            for (int from = 0; from < dst.length; ) {
+                int length = Math.min(need(8).remaining() / 8, dst.length - from);
+                window.asDoubleBuffer().get(dst, from, length);
+                window.position(window.position() + length * 8);
+                from += length;
+            }
+        }
+
+        void getLongs(long[] dst) throws IOException {
+            for (int from = 0; from < dst.length; ) {
+                int length = Math.min(need(8).remaining() / 8, dst.length - from);
+                window.asLongBuffer().get(dst, from, length);
+                window.position(window.position() + length * 8);
+                from += length;
+            }
+        }
+
+        // The window, moved on if fewer than the given number of bytes are left in it.
+        private MappedByteBuffer need(int bytes) throws IOException {
+            if (window.remaining() < bytes) {
+                long position = position();
+                if (position + bytes > size) {
+                    throw new IOException("Unexpected end of snapshot");
+                }
+                map(position);
+            }
+            return window;
+        }
+
+        private void map(long position) throws IOException {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_BYTES, size - position));
+        }
+    }
+
+    // Counts the bytes written through it.
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package main.java.data;
+
+import main.java.model.CountryData;
+import main.java.model.NameDictionary;
+import main.java.model.Percentiles;
+import main.java.model.QuantileSketch;
+import main.java.model.ValueSummary;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * SummaryCube pre-aggregates the loaded values so statistics never rescan raw data.
+ * <p>
+ * The (country, series) cells are the rows themselves, each caching its own
+ * {@link ValueSummary}. The cube adds a (series, year) layer that summarizes every
+ * country's value for a series in a given year. Both layers are filled as rows are loaded,
+ * and rows changed by a reload are taken out again value by value.
+ * <p>
+ * The (series, year) layer is indexed by series id, so loads and reloads never
+ * resolve or hash a series name; names are resolved only when the layer is read.
+ * It is changed during loads and reloads while statistics read it from other
+ * threads, so it is guarded by a lock and read as copies.
+ * <p>
+ * Percentiles cannot be merged like moments. Small selections collect their values
+ * and sort them; larger ones merge the rows' {@link QuantileSketch}es instead.
+ */
+public class SummaryCube {
+    // Selections of at most this many values get exact percentiles, sorting up to 2 MB of values
+    public static final int EXACT_PERCENTILE_VALUES = 1 << 18;
+
+    // Series id -> year -> summary of every country's value; null for ids without values
+    private NavigableMap<Integer, ValueSummary>[] seriesYears = newTable(0);
+    // Guards seriesYears and the summaries in it
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Adds a row to the cube and computes its (country, series) summary.
+    public void add(CountryData data) {
+        data.getSummary();
+        lock.writeLock().lock();
+        try {
+            addYears(data);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addYears(CountryData data) {
+        NavigableMap<Integer, ValueSummary> years = yearsFor(data.getSeriesId());
+        for (int year = data.firstYear(), last = data.lastYear(); year <= last; year++) {
+            if (data.hasValue(year)) {
+                years.computeIfAbsent(year, y -> new ValueSummary()).add(year, data.valueAt(year));
+            }
+        }
+    }
+
+    /**
+     * Takes a row's values out of the (series, year) layer. Years whose summary
+     * cannot simply give the value back, because it was the minimum or maximum,
+     * are added to {@code staleYears} and must be passed to {@link #rebuildYears}.
+     */
+    public void remove(CountryData data, Set<Integer> staleYears) {
+        lock.writeLock().lock();
+        try {
+            NavigableMap<Integer, ValueSummary> years = yearsOf(data.getSeriesId());
+            if (years == null) {
+                return;
+            }
+            for (int year = data.firstYear(), last = data.lastYear(); year <= last; year++) {
+                if (data.hasValue(year)) {
+                    ValueSummary summary = years.get(year);
+                    if (summary != null && !summary.remove(data.valueAt(year))) {
+                        staleYears.add(year);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Recomputes the summaries of a series id in the given years from all of its current rows.
+    public void rebuildYears(int seriesId, Set<Integer> years, Iterable<CountryData> rows) {
+        lock.writeLock().lock();
+        try {
+            NavigableMap<Integer, ValueSummary> summaries = yearsFor(seriesId);
+            for (int year : years) {
+                summaries.remove(year);
+            }
+            for (CountryData data : rows) {
+                for (int year : years) {
+                    if (data.hasValue(year)) {
+                        summaries.computeIfAbsent(year, y -> new ValueSummary()).add(year, data.valueAt(year));
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Adds every row to the cube.
+    public void addAll(Collection<CountryData> rows) {
+        rows.forEach(CountryData::getSummary);
+        lock.writeLock().lock();
+        try {
+            rows.forEach(this::addYears);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a copy of the per-year summaries of a series across all countries,
+     * ordered by year. Series ids sharing the name are combined.
+     */
+    public NavigableMap<Integer, ValueSummary> getSeriesByYear(String seriesName) {
+        lock.readLock().lock();
+        try {
+            NavigableMap<Integer, ValueSummary> copy = new TreeMap<>();
+            for (int id : NameDictionary.SERIES.idsNamed(seriesName)) {
+                NavigableMap<Integer, ValueSummary> years = yearsOf(id);
+                if (years != null) {
+                    years.forEach((year, summary) -> copy.computeIfAbsent(year, y -> new ValueSummary()).merge(summary));
+                }
+            }
+            return copy.isEmpty() ? Collections.emptyNavigableMap() : Collections.unmodifiableNavigableMap(copy);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns a copy of the summary of a series across all countries in a single year.
+    public ValueSummary getSeriesYear(String seriesName, int year) {
+        lock.readLock().lock();
+        try {
+            ValueSummary copy = new ValueSummary();
+            for (int id : NameDictionary.SERIES.idsNamed(seriesName)) {
+                NavigableMap<Integer, ValueSummary> years = yearsOf(id);
+                ValueSummary summary = years == null ? null : years.get(year);
+                if (summary != null) {
+                    copy.merge(summary);
+                }
+            }
+            return copy;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Year summaries of a series id, or null if it has none; the caller holds the lock.
+    private NavigableMap<Integer, ValueSummary> yearsOf(int seriesId) {
+        return seriesId < seriesYears.length ? seriesYears[seriesId] : null;
+    }
+
+    // Year summaries of a series id, created if needed; the caller holds the write lock.
+    private NavigableMap<Integer, ValueSummary> yearsFor(int seriesId) {
+        if (seriesId >= seriesYears.length) {
+            NavigableMap<Integer, ValueSummary>[] grown = newTable(Math.max(seriesId + 1, seriesYears.length * 2));
+            System.arraycopy(seriesYears, 0, grown, 0, seriesYears.length);
+            seriesYears = grown;
+        }
+        NavigableMap<Integer, ValueSummary> years = seriesYears[seriesId];
+        if (years == null) {
+            years = new TreeMap<>();
+            seriesYears[seriesId] = years;
+        }
+        return years;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static NavigableMap<Integer, ValueSummary>[] newTable(int length) {
+        return (NavigableMap<Integer, ValueSummary>[]) new NavigableMap<?, ?>[length];
+    }
+
+    // Combines the (country, series) cells of the given rows.
+    public static ValueSummary combine(Collection<CountryData> rows) {
+        ValueSummary total = new ValueSummary();
+        for (CountryData data : rows) {
+            total.merge(data.getSummary());
+        }
+        return total;
+    }
+
+    // Percentiles of the values of the given rows; estimated from the rows' sketches if there are many values.
+    public static Percentiles percentiles(Collection<CountryData> rows) {
+        long count = 0;
+        for (CountryData data : rows) {
+            count += data.getSummary().getCount();
+        }
+        if (count == 0) {
+            return Percentiles.EMPTY;
+        }
+        if (count <= EXACT_PERCENTILE_VALUES) {
+            double[] values = new double[(int) count];
+            int n = 0;
+            for (CountryData data : rows) {
+                for (int year = data.firstYear(), last = data.lastYear(); year <= last && n < values.length; year++) {
+                    if (data.hasValue(year)) {
+                        values[n++] = data.valueAt(year);
+                    }
+                }
+            }
+            return Percentiles.exact(values, n);
+        }
+        QuantileSketch total = new QuantileSketch();
+        for (CountryData data : rows) {
+            total.merge(data.getSketch());
+        }
+        return Percentiles.of(total);
+    }
+}
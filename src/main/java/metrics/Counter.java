@@ -0,0 +1,35 @@
+package main.java.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A named count of occurrences, safe to increment from any thread.
+ */
+public class Counter {
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+
+    void reset() {
+        count.reset();
+    }
+}
@@ -0,0 +1,130 @@
+package main.java.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Metrics holds the application's pipeline stages and counters by name, and
+ * renders them as a plain-text report.
+ * <p>
+ * The stages used across the application are constants here, so each hot path
+ * only reads a field. The report can be written to a file on demand, or at exit
+ * when the metrics.dump system property names a file.
+ */
+public final class Metrics {
+    private static final Map<String, Stage> STAGES = new ConcurrentSkipListMap<>();
+    private static final Map<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+
+    // Reading a CSV file (items: rows)
+    public static final Stage CSV_PARSE = stage("csv.parse");
+    // Reading the binary snapshot (items: rows)
+    public static final Stage SNAPSHOT_LOAD = stage("snapshot.load");
+    // Reading a changed data file for what changed (items: rows changed, added or removed)
+    public static final Stage DATA_RELOAD = stage("data.reload");
+    // Selecting the rows of a filter (items: rows selected)
+    public static final Stage FILTER_SELECT = stage("filter.select");
+    // Computing the statistics of a selection (items: rows summarized)
+    public static final Stage FILTER_STATS = stage("filter.stats");
+    // Building the chart series of a selection (items: series)
+    public static final Stage CHART_BUILD = stage("chart.build");
+    // Showing prepared chart series on the event dispatch thread (items: series)
+    public static final Stage CHART_SHOW = stage("chart.show");
+    // Drawing a chart into an image off screen (items: series)
+    public static final Stage CHART_RENDER = stage("chart.render");
+    // Updating the table to a new set of rows (items: rows shown)
+    public static final Stage TABLE_REFRESH = stage("table.refresh");
+    // Rolling a metric up into groups of countries (items: rows aggregated)
+    public static final Stage ROLLUP = stage("rollup");
+    // Writing rows to an export file (items: rows)
+    public static final Stage EXPORT = stage("export");
+    // A whole filter run, from the request to the published result (items: rows)
+    public static final Stage FILTER_RUN = stage("filter.run");
+    // Dispatching one AWT event on the event dispatch thread
+    public static final Stage EDT_DISPATCH = stage("edt.dispatch");
+
+    // Filter runs dropped because a newer one started
+    public static final Counter FILTER_SUPERSEDED = counter("filter.superseded");
+    // Rows without a series name skipped by the statistics
+    public static final Counter NULL_SERIES_ROWS = counter("stats.nullSeriesRows");
+    // AWT events that took longer than TimedEventQueue's slow-event limit
+    public static final Counter EDT_SLOW_EVENTS = counter("edt.slowEvents");
+
+    private Metrics() {
+    }
+
+    // Returns the stage with the name, creating it on first use.
+    public static Stage stage(String name) {
+        return STAGES.computeIfAbsent(name, Stage::new);
+    }
+
+    // Returns the counter with the name, creating it on first use.
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, Counter::new);
+    }
+
+    // All stages, sorted by name.
+    public static List<Stage> stages() {
+        return new ArrayList<>(STAGES.values());
+    }
+
+    // All counters, sorted by name.
+    public static List<Counter> counters() {
+        return new ArrayList<>(COUNTERS.values());
+    }
+
+    // Clears every stage and counter.
+    public static void reset() {
+        STAGES.values().forEach(Stage::reset);
+        COUNTERS.values().forEach(Counter::reset);
+    }
+
+    // Renders every stage and counter as an aligned text table.
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Metrics at ").append(Instant.now()).append('\n');
+        sb.append(String.format("%-16s %10s %12s %10s %10s %10s %10s %10s%n",
+                "stage", "count", "items", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        for (Stage stage : stages()) {
+            LatencyHistogram h = stage.getHistogram();
+            sb.append(String.format("%-16s %,10d %,12d %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                    stage.getName(), h.getCount(), stage.getItems(), h.getMeanNanos() / 1e6,
+                    h.percentileNanos(0.50) / 1e6, h.percentileNanos(0.90) / 1e6,
+                    h.percentileNanos(0.99) / 1e6, h.getMaxNanos() / 1e6));
+        }
+        sb.append(String.format("%n%-24s %10s%n", "counter", "count"));
+        for (Counter counter : counters()) {
+            sb.append(String.format("%-24s %,10d%n", counter.getName(), counter.get()));
+        }
+        return sb.toString();
+    }
+
+    // Writes the report to the file, replacing it.
+    public static void dump(Path file) throws IOException {
+        Files.writeString(file, report(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the report at exit to the file named by the metrics.dump system
+     * property, if it is set.
+     */
+    public static void dumpOnExit() {
+        String file = System.getProperty("metrics.dump");
+        if (file == null || file.isBlank()) {
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                dump(Path.of(file));
+            } catch (IOException e) {
+                System.err.println("Could not write metrics to " + file + ": " + e.getMessage());
+            }
+        }, "metrics-dump"));
+    }
+}
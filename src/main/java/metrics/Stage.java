@@ -0,0 +1,76 @@
+package main.java.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A timed step of the data pipeline, such as parsing or filtering. Every run is
+ * recorded in a latency histogram, its items (rows, series, ...) are summed, and a
+ * {@link StageEvent} is emitted for Flight Recorder.
+ * <p>
+ * Usage: {@code Stage.Sample sample = stage.start(); ... sample.stop(items);}
+ */
+public class Stage {
+    private final String name;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder items = new LongAdder();
+
+    Stage(String name) {
+        this.name = name;
+    }
+
+    /**
+     * One run of a stage, from {@link #start()} to {@link #stop(long)}.
+     */
+    public static final class Sample {
+        private final Stage stage;
+        private final StageEvent event = new StageEvent();
+        private final long startNanos;
+
+        private Sample(Stage stage) {
+            this.stage = stage;
+            event.begin();
+            this.startNanos = System.nanoTime();
+        }
+
+        // Ends the run, recording the number of items it handled; returns its duration in nanoseconds.
+        public long stop(long items) {
+            long nanos = System.nanoTime() - startNanos;
+            stage.record(nanos, items);
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = stage.name;
+                event.items = items;
+                event.commit();
+            }
+            return nanos;
+        }
+    }
+
+    public Sample start() {
+        return new Sample(this);
+    }
+
+    // Records a run timed elsewhere; unlike a Sample it emits no Flight Recorder event.
+    public void record(long nanos, long itemCount) {
+        histogram.record(nanos);
+        items.add(itemCount);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    // Items handled by all runs together.
+    public long getItems() {
+        return items.sum();
+    }
+
+    void reset() {
+        histogram.reset();
+        items.reset();
+    }
+}
@@ -0,0 +1,29 @@
+package main.java.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for one run of a pipeline stage. Runs shorter than the
+ * threshold are not recorded, so per-event stages such as EDT dispatch do not
+ * flood a recording; the in-process histograms still count them.
+ */
+@Name("main.java.Stage")
+@Label("Pipeline Stage")
+@Category("Data Visualization Tool")
+@Description("One run of a loading, filtering or display stage")
+@StackTrace(false)
+@Threshold("1 ms")
+class StageEvent extends Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("Items")
+    @Description("Rows, series or events handled by the run")
+    long items;
+}
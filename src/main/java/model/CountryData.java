@@ -1,63 +1,371 @@
 package main.java.model;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
-// CountryData represents GDP-related metrics for a specific country and series.
+/**
+ * CountryData represents GDP-related metrics for a specific country and series.
+ * <p>
+ * Yearly values are kept in a dense {@code double[]} indexed by year offset from
+ * {@link #firstYear()}, with missing cells tracked in a validity bitmap instead of
+ * boxed nulls. {@link #getYearlyData()} remains available as a lazy, read-only view.
+ * <p>
+ * The country and series are stored as ids from {@link NameDictionary#COUNTRIES} and
+ * {@link NameDictionary#SERIES}; filters compare ids, and the names and codes are only
+ * looked up when they are shown.
+ */
 public class CountryData {
-    private final String countryName;
-    private final String countryCode;
-    private final String seriesName;
-    private final String seriesCode;
-    private Map<Integer, Double> yearlyData; // Year -> Value
+    private static final int NO_YEAR = Integer.MIN_VALUE;
+
+    private final int countryId; // Id in NameDictionary.COUNTRIES
+    private final int seriesId;  // Id in NameDictionary.SERIES
+
+    private int baseYear = NO_YEAR; // Year stored at values[0]
+    private int span;               // Number of years covered, starting at baseYear
+    private double[] values;        // Year offset -> value
+    private long[] validity;        // Year offset -> present bit
+    private Map<Integer, Double> yearlyView;
+    private ValueSummary summary;   // Cached summary of all values, dropped on change
+    private QuantileSketch sketch;  // Cached quantile sketch of all values, dropped on change
+    private CountryData[] derived;  // Transform ordinal -> derived row, computed on demand, dropped on change
 
     // Constructor initializes the CountryData object.
     public CountryData(String countryName, String countryCode, String seriesName, String seriesCode) {
-        this.countryName = countryName;
-        this.countryCode = countryCode;
-        this.seriesName = seriesName;
-        this.seriesCode = seriesCode;
-        this.yearlyData = new HashMap<>();
+        this(NameDictionary.COUNTRIES.idOf(countryName, countryCode), NameDictionary.SERIES.idOf(seriesName, seriesCode));
+    }
+
+    // Constructor for a country and series already in the dictionaries.
+    public CountryData(int countryId, int seriesId) {
+        this.countryId = countryId;
+        this.seriesId = seriesId;
+        this.values = new double[0];
+        this.validity = new long[0];
+    }
+
+    // Constructor that preallocates storage for the inclusive year range.
+    public CountryData(String countryName, String countryCode, String seriesName, String seriesCode,
+                       int firstYear, int lastYear) {
+        this(NameDictionary.COUNTRIES.idOf(countryName, countryCode), NameDictionary.SERIES.idOf(seriesName, seriesCode),
+                firstYear, lastYear);
+    }
+
+    // Constructor that preallocates storage for the inclusive year range, from dictionary ids.
+    public CountryData(int countryId, int seriesId, int firstYear, int lastYear) {
+        this(countryId, seriesId);
+        if (lastYear >= firstYear) {
+            this.baseYear = firstYear;
+            this.span = lastYear - firstYear + 1;
+            this.values = new double[span];
+            this.validity = new long[words(span)];
+        }
+    }
+
+    /**
+     * Constructor that takes ownership of already filled storage: values[i] holds the
+     * value for firstYear + i and is present when bit i of validity is set.
+     */
+    public CountryData(String countryName, String countryCode, String seriesName, String seriesCode,
+                       int firstYear, double[] values, long[] validity) {
+        this(NameDictionary.COUNTRIES.idOf(countryName, countryCode), NameDictionary.SERIES.idOf(seriesName, seriesCode),
+                firstYear, values, validity);
+    }
+
+    // Constructor that takes ownership of already filled storage, from dictionary ids.
+    public CountryData(int countryId, int seriesId, int firstYear, double[] values, long[] validity) {
+        this(countryId, seriesId);
+        if (values.length > 0) {
+            if (validity.length < words(values.length)) {
+                throw new IllegalArgumentException("Validity bitmap too short for " + values.length + " years");
+            }
+            this.baseYear = firstYear;
+            this.span = values.length;
+            this.values = values;
+            this.validity = validity;
+        }
     }
 
     // Getters and Setters
     public String getCountryName() {
-        return countryName;
+        return NameDictionary.COUNTRIES.name(countryId);
     }
 
     public String getCountryCode() {
-        return countryCode;
+        return NameDictionary.COUNTRIES.code(countryId);
     }
 
     public String getSeriesName() {
-        return seriesName;
+        return NameDictionary.SERIES.name(seriesId);
     }
 
     public String getSeriesCode() {
-        return seriesCode;
+        return NameDictionary.SERIES.code(seriesId);
+    }
+
+    // Id of the country in NameDictionary.COUNTRIES.
+    public int getCountryId() {
+        return countryId;
+    }
+
+    // Id of the series in NameDictionary.SERIES.
+    public int getSeriesId() {
+        return seriesId;
+    }
+
+    // First year covered by the storage, or Integer.MIN_VALUE if nothing has been stored.
+    public int firstYear() {
+        return baseYear;
+    }
+
+    // Last year covered by the storage, or Integer.MIN_VALUE if nothing has been stored.
+    public int lastYear() {
+        return span == 0 ? NO_YEAR : baseYear + span - 1;
+    }
+
+    // Returns true if a value is present for the given year.
+    public boolean hasValue(int year) {
+        int offset = year - baseYear;
+        return span != 0 && offset >= 0 && offset < span
+                && (validity[offset >>> 6] & (1L << offset)) != 0;
+    }
+
+    // Returns the value for the given year, or NaN if the cell is missing.
+    public double valueAt(int year) {
+        return hasValue(year) ? values[year - baseYear] : Double.NaN;
+    }
+
+    // Number of years that hold a value.
+    public int valueCount() {
+        int count = 0;
+        for (long word : validity) {
+            count += Long.bitCount(word);
+        }
+        return count;
     }
 
+    // Returns the count, sum, sum of squares, min, max and year span of the stored values, computed on first use.
+    public synchronized ValueSummary getSummary() {
+        if (summary == null) {
+            summary = ValueSummary.of(this);
+        }
+        return summary;
+    }
+
+    // Returns a quantile sketch of the stored values, built on first use; it must not be changed.
+    public synchronized QuantileSketch getSketch() {
+        if (sketch == null) {
+            sketch = QuantileSketch.of(this);
+        }
+        return sketch;
+    }
+
+    /**
+     * Returns the row derived from this one by the transform, computing it on
+     * first use. The derived row belongs to the derived series of this row's series.
+     */
+    public synchronized CountryData derived(Transform transform) {
+        if (derived == null) {
+            derived = new CountryData[Transform.values().length];
+        }
+        CountryData row = derived[transform.ordinal()];
+        if (row == null) {
+            row = transform.derive(this);
+            derived[transform.ordinal()] = row;
+        }
+        return row;
+    }
+
+    // Writes the value of each year from firstYear() on into out, NaN where missing.
+    void fillValues(double[] out) {
+        int n = Math.min(out.length, span);
+        System.arraycopy(values, 0, out, 0, n);
+        for (int offset = 0; offset < n; offset++) {
+            if ((validity[offset >>> 6] & (1L << offset)) == 0) {
+                out[offset] = Double.NaN;
+            }
+        }
+    }
+
+    // Stores a value for the given year, growing the storage if needed.
+    public void setValue(int year, double value) {
+        ensureYear(year);
+        summary = null;
+        sketch = null;
+        derived = null;
+        int offset = year - baseYear;
+        values[offset] = value;
+        validity[offset >>> 6] |= 1L << offset;
+    }
+
+    // Marks the given year as missing.
+    public void clearValue(int year) {
+        if (span == 0) {
+            return;
+        }
+        int offset = year - baseYear;
+        if (offset >= 0 && offset < span) {
+            summary = null;
+            sketch = null;
+            derived = null;
+            values[offset] = 0.0;
+            validity[offset >>> 6] &= ~(1L << offset);
+        }
+    }
+
+    // Returns a read-only view of the stored years; missing cells map to null.
     public Map<Integer, Double> getYearlyData() {
-        return yearlyData;
+        if (yearlyView == null) {
+            yearlyView = new YearlyView();
+        }
+        return yearlyView;
     }
 
+    // Replaces all yearly values with the contents of the given map.
     public void setYearlyData(Map<Integer, Double> yearlyData) {
-        this.yearlyData = yearlyData;
+        span = 0;
+        baseYear = NO_YEAR;
+        values = new double[0];
+        validity = new long[0];
+        summary = null;
+        sketch = null;
+        derived = null;
+        if (yearlyData != null) {
+            yearlyData.forEach(this::addYearlyData);
+        }
     }
 
-    // Adds data for a specific year.
+    // Adds data for a specific year. A null value records a missing cell.
     public void addYearlyData(int year, Double value) {
-        this.yearlyData.put(year, value);
+        if (value != null) {
+            setValue(year, value);
+        } else {
+            clearValue(year);
+        }
+    }
+
+    /**
+     * Returns true if the other row has the same names, codes and values, with the
+     * same years missing. Storage layout and capacity are not compared.
+     */
+    public boolean sameContent(CountryData other) {
+        if (countryId != other.countryId || seriesId != other.seriesId
+                || valueCount() != other.valueCount()) {
+            return false;
+        }
+        for (int year = firstYear(), last = lastYear(); year <= last; year++) {
+            if (hasValue(year) && (!other.hasValue(year)
+                    || Double.doubleToLongBits(valueAt(year)) != Double.doubleToLongBits(other.valueAt(year)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureYear(int year) {
+        if (span == 0) {
+            baseYear = year;
+            span = 1;
+            if (values.length == 0) {
+                values = new double[1];
+                validity = new long[1];
+            }
+            return;
+        }
+        if (year < baseYear) {
+            int shift = baseYear - year;
+            int newSpan = span + shift;
+            double[] newValues = new double[Math.max(newSpan, values.length)];
+            System.arraycopy(values, 0, newValues, shift, span);
+            long[] newValidity = new long[words(newValues.length)];
+            for (int offset = 0; offset < span; offset++) {
+                if ((validity[offset >>> 6] & (1L << offset)) != 0) {
+                    int shifted = offset + shift;
+                    newValidity[shifted >>> 6] |= 1L << shifted;
+                }
+            }
+            values = newValues;
+            validity = newValidity;
+            baseYear = year;
+            span = newSpan;
+        } else if (year - baseYear >= span) {
+            int newSpan = year - baseYear + 1;
+            if (newSpan > values.length) {
+                int capacity = Math.max(newSpan, values.length + (values.length >> 1));
+                values = Arrays.copyOf(values, capacity);
+                validity = Arrays.copyOf(validity, words(capacity));
+            }
+            span = newSpan;
+        }
+    }
+
+    private static int words(int bits) {
+        return (bits + 63) >>> 6;
     }
 
     @Override
     public String toString() {
         return "CountryData{" +
-                "countryName='" + countryName + '\'' +
-                ", countryCode='" + countryCode + '\'' +
-                ", seriesName='" + seriesName + '\'' +
-                ", seriesCode='" + seriesCode + '\'' +
-                ", yearlyData=" + yearlyData +
+                "countryName='" + getCountryName() + '\'' +
+                ", countryCode='" + getCountryCode() + '\'' +
+                ", seriesName='" + getSeriesName() + '\'' +
+                ", seriesCode='" + getSeriesCode() + '\'' +
+                ", yearlyData=" + getYearlyData() +
                 '}';
     }
+
+    // Map view over the primitive storage, iterating years in ascending order.
+    private final class YearlyView extends AbstractMap<Integer, Double> {
+        @Override
+        public Set<Entry<Integer, Double>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Integer, Double>> iterator() {
+                    return new Iterator<>() {
+                        private int offset;
+
+                        @Override
+                        public boolean hasNext() {
+                            return offset < span;
+                        }
+
+                        @Override
+                        public Entry<Integer, Double> next() {
+                            if (offset >= span) {
+                                throw new NoSuchElementException();
+                            }
+                            int year = baseYear + offset++;
+                            return new SimpleImmutableEntry<>(year, hasValue(year) ? values[year - baseYear] : null);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return span;
+                }
+            };
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            if (!(key instanceof Integer year) || span == 0) {
+                return false;
+            }
+            return year >= baseYear && year < baseYear + span;
+        }
+
+        @Override
+        public Double get(Object key) {
+            return key instanceof Integer year && hasValue(year) ? values[year - baseYear] : null;
+        }
+
+        @Override
+        public int size() {
+            return span;
+        }
+    }
 }
@@ -0,0 +1,104 @@
+package main.java.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * NameDictionary assigns a compact int id to every distinct (name, code) pair of a kind
+ * of entity, so rows can store and compare ids instead of strings. There is one
+ * global dictionary for countries and one for series; ids are assigned in order of
+ * first use and never reused, so an id stays valid for the life of the process.
+ * <p>
+ * Lookups by id are plain array reads. Assigning an id is thread-safe, so parsers
+ * running on several threads can share a dictionary. Every name and code is
+ * stored once, and the strings returned are the same instances for every row.
+ */
+public final class NameDictionary {
+    // Distinct countries by (Country Name, Country Code)
+    public static final NameDictionary COUNTRIES = new NameDictionary();
+    // Distinct series by (Series Name, Series Code)
+    public static final NameDictionary SERIES = new NameDictionary();
+
+    private static final int[] NO_IDS = new int[0];
+
+    private record Entry(String name, String code) {
+    }
+
+    // Names and codes by id. Slots past size are unused until assigned; a full table
+    // is replaced by one twice as large, never copied to add a single entry.
+    private record Table(String[] names, String[] codes) {
+    }
+
+    private final Map<Entry, Integer> ids = new ConcurrentHashMap<>();
+    // Ids of the entries with each name; entries with a null name are not listed
+    private final Map<String, int[]> idsByName = new ConcurrentHashMap<>();
+    private volatile Table table = new Table(new String[64], new String[64]);
+    private int size; // Guarded by this
+
+    private NameDictionary() {
+    }
+
+    // Returns the id of the (name, code) pair, assigning the next free id on first use.
+    public int idOf(String name, String code) {
+        Entry entry = new Entry(name, code);
+        Integer id = ids.get(entry);
+        return id != null ? id : assign(entry);
+    }
+
+    private synchronized int assign(Entry entry) {
+        Integer existing = ids.get(entry);
+        if (existing != null) {
+            return existing;
+        }
+        int id = size;
+        String name = entry.name() == null ? null : entry.name().intern();
+        String code = entry.code() == null ? null : entry.code().intern();
+        Table current = table;
+        if (id == current.names().length) {
+            current = new Table(Arrays.copyOf(current.names(), id * 2), Arrays.copyOf(current.codes(), id * 2));
+        }
+        // No reader holds the id yet, so its slot can be written in place
+        current.names()[id] = name;
+        current.codes()[id] = code;
+        // Publish the slot before the id, so a reader holding the id finds its strings
+        table = current;
+        size = id + 1;
+        if (name != null) {
+            idsByName.merge(name, new int[]{id}, (ids, added) -> {
+                int[] merged = Arrays.copyOf(ids, ids.length + 1);
+                merged[ids.length] = added[0];
+                return merged;
+            });
+        }
+        ids.put(new Entry(name, code), id);
+        return id;
+    }
+
+    // Name of the entry with the id.
+    public String name(int id) {
+        return table.names()[id];
+    }
+
+    // Code of the entry with the id.
+    public String code(int id) {
+        return table.codes()[id];
+    }
+
+    // Ids of every entry with the name, in the order they were assigned; empty if there are none.
+    public int[] idsNamed(String name) {
+        int[] found = name == null ? null : idsByName.get(name);
+        return found == null ? NO_IDS : found;
+    }
+
+    // Number of ids assigned so far; ids run from 0 to size() - 1.
+    public synchronized int size() {
+        return size;
+    }
+
+    // True if the entry with the id has the given name.
+    public boolean hasName(int id, String name) {
+        return Objects.equals(table.names()[id], name);
+    }
+}
@@ -0,0 +1,44 @@
+package main.java.model;
+
+import java.util.Arrays;
+
+/**
+ * Percentiles of a set of values: the 10th, 25th, 50th, 75th and 90th. They are
+ * exact when computed from the values themselves and estimates when read from a
+ * {@link QuantileSketch}. All are NaN if there are no values.
+ */
+public record Percentiles(double p10, double p25, double median, double p75, double p90, boolean exact) {
+    public static final Percentiles EMPTY = new Percentiles(Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN,
+            true);
+
+    // Exact percentiles of the first count values, which are sorted in place.
+    public static Percentiles exact(double[] values, int count) {
+        if (count == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(values, 0, count);
+        return new Percentiles(quantile(values, count, 0.10), quantile(values, count, 0.25),
+                quantile(values, count, 0.50), quantile(values, count, 0.75), quantile(values, count, 0.90), true);
+    }
+
+    // Estimated percentiles of the values a sketch summarizes.
+    public static Percentiles of(QuantileSketch sketch) {
+        return new Percentiles(sketch.quantile(0.10), sketch.quantile(0.25), sketch.quantile(0.50),
+                sketch.quantile(0.75), sketch.quantile(0.90), false);
+    }
+
+    // Interquartile range, p75 - p25.
+    public double iqr() {
+        return p75 - p25;
+    }
+
+    // Quantile of sorted values, interpolating linearly between the two nearest ranks.
+    private static double quantile(double[] sorted, int count, double q) {
+        double position = q * (count - 1);
+        int below = (int) position;
+        if (below + 1 >= count) {
+            return sorted[count - 1];
+        }
+        return sorted[below] + (sorted[below + 1] - sorted[below]) * (position - below);
+    }
+}
@@ -0,0 +1,283 @@
+package main.java.model;
+
+import java.util.Arrays;
+
+/**
+ * QuantileSketch estimates quantiles of a stream of values in bounded memory. It
+ * is a merging t-digest: values are buffered, then sorted into a short list of
+ * centroids (mean, weight) that are small near both tails and larger towards the
+ * median, so extreme percentiles stay accurate. The number of centroids stays
+ * below about {@code compression}, whatever the number of values.
+ * <p>
+ * Sketches of disjoint sets of values can be merged into one sketch of the union,
+ * so each (country, series) row keeps its own sketch and a selection merges them
+ * (see {@link CountryData#getSketch()}). A sketch is not thread-safe; sketches
+ * that are shared must not be changed after they are built.
+ */
+public final class QuantileSketch {
+    // Compression of row sketches; the rank error is roughly 1 / compression in the middle, less at the tails
+    public static final double DEFAULT_COMPRESSION = 100;
+    // Values buffered per centroid allowed before the buffer is sorted in
+    private static final int BUFFER_FACTOR = 5;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final double compression;
+    // Sorted centroids
+    private double[] means;
+    private double[] weights;
+    private int centroids;
+    private double mergedWeight;
+    // Values and centroids not yet sorted in; grown up to bufferLimit
+    private double[] bufferMeans;
+    private double[] bufferWeights;
+    private final int bufferLimit;
+    private int buffered;
+    private double bufferedWeight;
+    // Scratch space of compress()
+    private double[] sortedMeans = new double[0];
+    private double[] sortedWeights = new double[0];
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    public QuantileSketch(double compression) {
+        this.compression = compression;
+        bufferLimit = ((int) Math.ceil(compression) + 8) * BUFFER_FACTOR;
+        means = new double[INITIAL_CAPACITY];
+        weights = new double[INITIAL_CAPACITY];
+        bufferMeans = new double[INITIAL_CAPACITY];
+        bufferWeights = new double[INITIAL_CAPACITY];
+    }
+
+    // Sketch of all values of a row, compressed and ready to be shared.
+    public static QuantileSketch of(CountryData data) {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int year = data.firstYear(), last = data.lastYear(); year <= last; year++) {
+            if (data.hasValue(year)) {
+                sketch.add(data.valueAt(year));
+            }
+        }
+        sketch.compress();
+        // Row sketches are kept, so drop the spare capacity
+        sketch.means = Arrays.copyOf(sketch.means, sketch.centroids);
+        sketch.weights = Arrays.copyOf(sketch.weights, sketch.centroids);
+        sketch.bufferMeans = new double[0];
+        sketch.bufferWeights = new double[0];
+        sketch.sortedMeans = new double[0];
+        sketch.sortedWeights = new double[0];
+        return sketch;
+    }
+
+    // Adds a value; NaN is ignored.
+    public void add(double value) {
+        if (!Double.isNaN(value)) {
+            add(value, 1);
+        }
+    }
+
+    // Adds every value summarized by the other sketch to this one; the other sketch is not changed.
+    public void merge(QuantileSketch other) {
+        addAll(other.means, other.weights, other.centroids);
+        addAll(other.bufferMeans, other.bufferWeights, other.buffered);
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    // Number of values added.
+    public long getCount() {
+        return Math.round(mergedWeight + bufferedWeight);
+    }
+
+    // Number of centroids held once the buffer is sorted in.
+    public int centroidCount() {
+        compress();
+        return centroids;
+    }
+
+    /**
+     * Estimates the q-quantile, 0 &le; q &le; 1, interpolating between centroids;
+     * 0 and 1 give the exact minimum and maximum. NaN if no value was added.
+     */
+    public double quantile(double q) {
+        compress();
+        if (centroids == 0) {
+            return Double.NaN;
+        }
+        if (centroids == 1) {
+            return means[0];
+        }
+        // Each centroid is centred on its half weight; the ends run out to min and max
+        double rank = q * mergedWeight;
+        int last = centroids - 1;
+        if (rank <= weights[0] / 2) {
+            return min + (means[0] - min) * rank / (weights[0] / 2);
+        }
+        if (rank >= mergedWeight - weights[last] / 2) {
+            return max - (max - means[last]) * (mergedWeight - rank) / (weights[last] / 2);
+        }
+        double cumulative = weights[0] / 2;
+        for (int i = 0; i < last; i++) {
+            double step = (weights[i] + weights[i + 1]) / 2;
+            if (cumulative + step >= rank) {
+                return means[i] + (means[i + 1] - means[i]) * (rank - cumulative) / step;
+            }
+            cumulative += step;
+        }
+        return means[last];
+    }
+
+    private void add(double mean, double weight) {
+        makeRoom();
+        bufferMeans[buffered] = mean;
+        bufferWeights[buffered] = weight;
+        buffered++;
+        bufferedWeight += weight;
+        min = Math.min(min, mean);
+        max = Math.max(max, mean);
+    }
+
+    // Grows a full buffer up to its limit, then sorts it in once it is at the limit.
+    private void makeRoom() {
+        if (buffered < bufferMeans.length) {
+            return;
+        }
+        if (buffered < bufferLimit) {
+            int capacity = Math.min(bufferLimit, Math.max(INITIAL_CAPACITY, buffered * 2));
+            bufferMeans = Arrays.copyOf(bufferMeans, capacity);
+            bufferWeights = Arrays.copyOf(bufferWeights, capacity);
+        } else {
+            compress();
+        }
+    }
+
+    // Adds centroids to the buffer a block at a time.
+    private void addAll(double[] addedMeans, double[] addedWeights, int count) {
+        for (int from = 0; from < count; ) {
+            makeRoom();
+            int block = Math.min(count - from, bufferMeans.length - buffered);
+            System.arraycopy(addedMeans, from, bufferMeans, buffered, block);
+            System.arraycopy(addedWeights, from, bufferWeights, buffered, block);
+            for (int i = from; i < from + block; i++) {
+                bufferedWeight += addedWeights[i];
+            }
+            buffered += block;
+            from += block;
+        }
+    }
+
+    // Sorts the buffer into the centroids, merging neighbours while the scale function allows.
+    private void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        sort(bufferMeans, bufferWeights, 0, buffered - 1);
+
+        // Merge the sorted buffer with the sorted centroids
+        int n = centroids + buffered;
+        if (sortedMeans.length < n) {
+            sortedMeans = new double[n];
+            sortedWeights = new double[n];
+        }
+        for (int i = 0, a = 0, b = 0; i < n; i++) {
+            if (b == buffered || (a < centroids && means[a] <= bufferMeans[b])) {
+                sortedMeans[i] = means[a];
+                sortedWeights[i] = weights[a++];
+            } else {
+                sortedMeans[i] = bufferMeans[b];
+                sortedWeights[i] = bufferWeights[b++];
+            }
+        }
+        double total = mergedWeight + bufferedWeight;
+        buffered = 0;
+        bufferedWeight = 0;
+
+        int count = 0;
+        double mean = sortedMeans[0];
+        double weight = sortedWeights[0];
+        double weightBefore = 0;
+        double weightLimit = total * quantileOfScale(scaleOfQuantile(0) + 1);
+        for (int i = 1; i < n; i++) {
+            double proposed = weight + sortedWeights[i];
+            if (weightBefore + proposed <= weightLimit) {
+                mean += (sortedMeans[i] - mean) * sortedWeights[i] / proposed;
+                weight = proposed;
+            } else {
+                count = append(count, mean, weight);
+                weightBefore += weight;
+                weightLimit = total * quantileOfScale(scaleOfQuantile(weightBefore / total) + 1);
+                mean = sortedMeans[i];
+                weight = sortedWeights[i];
+            }
+        }
+        centroids = append(count, mean, weight);
+        mergedWeight = total;
+    }
+
+    // Stores a centroid at the index, growing the arrays if needed, and returns the next index.
+    private int append(int index, double mean, double weight) {
+        if (index == means.length) {
+            means = Arrays.copyOf(means, Math.max(INITIAL_CAPACITY, index * 2));
+            weights = Arrays.copyOf(weights, Math.max(INITIAL_CAPACITY, index * 2));
+        }
+        means[index] = mean;
+        weights[index] = weight;
+        return index + 1;
+    }
+
+    // Scale function k1: steep near q = 0 and 1, so centroids there stay small.
+    private double scaleOfQuantile(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, Math.max(0, q)) - 1);
+    }
+
+    private double quantileOfScale(double k) {
+        if (k >= compression / 4) {
+            return 1;
+        }
+        return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+
+    // Sorts the pairs by mean; insertion sort for short ranges, quicksort otherwise.
+    private static void sort(double[] keys, double[] values, int from, int to) {
+        while (to - from > 16) {
+            double pivot = keys[(from + to) >>> 1];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(keys, values, i++, j--);
+                }
+            }
+            // Recurse into the shorter side to bound the stack
+            if (j - from < to - i) {
+                sort(keys, values, from, j);
+                from = i;
+            } else {
+                sort(keys, values, i, to);
+                to = j;
+            }
+        }
+        for (int i = from + 1; i <= to; i++) {
+            for (int j = i; j > from && keys[j - 1] > keys[j]; j--) {
+                swap(keys, values, j, j - 1);
+            }
+        }
+    }
+
+    private static void swap(double[] keys, double[] values, int i, int j) {
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
@@ -0,0 +1,200 @@
+package main.java.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Transform derives a new yearly series from the values of a row: growth rates,
+ * rolling averages and rebasing. A derived series is offered as a metric of its
+ * own, named after the source series, e.g. "GDP (current US$) [YoY %]".
+ * <p>
+ * Each transform is a pass over a dense array holding one value per year, with
+ * NaN for missing years, so a missing input makes its outputs missing without a
+ * branch per element; the loops are simple enough for the JIT to vectorize.
+ * Results are memoized per row by {@link CountryData#derived(Transform)}.
+ */
+public enum Transform {
+    // Change from the previous year, in percent
+    YOY("YoY %", "YOY") {
+        @Override
+        void apply(double[] in, double[] out, int n) {
+            out[0] = Double.NaN;
+            for (int i = 1; i < n; i++) {
+                out[i] = (in[i] / in[i - 1] - 1) * 100;
+            }
+        }
+    },
+    // Mean of the year and the two before it; missing if any of them is
+    ROLLING_3("3-yr avg", "MA3") {
+        @Override
+        void apply(double[] in, double[] out, int n) {
+            rollingMean(in, out, n, 3);
+        }
+    },
+    // Mean of the year and the four before it; missing if any of them is
+    ROLLING_5("5-yr avg", "MA5") {
+        @Override
+        void apply(double[] in, double[] out, int n) {
+            rollingMean(in, out, n, 5);
+        }
+    },
+    // Compound annual growth since the first year with a value, in percent
+    CAGR("CAGR %", "CAGR") {
+        @Override
+        void apply(double[] in, double[] out, int n) {
+            int base = firstPresent(in, n);
+            Arrays.fill(out, 0, n, Double.NaN);
+            if (base < 0 || !(in[base] > 0)) {
+                return;
+            }
+            double baseValue = in[base];
+            for (int i = base + 1; i < n; i++) {
+                out[i] = (Math.pow(in[i] / baseValue, 1.0 / (i - base)) - 1) * 100;
+            }
+        }
+    },
+    // Values rescaled so the first year with a value is 100
+    INDEX("Index, first year = 100", "IDX") {
+        @Override
+        void apply(double[] in, double[] out, int n) {
+            int base = firstPresent(in, n);
+            double scale = base < 0 ? Double.NaN : 100 / in[base];
+            for (int i = 0; i < n; i++) {
+                out[i] = in[i] * scale;
+            }
+        }
+    };
+
+    private final String label;
+    private final String code;
+    // Source series id -> id of the derived series; grown as needed, -1 until assigned
+    private int[] seriesIds = new int[0];
+
+    Transform(String label, String code) {
+        this.label = label;
+        this.code = code;
+    }
+
+    /**
+     * Computes the transform of {@code in[0..n)} into {@code out[0..n)}. Missing
+     * inputs are NaN; any output that is not finite is treated as missing.
+     */
+    abstract void apply(double[] in, double[] out, int n);
+
+    // Label shown after the source series name.
+    public String getLabel() {
+        return label;
+    }
+
+    // Metric name of the transform of the series.
+    public String metricName(String seriesName) {
+        return seriesName + " [" + label + "]";
+    }
+
+    // Transform a metric name refers to, or null if the metric is not derived.
+    public static Transform of(String metric) {
+        if (metric == null || !metric.endsWith("]")) {
+            return null;
+        }
+        for (Transform transform : values()) {
+            if (metric.endsWith(" [" + transform.label + "]")) {
+                return transform;
+            }
+        }
+        return null;
+    }
+
+    // Source series of a metric: the series a derived metric is computed from, or the metric itself.
+    public static String sourceSeries(String metric) {
+        Transform transform = of(metric);
+        return transform == null ? metric : metric.substring(0, metric.length() - transform.label.length() - 3);
+    }
+
+    // Read-only view of the transforms of the rows; each is computed when first read.
+    public List<CountryData> view(List<CountryData> rows) {
+        return new DerivedView(rows, this);
+    }
+
+    // Computes the derived row; the row's values are read, never copied into the result.
+    CountryData derive(CountryData row) {
+        int firstYear = row.firstYear();
+        int n = row.lastYear() == Integer.MIN_VALUE ? 0 : row.lastYear() - firstYear + 1;
+        double[] in = new double[n];
+        row.fillValues(in);
+        double[] out = new double[n];
+        if (n > 0) {
+            apply(in, out, n);
+        }
+        long[] validity = new long[(n + 63) >>> 6];
+        for (int i = 0; i < n; i++) {
+            if (Double.isFinite(out[i])) {
+                validity[i >>> 6] |= 1L << i;
+            }
+        }
+        return new CountryData(row.getCountryId(), seriesId(row.getSeriesId()), firstYear, out, validity);
+    }
+
+    // Dictionary id of the derived series of a source series.
+    private synchronized int seriesId(int sourceId) {
+        if (sourceId >= seriesIds.length) {
+            int oldLength = seriesIds.length;
+            seriesIds = Arrays.copyOf(seriesIds, Math.max(sourceId + 1, oldLength * 2));
+            Arrays.fill(seriesIds, oldLength, seriesIds.length, -1);
+        }
+        if (seriesIds[sourceId] < 0) {
+            String name = NameDictionary.SERIES.name(sourceId);
+            String sourceCode = NameDictionary.SERIES.code(sourceId);
+            seriesIds[sourceId] = NameDictionary.SERIES.idOf(name == null ? null : metricName(name),
+                    sourceCode == null ? null : sourceCode + "." + code);
+        }
+        return seriesIds[sourceId];
+    }
+
+    // Index of the first value that is not NaN, or -1.
+    private static int firstPresent(double[] in, int n) {
+        for (int i = 0; i < n; i++) {
+            if (!Double.isNaN(in[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Sums the window column by column so each pass is a straight vectorizable loop.
+    private static void rollingMean(double[] in, double[] out, int n, int window) {
+        Arrays.fill(out, 0, n, 0.0);
+        for (int lag = 0; lag < window; lag++) {
+            for (int i = lag; i < n; i++) {
+                out[i] += in[i - lag];
+            }
+        }
+        double scale = 1.0 / window;
+        for (int i = 0; i < n; i++) {
+            out[i] *= scale;
+        }
+        Arrays.fill(out, 0, Math.min(window - 1, n), Double.NaN);
+    }
+
+    // Rows mapped to their derived rows on access.
+    private static final class DerivedView extends AbstractList<CountryData> implements RandomAccess {
+        private final List<CountryData> rows;
+        private final Transform transform;
+
+        DerivedView(List<CountryData> rows, Transform transform) {
+            this.rows = rows;
+            this.transform = transform;
+        }
+
+        @Override
+        public CountryData get(int index) {
+            return rows.get(index).derived(transform);
+        }
+
+        @Override
+        public int size() {
+            return rows.size();
+        }
+    }
+}
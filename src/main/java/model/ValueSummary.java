@@ -0,0 +1,127 @@
+package main.java.model;
+
+/**
+ * ValueSummary holds mergeable moments of a set of yearly values: count, mean,
+ * sum of squared deviations from the mean, minimum, maximum and the span of years
+ * that contributed. Summaries of disjoint sets can be combined with
+ * {@link #merge(ValueSummary)} without revisiting the values.
+ * <p>
+ * The moments are updated with Welford's method, and merged and taken back with its
+ * inverse, so the variance stays accurate over many reloads instead of cancelling
+ * out of a large sum of squares.
+ */
+public class ValueSummary {
+    private long count;
+    private double mean;
+    private double squaredDeviations; // Sum of (value - mean)^2
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private int firstYear = Integer.MAX_VALUE;
+    private int lastYear = Integer.MIN_VALUE;
+
+    // Adds a single value observed in the given year.
+    public void add(int year, double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        firstYear = Math.min(firstYear, year);
+        lastYear = Math.max(lastYear, year);
+    }
+
+    /**
+     * Takes back a value added before, keeping the year span. Returns false and
+     * changes nothing if the value is the minimum or maximum, or the last value,
+     * since only a rescan of the remaining values can tell what replaces it.
+     */
+    public boolean remove(double value) {
+        if (count < 2 || !(value > min && value < max)) {
+            return false;
+        }
+        count--;
+        double delta = value - mean;
+        mean -= delta / count;
+        squaredDeviations = Math.max(0.0, squaredDeviations - delta * (value - mean));
+        return true;
+    }
+
+    // Adds every value of the other summary to this one.
+    public void merge(ValueSummary other) {
+        if (other.count == 0) {
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        squaredDeviations += other.squaredDeviations + delta * delta * ((double) count * other.count / total);
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        firstYear = Math.min(firstYear, other.firstYear);
+        lastYear = Math.max(lastYear, other.lastYear);
+    }
+
+    // Summarizes all values of a row.
+    public static ValueSummary of(CountryData data) {
+        return of(data, data.firstYear(), data.lastYear());
+    }
+
+    // Summarizes the values of a row from fromYear to toYear, inclusive.
+    public static ValueSummary of(CountryData data, int fromYear, int toYear) {
+        ValueSummary summary = new ValueSummary();
+        for (int year = Math.max(fromYear, data.firstYear()), last = Math.min(toYear, data.lastYear()); year <= last; year++) {
+            if (data.hasValue(year)) {
+                summary.add(year, data.valueAt(year));
+            }
+        }
+        return summary;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return mean * count;
+    }
+
+    // Sum of the squared values, derived from the mean and the squared deviations.
+    public double getSumOfSquares() {
+        return squaredDeviations + mean * mean * count;
+    }
+
+    // Minimum value, or NaN if empty.
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    // Maximum value, or NaN if empty.
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    // Arithmetic mean, or NaN if empty.
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    // Sample standard deviation: 0 for a single value, NaN if empty.
+    public double getStandardDeviation() {
+        if (count < 2) {
+            return count == 1 ? 0.0 : Double.NaN;
+        }
+        return Math.sqrt(Math.max(0.0, squaredDeviations / (count - 1)));
+    }
+
+    // Earliest year that contributed a value, or Integer.MAX_VALUE if empty.
+    public int getFirstYear() {
+        return firstYear;
+    }
+
+    // Latest year that contributed a value, or Integer.MIN_VALUE if empty.
+    public int getLastYear() {
+        return lastYear;
+    }
+}
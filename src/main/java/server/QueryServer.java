@@ -0,0 +1,334 @@
+package main.java.server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import main.java.data.DataIndex;
+import main.java.data.Downsampler;
+import main.java.data.JsonWriter;
+import main.java.data.MetricQuery;
+import main.java.model.CountryData;
+import main.java.ui.ChartRenderer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * QueryServer answers filter, statistics and time-series queries over HTTP from a
+ * loaded {@link DataIndex}, so other tools can share one copy of the data.
+ * <p>
+ * Endpoints, all GET (or HEAD) with the same parameters: {@code metric} (a series
+ * name, a derived metric such as "GDP (current US$) [YoY %]", or "All Series", the
+ * default), {@code countries} (names separated by ';')
+ * and {@code from} / {@code to} (inclusive years):
+ * <ul>
+ *     <li>{@code /filter}: the selected rows with their values and statistics</li>
+ *     <li>{@code /stats}: the statistics of the selection, as the stats panel shows them</li>
+ *     <li>{@code /series}: the points of each selected row, downsampled to at most
+ *     {@code points} per row if given</li>
+ *     <li>{@code /chart}: a PNG line chart of the selected rows over every year,
+ *     {@code width} by {@code height} pixels (default 800 by 500), drawn by a
+ *     {@link ChartRenderer} and cached until the data changes</li>
+ * </ul>
+ * Every request runs on its own virtual thread. Responses are written as JSON while
+ * they are produced, in chunks. The entity tag of a response is the dataset version
+ * (qualified by when the server started), so a client repeating a request with If-None-Match gets 304 Not Modified until
+ * the data changes.
+ */
+public class QueryServer {
+    private static final Logger LOGGER = Logger.getLogger(QueryServer.class.getName());
+    private static final int BACKLOG = 1024;
+    private static final int RESPONSE_BUFFER_CHARS = 8192;
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private static final String PNG_TYPE = "image/png";
+    private static final int DEFAULT_CHART_WIDTH = 800;
+    private static final int DEFAULT_CHART_HEIGHT = 500;
+
+    private final DataIndex dataIndex;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ChartRenderer chartRenderer = new ChartRenderer();
+    // Start of every entity tag, so tags of an earlier run over other data never match
+    private final String etagPrefix = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX) + "-";
+
+    // Writes the body of one endpoint's response.
+    private interface Endpoint {
+        void write(Request request, JsonWriter json);
+    }
+
+    /**
+     * Parameters of a request.
+     *
+     * @param version dataset version the response is computed at
+     * @param width   chart width in pixels, for /chart
+     * @param height  chart height in pixels, for /chart
+     */
+    private record Request(long version, String metric, List<String> countries, int fromYear, int toYear,
+                           int points, int width, int height) {
+    }
+
+    // Binds the server to the address; call start() to accept requests.
+    public QueryServer(DataIndex dataIndex, InetSocketAddress address) throws IOException {
+        this.dataIndex = dataIndex;
+        this.server = HttpServer.create(address, BACKLOG);
+        server.createContext("/filter", exchange -> handle(exchange, this::writeFilter));
+        server.createContext("/stats", exchange -> handle(exchange, this::writeStats));
+        server.createContext("/series", exchange -> handle(exchange, this::writeSeries));
+        server.createContext("/chart", this::handleChart);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // Stops accepting requests and waits up to the given number of seconds for running ones.
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        chartRenderer.close();
+    }
+
+    // Port the server is bound to.
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        try (exchange) {
+            Request request = begin(exchange, JSON_TYPE);
+            if (request == null) {
+                return;
+            }
+
+            exchange.sendResponseHeaders(200, 0); // Chunked: the length is not known up front
+            Writer body = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8),
+                    RESPONSE_BUFFER_CHARS);
+            JsonWriter json = new JsonWriter(body);
+            json.beginObject().name("version").value(request.version());
+            endpoint.write(request, json);
+            json.endObject();
+            body.flush();
+        } catch (UncheckedIOException e) {
+            LOGGER.log(Level.FINE, "Client went away", e);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Request failed: " + exchange.getRequestURI(), e);
+        }
+    }
+
+    // Chart of the selection as a PNG image.
+    private void handleChart(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Request request = begin(exchange, PNG_TYPE);
+            if (request == null) {
+                return;
+            }
+
+            // Drawn on the renderer's pool, or taken from its cache; this virtual thread just waits
+            BufferedImage image = chartRenderer.render(dataIndex, request.metric(), request.countries(),
+                    request.width(), request.height()).join();
+            ByteArrayOutputStream png = new ByteArrayOutputStream(RESPONSE_BUFFER_CHARS);
+            ImageIO.write(image, "png", png);
+            exchange.sendResponseHeaders(200, png.size());
+            png.writeTo(exchange.getResponseBody());
+        } catch (UncheckedIOException e) {
+            LOGGER.log(Level.FINE, "Client went away", e);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Request failed: " + exchange.getRequestURI(), e);
+        }
+    }
+
+    /**
+     * Checks the method, parses the request and sets the entity tag. Returns null if
+     * the response is already complete: an error, 304 Not Modified or a HEAD request.
+     */
+    private Request begin(HttpExchange exchange, String contentType) throws IOException {
+        String method = exchange.getRequestMethod();
+        boolean head = method.equals("HEAD");
+        if (!head && !method.equals("GET")) {
+            exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+            sendError(exchange, 405, "Method not allowed: " + method);
+            return null;
+        }
+
+        Request request;
+        try {
+            request = parseRequest(exchange);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+            return null;
+        }
+
+        // The response only depends on the request and the data, so the version identifies it
+        String etag = "\"" + etagPrefix + request.version() + "\"";
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", etag);
+        headers.set("Cache-Control", "no-cache");
+        if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            return null;
+        }
+        headers.set("Content-Type", contentType);
+        if (head) {
+            exchange.sendResponseHeaders(200, -1);
+            return null;
+        }
+        return request;
+    }
+
+    // Rows of the selection with their values.
+    private void writeFilter(Request request, JsonWriter json) {
+        json.name("metric").value(request.metric()).name("rows").beginArray();
+        for (CountryData data : select(request)) {
+            json.row(data, request.fromYear(), request.toYear());
+        }
+        json.endArray();
+    }
+
+    // Statistics of the selection.
+    private void writeStats(Request request, JsonWriter json) {
+        List<CountryData> rows = select(request);
+        json.name("rows").value(rows.size()).name("stats").summary(MetricQuery.statsMetric(request.metric()),
+                MetricQuery.summarize(rows, request.metric(), request.fromYear(), request.toYear()));
+    }
+
+    // Points of every selected row, as [year, value] pairs.
+    private void writeSeries(Request request, JsonWriter json) {
+        json.name("metric").value(request.metric()).name("series").beginArray();
+        double[] x = new double[0];
+        double[] y = new double[0];
+        int[] selected = new int[0];
+        for (CountryData data : select(request)) {
+            int first = Math.max(request.fromYear(), data.firstYear());
+            int last = Math.min(request.toYear(), data.lastYear());
+            int capacity = Math.max(0, Math.min(data.valueCount(), last - first + 1));
+            if (x.length < capacity) {
+                x = new double[capacity];
+                y = new double[capacity];
+                selected = new int[capacity];
+            }
+            int count = 0;
+            for (int year = first; year <= last; year++) {
+                if (data.hasValue(year)) {
+                    x[count] = year;
+                    y[count] = data.valueAt(year);
+                    count++;
+                }
+            }
+            int kept = Downsampler.lttb(x, y, count, request.points(), selected);
+
+            json.beginObject()
+                    .name("country").value(data.getCountryName())
+                    .name("countryCode").value(data.getCountryCode())
+                    .name("series").value(data.getSeriesName())
+                    .name("points").beginArray();
+            for (int i = 0; i < kept; i++) {
+                json.beginArray().value((long) x[selected[i]]).value(y[selected[i]]).endArray();
+            }
+            json.endArray().endObject();
+        }
+        json.endArray();
+    }
+
+    private List<CountryData> select(Request request) {
+        return MetricQuery.select(dataIndex, request.metric(), request.countries());
+    }
+
+    private Request parseRequest(HttpExchange exchange) {
+        long version = dataIndex.getVersion(); // Read first: the response can only be newer
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        List<String> countries = new ArrayList<>();
+        for (String country : params.getOrDefault("countries", "").split(";")) {
+            if (!country.isBlank()) {
+                countries.add(country.trim());
+            }
+        }
+        return new Request(version,
+                params.getOrDefault("metric", MetricQuery.ALL_SERIES),
+                Collections.unmodifiableList(countries),
+                intParam(params, "from", Integer.MIN_VALUE),
+                intParam(params, "to", Integer.MAX_VALUE),
+                intParam(params, "points", 0),
+                sizeParam(params, "width", DEFAULT_CHART_WIDTH),
+                sizeParam(params, "height", DEFAULT_CHART_HEIGHT));
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            params.put(name, value);
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int missing) {
+        String value = params.get(name);
+        if (value == null || value.isBlank()) {
+            return missing;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value, e);
+        }
+    }
+
+    private static int sizeParam(Map<String, String> params, String name, int missing) {
+        int size = intParam(params, name, missing);
+        if (size < 1 || size > ChartRenderer.MAX_SIZE) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + size + " (1 to " + ChartRenderer.MAX_SIZE
+                    + ")");
+        }
+        return size;
+    }
+
+    // True if an If-None-Match header lists the entity tag, or is "*".
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2); // Weak comparison, as for GET
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder text = new StringBuilder();
+        new JsonWriter(text).beginObject().name("error").value(message).endObject();
+        byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+}
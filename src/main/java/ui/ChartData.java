@@ -0,0 +1,115 @@
+package main.java.ui;
+
+import main.java.data.Downsampler;
+import main.java.data.MetricQuery;
+import main.java.data.RowFilter;
+import main.java.metrics.Metrics;
+import main.java.metrics.Stage;
+import main.java.model.CountryData;
+import org.jfree.data.xy.XYSeries;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Chart contents for one filter result: the title and one downsampled series per
+ * row. Building it needs no display, so it is done off the event dispatch thread
+ * and shown by {@link ChartPanelCustom#showChart}.
+ *
+ * @param data   rows of the filter result
+ * @param metric selected metric
+ * @param title  chart title
+ * @param series downsampled series of the rows to plot, in display order
+ * @param width  plot width the series were downsampled for
+ */
+public record ChartData(List<CountryData> data, String metric, String title,
+                        Map<CountryData, XYSeries> series, int width) {
+    // Countries named in the title before the rest are summarized
+    private static final int MAX_TITLE_COUNTRIES = 5;
+
+    /**
+     * Builds the title and the downsampled series for the given rows; safe to call
+     * from any thread.
+     *
+     * @param width plot width to downsample to, from {@link ChartPanelCustom#getPlotWidth()}
+     */
+    public static ChartData prepare(List<CountryData> dataList, String selectedMetric, int width) {
+        Stage.Sample sample = Metrics.CHART_BUILD.start();
+        Map<CountryData, XYSeries> series = new LinkedHashMap<>();
+        // Include all series if "All Series" is selected
+        RowFilter filter = RowFilter.of(MetricQuery.seriesFilter(selectedMetric), null);
+        for (CountryData data : dataList) {
+            if (filter.matches(data) && !series.containsKey(data)) {
+                // Use both country name and series name as the key to differentiate in the legend
+                XYSeries xy = new XYSeries(data.getCountryName() + " - " + data.getSeriesName(), false, true);
+                fillSeries(xy, data, width);
+                series.put(data, xy);
+            }
+        }
+
+        // Update chart title with selected countries, grouped by id and named once each
+        BitSet seenCountries = new BitSet();
+        Set<String> selectedCountries = new LinkedHashSet<>();
+        for (CountryData data : dataList) {
+            if (!seenCountries.get(data.getCountryId())) {
+                seenCountries.set(data.getCountryId());
+                selectedCountries.add(data.getCountryName());
+            }
+        }
+
+        String title;
+        if (selectedCountries.isEmpty()) {
+            title = "No Data Available";
+        } else {
+            String countries = describeCountries(selectedCountries);
+            if (selectedMetric.equals(MetricQuery.ALL_SERIES)) {
+                title = "All GDP Metrics Over Time for " + countries;
+            } else {
+                title = selectedMetric + " Over Time for " + countries;
+            }
+        }
+        sample.stop(series.size());
+        return new ChartData(dataList, selectedMetric, title, series, width);
+    }
+
+    // Replaces the points of a series with the row's values, downsampled to the plot width.
+    static void fillSeries(XYSeries series, CountryData data, int width) {
+        int capacity = Math.max(0, data.valueCount());
+        double[] x = new double[capacity];
+        double[] y = new double[capacity];
+        int count = 0;
+        for (int year = data.firstYear(), last = data.lastYear(); year <= last; year++) {
+            if (data.hasValue(year)) {
+                x[count] = year;
+                y[count] = data.valueAt(year);
+                count++;
+            }
+        }
+
+        int[] selected = new int[count];
+        int kept = Downsampler.lttb(x, y, count, width, selected);
+        series.clear();
+        for (int i = 0; i < kept; i++) {
+            series.add(x[selected[i]], y[selected[i]], false);
+        }
+        series.fireSeriesChanged();
+    }
+
+    // Lists the first countries and summarizes the rest.
+    private static String describeCountries(Set<String> countries) {
+        if (countries.size() <= MAX_TITLE_COUNTRIES) {
+            return String.join(", ", countries);
+        }
+        StringBuilder sb = new StringBuilder();
+        Iterator<String> it = countries.iterator();
+        for (int i = 0; i < MAX_TITLE_COUNTRIES; i++) {
+            sb.append(i > 0 ? ", " : "").append(it.next());
+        }
+        return sb.append(" and ").append(countries.size() - MAX_TITLE_COUNTRIES).append(" more").toString();
+    }
+}
@@ -1,29 +1,47 @@
 package main.java.ui;
 
+import main.java.metrics.Metrics;
+import main.java.metrics.Stage;
 import main.java.model.CountryData;
-import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
-import org.jfree.chart.labels.StandardCategoryToolTipGenerator;
-import org.jfree.chart.plot.PlotOrientation;
-import org.jfree.chart.renderer.category.LineAndShapeRenderer;
-import org.jfree.data.category.DefaultCategoryDataset;
-import org.jfree.chart.ui.RectangleEdge; // Ensure correct import for legend positioning
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.geom.Rectangle2D;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * ChartPanelCustom visualizes GDP metrics using JFreeChart.
  * Supports multiple countries and series for comparison.
+ * <p>
+ * Each displayed row is one numeric {@link XYSeries}. On a filter change only the
+ * series of rows that left or entered the selection are removed or added, so
+ * hundreds of overlaid series stay cheap to update. Long series are downsampled
+ * with {@link main.java.data.Downsampler#lttb} to the width of the plot area, and point shapes
+ * are only drawn while the points are sparse enough to tell apart.
  */
 public class ChartPanelCustom extends JPanel {
+    // Plot width assumed before the chart is first laid out
+    private static final int DEFAULT_PLOT_WIDTH = 800;
+
     private final JFreeChart lineChart;
+    private final ChartPanel chartPanel;
+    private final XYSeriesCollection dataset = new XYSeriesCollection();
     private List<CountryData> currentData; // Holds the currently filtered data
 
+    // Series shown for each displayed row, in display order
+    private final Map<CountryData, XYSeries> seriesByRow = new LinkedHashMap<>();
+    private int sampledWidth; // Plot width the current series were downsampled for
+
     // Constructor initializes the chart with the provided data.
     public ChartPanelCustom(List<CountryData> dataList) {
         super(new BorderLayout());
@@ -31,94 +49,133 @@ public class ChartPanelCustom extends JPanel {
 
         // Initialize dataset with default metric
         String defaultMetric = "GDP per capita (constant 2005 US$)";
-        DefaultCategoryDataset dataset = createDataset(currentData, defaultMetric);
-
-        // Create line chart with legend
-        lineChart = ChartFactory.createLineChart(
-                "GDP Metrics Over Time",
-                "Year",
-                defaultMetric,
-                dataset,
-                PlotOrientation.VERTICAL,
-                true, // Include legend
-                true, // Tooltips
-                false // URLs
-        );
-
-        // Enable tooltips
-        LineAndShapeRenderer renderer = (LineAndShapeRenderer) lineChart.getCategoryPlot().getRenderer();
-        renderer.setDefaultToolTipGenerator(new StandardCategoryToolTipGenerator());
-
-        // Adjust legend position if desired
-        lineChart.getLegend().setPosition(RectangleEdge.RIGHT); // Positions legend to the right
+
+        // Create line chart with legend, styled like the charts drawn off screen
+        lineChart = ChartRenderer.createChart("GDP Metrics Over Time", defaultMetric, dataset);
 
         // Initialize ChartPanel
-        ChartPanel chartPanel = new ChartPanel(lineChart);
+        chartPanel = new ChartPanel(lineChart);
         chartPanel.setDisplayToolTips(true); // Ensure tooltips are enabled
         add(chartPanel, BorderLayout.CENTER);
-    }
 
-    // Updates the chart based on the selected metric.
-    private void updateChartWithMetric(String selectedMetric) {
-        DefaultCategoryDataset dataset = createDataset(currentData, selectedMetric);
-        lineChart.getCategoryPlot().setDataset(dataset);
-
-        // Update chart title with selected countries
-        List<String> selectedCountries = currentData.stream()
-                .map(CountryData::getCountryName)
-                .distinct()
-                .collect(Collectors.toList());
-
-        String title;
-        if (selectedCountries.isEmpty()) {
-            title = "No Data Available";
-        } else {
-            if (selectedMetric.equals("All Series")) {
-                title = "All GDP Metrics Over Time for " + String.join(", ", selectedCountries);
-            } else {
-                title = selectedMetric + " Over Time for " + String.join(", ", selectedCountries);
+        // Downsample again when the plot gets wider or narrower
+        chartPanel.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                if (getPlotWidth() != sampledWidth) {
+                    resampleAll();
+                }
             }
-        }
-        lineChart.setTitle(title);
+        });
 
-        if (selectedMetric.equals("All Series")) {
-            lineChart.getCategoryPlot().getRangeAxis().setLabel("Value");
-        } else {
-            lineChart.getCategoryPlot().getRangeAxis().setLabel(selectedMetric);
-        }
+        updateSeries(ChartData.prepare(currentData, defaultMetric, getPlotWidth()));
+    }
+
+    // Shows a chart prepared by ChartData.prepare; must be called on the event dispatch thread.
+    public void showChart(ChartData update) {
+        Stage.Sample sample = Metrics.CHART_SHOW.start();
+        this.currentData = update.data();
+        updateSeries(update);
+        lineChart.setTitle(update.title());
 
-        System.out.println("Chart updated with " + currentData.size() + " entries for metric: " + selectedMetric);
+        lineChart.getXYPlot().getRangeAxis().setLabel(ChartRenderer.valueLabel(update.metric()));
+        sample.stop(update.series().size());
     }
 
     // Updates the chart based on the filtered data and selected metric.
     public void updateChart(List<CountryData> filteredData, String selectedMetric) {
-        this.currentData = filteredData; // Update currentData with filteredData
-        updateChartWithMetric(selectedMetric);
+        showChart(ChartData.prepare(filteredData, selectedMetric, getPlotWidth()));
     }
 
-    // Creates a dataset for the chart based on the selected series.
-    private DefaultCategoryDataset createDataset(List<CountryData> dataList, String selectedMetric) {
-        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+    /**
+     * Brings the dataset in line with the rows to display: series of rows no longer
+     * shown are removed, prepared series of newly shown rows are added, and series
+     * that stay are left untouched. The chart is redrawn once at the end.
+     */
+    private void updateSeries(ChartData update) {
+        Map<CountryData, XYSeries> wanted = update.series();
+
+        // Detach the dataset so the plot recomputes its axes once, not per series change
+        XYPlot plot = lineChart.getXYPlot();
+        plot.setDataset(null);
+        try {
+            Iterator<Map.Entry<CountryData, XYSeries>> shown = seriesByRow.entrySet().iterator();
+            while (shown.hasNext()) {
+                Map.Entry<CountryData, XYSeries> entry = shown.next();
+                if (!wanted.containsKey(entry.getKey())) {
+                    dataset.removeSeries(entry.getValue());
+                    shown.remove();
+                }
+            }
+
+            if (update.width() != sampledWidth && !seriesByRow.isEmpty()) {
+                resampleShown(update.width());
+            }
+            sampledWidth = update.width();
+            wanted.forEach((data, series) -> {
+                if (!seriesByRow.containsKey(data)) {
+                    XYSeries copy = ChartRenderer.copyForDataset(dataset, series);
+                    dataset.addSeries(copy);
+                    seriesByRow.put(data, copy);
+                }
+            });
+            applyDensitySettings();
+        } finally {
+            plot.setDataset(dataset);
+        }
+        if (getPlotWidth() != sampledWidth) {
+            resampleAll(); // Resized while the update was being prepared
+        }
+    }
 
-        if (dataList == null || dataList.isEmpty()) {
-            return dataset; // Return an empty dataset
+    /**
+     * Downsamples the displayed rows again into new series. Series handed in by an
+     * update are never changed or shown themselves, because a result cache may hand
+     * them in again; the dataset holds copies made by {@link ChartRenderer#copyForDataset}.
+     */
+    private void resampleShown(int width) {
+        dataset.removeAllSeries();
+        for (Map.Entry<CountryData, XYSeries> entry : seriesByRow.entrySet()) {
+            XYSeries series = new XYSeries(entry.getValue().getKey(), false, true);
+            ChartData.fillSeries(series, entry.getKey(), width);
+            entry.setValue(series);
+            dataset.addSeries(series);
         }
+        sampledWidth = width;
+    }
 
-        for (CountryData data : dataList) {
-            // Include all series if "All Series" is selected
-            if (selectedMetric.equals("All Series") || data.getSeriesName().equals(selectedMetric)) {
-                for (Map.Entry<Integer, Double> entry : data.getYearlyData().entrySet()) {
-                    Integer year = entry.getKey();
-                    Double value = entry.getValue();
-                    if (value != null) {
-                        // Use both country name and series name as the row key to differentiate in the legend
-                        String rowKey = data.getCountryName() + " - " + data.getSeriesName();
-                        dataset.addValue(value, rowKey, year.toString());
-                    }
-                }
+    // Downsamples every displayed series again for the current plot width.
+    private void resampleAll() {
+        int width = getPlotWidth();
+        XYPlot plot = lineChart.getXYPlot();
+        boolean attached = plot.getDataset() == dataset;
+        plot.setDataset(null);
+        try {
+            resampleShown(width);
+            applyDensitySettings();
+        } finally {
+            if (attached) {
+                plot.setDataset(dataset);
             }
         }
+    }
+
+    // Shows point shapes and the legend only while they stay readable.
+    private void applyDensitySettings() {
+        long points = 0;
+        for (XYSeries series : seriesByRow.values()) {
+            points += series.getItemCount();
+        }
+        ChartRenderer.applyDensity(lineChart, points, seriesByRow.size(), sampledWidth);
+    }
 
-        return dataset;
+    // Width of the plot area in pixels, estimated until the chart has been drawn.
+    public int getPlotWidth() {
+        Rectangle2D dataArea = chartPanel == null ? null : chartPanel.getScreenDataArea();
+        if (dataArea != null && dataArea.getWidth() > 0) {
+            return (int) dataArea.getWidth();
+        }
+        int width = chartPanel == null ? 0 : chartPanel.getWidth();
+        return width > 0 ? width : DEFAULT_PLOT_WIDTH;
     }
 }
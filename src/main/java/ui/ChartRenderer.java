@@ -0,0 +1,292 @@
+package main.java.ui;
+
+import main.java.data.DataIndex;
+import main.java.data.MetricQuery;
+import main.java.data.QueryKey;
+import main.java.data.ResultCache;
+import main.java.metrics.Metrics;
+import main.java.metrics.Stage;
+import main.java.model.CountryData;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.labels.StandardXYToolTipGenerator;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
+import org.jfree.chart.ui.RectangleEdge;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+
+/**
+ * ChartRenderer draws charts into images off the event dispatch thread, for the
+ * query server and for reports. Each chart is a JFreeChart of its own styled like
+ * the one in {@link ChartPanelCustom}, drawn into a {@link BufferedImage}, so it
+ * needs no display and works with java.awt.headless=true.
+ * <p>
+ * Charts are drawn on a pool of worker threads. Images of a query are cached by the
+ * query, including the dataset version, and the image size, so asking again is
+ * answered from the cache; -DchartCacheEntries and -DchartCacheBytes bound it.
+ * {@link #renderBatch} writes one PNG per country and metric, in parallel.
+ */
+public final class ChartRenderer implements AutoCloseable {
+    // Shapes are drawn only if every plotted point gets at least this many pixels
+    static final int MIN_PIXELS_PER_SHAPE = 8;
+    // The legend is hidden above this many series
+    static final int MAX_LEGEND_SERIES = 20;
+    // Largest image drawn, per side
+    public static final int MAX_SIZE = 4096;
+
+    static {
+        // Images are written whole; a disk cache only slows encoding down
+        ImageIO.setUseCache(false);
+    }
+
+    private final ExecutorService pool;
+    private final ResultCache<ImageKey, BufferedImage> images = new ResultCache<>(
+            Integer.getInteger("chartCacheEntries", 256),
+            Long.getLong("chartCacheBytes", 128L << 20),
+            image -> (long) image.getWidth() * image.getHeight() * 4);
+
+    // Key of a cached image: the query and the image size.
+    private record ImageKey(QueryKey query, int width, int height) {
+    }
+
+    public ChartRenderer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ChartRenderer(int threads) {
+        pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "chart-render");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a line chart with the application's styling: years on the x axis,
+     * series drawn as paths, tooltips and the legend on the right.
+     */
+    static JFreeChart createChart(String title, String metric, XYSeriesCollection dataset) {
+        JFreeChart chart = ChartFactory.createXYLineChart(
+                title,
+                "Year",
+                metric,
+                dataset,
+                PlotOrientation.VERTICAL,
+                true, // Include legend
+                true, // Tooltips
+                false // URLs
+        );
+
+        // Lines need no bar interval; a fixed width spares a rescan of all points per change
+        dataset.setIntervalWidth(1.0);
+
+        // Years on the x axis: whole numbers, no thousands separator, not anchored at zero
+        XYPlot plot = chart.getXYPlot();
+        NumberAxis yearAxis = (NumberAxis) plot.getDomainAxis();
+        yearAxis.setStandardTickUnits(NumberAxis.createIntegerTickUnits());
+        yearAxis.setNumberFormatOverride(new DecimalFormat("0"));
+        yearAxis.setAutoRangeIncludesZero(false);
+        ((NumberAxis) plot.getRangeAxis()).setAutoRangeIncludesZero(false);
+
+        // Draw each series as a single path and enable tooltips
+        XYLineAndShapeRenderer renderer = new XYLineAndShapeRenderer(true, true);
+        renderer.setDrawSeriesLineAsPath(true);
+        renderer.setDefaultToolTipGenerator(new StandardXYToolTipGenerator(
+                StandardXYToolTipGenerator.DEFAULT_TOOL_TIP_FORMAT, new DecimalFormat("0"), new DecimalFormat("#,##0.##")));
+        plot.setRenderer(renderer);
+
+        chart.getLegend().setPosition(RectangleEdge.RIGHT);
+        return chart;
+    }
+
+    // Label of the value axis for a metric.
+    static String valueLabel(String metric) {
+        return metric.equals(MetricQuery.ALL_SERIES) ? "Value" : metric;
+    }
+
+    // Shows point shapes and the legend only while they stay readable.
+    static void applyDensity(JFreeChart chart, long points, int seriesCount, int plotWidth) {
+        XYLineAndShapeRenderer renderer = (XYLineAndShapeRenderer) chart.getXYPlot().getRenderer();
+        boolean sparse = points * MIN_PIXELS_PER_SHAPE <= plotWidth;
+        if (renderer.getDefaultShapesVisible() != sparse) {
+            renderer.setDefaultShapesVisible(sparse);
+        }
+        boolean legend = seriesCount <= MAX_LEGEND_SERIES;
+        if (chart.getLegend().isVisible() != legend) {
+            chart.getLegend().setVisible(legend);
+        }
+    }
+
+    // Series key, made unique within the dataset if already taken.
+    static String uniqueKey(XYSeriesCollection dataset, String key) {
+        String candidate = key;
+        for (int n = 2; dataset.getSeriesIndex(candidate) >= 0; n++) {
+            candidate = key + " (" + n + ")";
+        }
+        return candidate;
+    }
+
+    /**
+     * Copy of a prepared series under a key unique within the dataset. Prepared series
+     * may sit in a result cache and be handed out again, so they are never renamed or
+     * attached to a dataset themselves.
+     */
+    static XYSeries copyForDataset(XYSeriesCollection dataset, XYSeries series) {
+        XYSeries copy = new XYSeries(uniqueKey(dataset, series.getKey().toString()), false, true);
+        for (int i = 0, n = series.getItemCount(); i < n; i++) {
+            copy.add(series.getX(i), series.getY(i), false);
+        }
+        return copy;
+    }
+
+    /**
+     * Draws the chart of the rows into a new image; safe to call from any thread.
+     * Series are downsampled to the image width.
+     */
+    public static BufferedImage renderImage(List<CountryData> rows, String metric, int width, int height) {
+        checkSize(width, height);
+        ChartData data = ChartData.prepare(rows, metric, width);
+        Stage.Sample sample = Metrics.CHART_RENDER.start();
+        XYSeriesCollection dataset = new XYSeriesCollection();
+        long points = 0;
+        for (XYSeries series : data.series().values()) {
+            dataset.addSeries(copyForDataset(dataset, series));
+            points += series.getItemCount();
+        }
+        JFreeChart chart = createChart(data.title(), valueLabel(metric), dataset);
+        applyDensity(chart, points, dataset.getSeriesCount(), width);
+        BufferedImage image = chart.createBufferedImage(width, height, BufferedImage.TYPE_INT_RGB, null);
+        sample.stop(dataset.getSeriesCount());
+        return image;
+    }
+
+    /**
+     * Renders the chart of a query on the pool, or returns the cached image if the
+     * same query was drawn at this size since the data last changed.
+     */
+    public CompletableFuture<BufferedImage> render(DataIndex index, String metric, Collection<String> countries,
+                                                   int width, int height) {
+        checkSize(width, height);
+        ImageKey key = new ImageKey(QueryKey.of(metric, countries, index.getVersion()), width, height);
+        BufferedImage cached = images.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        List<String> selected = List.copyOf(countries);
+        return CompletableFuture.supplyAsync(() -> {
+            BufferedImage image = renderImage(MetricQuery.select(index, metric, selected), metric, width, height);
+            images.put(key, image);
+            return image;
+        }, pool);
+    }
+
+    /**
+     * Writes one PNG per country and metric into the directory, drawing them in
+     * parallel on the pool; pairs without rows are skipped. Files are named after
+     * the country and series codes, or names where a code is missing.
+     *
+     * @param progress told the number of charts done so far, after each one
+     * @return the number of files written
+     */
+    public int renderBatch(DataIndex index, Collection<String> countries, Collection<String> metrics, Path directory,
+                           int width, int height, IntConsumer progress) throws IOException {
+        checkSize(width, height);
+        Files.createDirectories(directory);
+        CompletionService<Boolean> done = new ExecutorCompletionService<>(pool);
+        int tasks = 0;
+        for (String country : countries) {
+            for (String metric : metrics) {
+                done.submit(() -> renderFile(index, country, metric, directory, width, height));
+                tasks++;
+            }
+        }
+        int written = 0;
+        try {
+            for (int i = 0; i < tasks; i++) {
+                if (done.take().get()) {
+                    written++;
+                }
+                progress.accept(i + 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        return written;
+    }
+
+    // Draws one country's chart of a metric to a PNG; false if the country has no rows of it.
+    private static boolean renderFile(DataIndex index, String country, String metric, Path directory, int width,
+                                      int height) {
+        List<CountryData> rows = MetricQuery.select(index, metric, List.of(country));
+        if (rows.isEmpty()) {
+            return false;
+        }
+        CountryData first = rows.get(0);
+        String countryPart = first.getCountryCode() != null ? first.getCountryCode() : country;
+        String metricPart = metric.equals(MetricQuery.ALL_SERIES) ? "all"
+                : rows.size() == 1 && first.getSeriesCode() != null ? first.getSeriesCode() : metric;
+        Path file = directory.resolve(fileName(countryPart) + "_" + fileName(metricPart) + ".png");
+        BufferedImage image = renderImage(rows, metric, width, height);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            ImageIO.write(image, "png", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    // Hit and miss counts and the space in use of the image cache.
+    public String cacheStatus() {
+        return images.toString();
+    }
+
+    // Stops the worker threads; charts being drawn are finished.
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // A name with every character that is not safe in file names replaced by '_'.
+    private static String fileName(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            sb.append(c < 128 && (Character.isLetterOrDigit(c) || c == '.' || c == '-') ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    private static void checkSize(int width, int height) {
+        if (width < 1 || height < 1 || width > MAX_SIZE || height > MAX_SIZE) {
+            throw new IllegalArgumentException("Invalid chart size: " + width + "x" + height
+                    + " (each side 1 to " + MAX_SIZE + ")");
+        }
+    }
+}
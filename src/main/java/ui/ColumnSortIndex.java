@@ -0,0 +1,278 @@
+package main.java.ui;
+
+import main.java.model.CountryData;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * ColumnSortIndex is the sort order of one table column over every row of the row
+ * store, kept as a permutation of row numbers plus one primitive sort key per row.
+ * <p>
+ * The permutation is built once and extended as rows are appended: the new rows are
+ * sorted on their own and merged in, so the full store is never re-sorted. Rows
+ * replaced in place are taken out and merged back in the same way. Sorting
+ * the visible rows is then a walk over the permutation that keeps the rows present
+ * in the current filter, without comparing any cell values.
+ * <p>
+ * Ties keep row-number order in both directions, and missing values sort before
+ * every value, matching {@link javax.swing.table.TableRowSorter}.
+ */
+final class ColumnSortIndex {
+    // Key of a missing value
+    private static final long MISSING = Long.MIN_VALUE;
+
+    private final int year; // Year column read by this index; unused for text columns
+    private final Function<CountryData, String> textField; // Text column read, or null
+
+    // Rank of every distinct text value in collation order; text columns only
+    private final Map<String, Long> textRanks = new HashMap<>();
+
+    private int[] permutation = new int[0];
+    private long[] keys = new long[0];
+    private int size; // Number of store rows covered
+
+    private ColumnSortIndex(int year, Function<CountryData, String> textField) {
+        this.year = year;
+        this.textField = textField;
+    }
+
+    // Index over the values of one year.
+    static ColumnSortIndex forYear(int year) {
+        return new ColumnSortIndex(year, null);
+    }
+
+    // Index over a text field, in the order of the default Collator.
+    static ColumnSortIndex forText(Function<CountryData, String> textField) {
+        return new ColumnSortIndex(0, textField);
+    }
+
+    // Brings the index up to date with rows appended to the store since the last call.
+    void update(List<CountryData> store) {
+        int storeSize = store.size();
+        if (storeSize == size) {
+            return;
+        }
+        if (textField != null && registerText(store, size, storeSize)) {
+            rebuild(store); // New text values shift the ranks of existing ones
+            return;
+        }
+
+        keys = Arrays.copyOf(keys, storeSize);
+        int[] added = new int[storeSize - size];
+        for (int i = 0; i < added.length; i++) {
+            int row = size + i;
+            added[i] = row;
+            keys[row] = keyOf(store.get(row));
+        }
+        sortByKey(added, keys);
+        permutation = merge(permutation, size, added, keys);
+        size = storeSize;
+    }
+
+    /**
+     * Re-keys rows whose contents were replaced in place: they are taken out of the
+     * permutation, sorted on their own and merged back in.
+     *
+     * @param changedRows store row numbers, ascending
+     */
+    void refresh(List<CountryData> store, int[] changedRows) {
+        int[] changed = Arrays.stream(changedRows).filter(row -> row < size).toArray();
+        if (changed.length == 0) {
+            return;
+        }
+        if (textField != null && registerText(store, changed)) {
+            rebuild(store);
+            return;
+        }
+
+        boolean[] isChanged = new boolean[size];
+        for (int row : changed) {
+            isChanged[row] = true;
+            keys[row] = keyOf(store.get(row));
+        }
+        int[] rest = new int[size - changed.length];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (!isChanged[permutation[i]]) {
+                rest[count++] = permutation[i];
+            }
+        }
+        sortByKey(changed, keys);
+
+        // Unlike appended rows, replaced rows may precede others with the same key
+        int[] merged = new int[size];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < count && j < changed.length) {
+            long restKey = keys[rest[i]];
+            long changedKey = keys[changed[j]];
+            boolean takeChanged = changedKey < restKey || (changedKey == restKey && changed[j] < rest[i]);
+            merged[k++] = takeChanged ? changed[j++] : rest[i++];
+        }
+        while (i < count) {
+            merged[k++] = rest[i++];
+        }
+        while (j < changed.length) {
+            merged[k++] = changed[j++];
+        }
+        permutation = merged;
+    }
+
+    /**
+     * Writes the model indexes of the visible rows in sorted order.
+     *
+     * @param modelIndexOfRow model index of each store row, or -1 if it is not visible
+     * @param ascending       sort direction
+     * @param viewToModel     receives the model indexes; must hold every visible row
+     * @return the number of model indexes written
+     */
+    int walk(int[] modelIndexOfRow, boolean ascending, int[] viewToModel) {
+        int count = 0;
+        if (ascending) {
+            for (int i = 0; i < size; i++) {
+                int modelIndex = modelIndexOfRow[permutation[i]];
+                if (modelIndex >= 0) {
+                    viewToModel[count++] = modelIndex;
+                }
+            }
+            return count;
+        }
+        // Descending: runs of equal keys in reverse order, each run still in row order
+        int end = size;
+        while (end > 0) {
+            long key = keys[permutation[end - 1]];
+            int start = end - 1;
+            while (start > 0 && keys[permutation[start - 1]] == key) {
+                start--;
+            }
+            for (int i = start; i < end; i++) {
+                int modelIndex = modelIndexOfRow[permutation[i]];
+                if (modelIndex >= 0) {
+                    viewToModel[count++] = modelIndex;
+                }
+            }
+            end = start;
+        }
+        return count;
+    }
+
+    private void rebuild(List<CountryData> store) {
+        size = store.size();
+        keys = new long[size];
+        permutation = new int[size];
+        for (int row = 0; row < size; row++) {
+            permutation[row] = row;
+            keys[row] = keyOf(store.get(row));
+        }
+        sortByKey(permutation, keys);
+    }
+
+    private long keyOf(CountryData data) {
+        if (textField != null) {
+            String text = textField.apply(data);
+            return text == null ? MISSING : textRanks.get(text);
+        }
+        return data.hasValue(year) ? sortableBits(data.valueAt(year)) : MISSING;
+    }
+
+    // Maps a double to a long with the same ordering.
+    private static long sortableBits(double value) {
+        long bits = Double.doubleToLongBits(value == 0.0 ? 0.0 : value); // Treat -0.0 as 0.0
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    // Adds unseen text values of the given rows; returns true if there were any.
+    private boolean registerText(List<CountryData> store, int from, int to) {
+        boolean unseen = false;
+        for (int row = from; row < to; row++) {
+            unseen |= registerText(store.get(row));
+        }
+        if (unseen) {
+            rerank();
+        }
+        return unseen;
+    }
+
+    // Adds unseen text values of the listed rows; returns true if there were any.
+    private boolean registerText(List<CountryData> store, int[] rows) {
+        boolean unseen = false;
+        for (int row : rows) {
+            unseen |= registerText(store.get(row));
+        }
+        if (unseen) {
+            rerank();
+        }
+        return unseen;
+    }
+
+    // Adds the row's text value if it is unseen; returns true if it was.
+    private boolean registerText(CountryData data) {
+        String text = textField.apply(data);
+        if (text != null && !textRanks.containsKey(text)) {
+            textRanks.put(text, 0L);
+            return true;
+        }
+        return false;
+    }
+
+    // Ranks every known text value in collation order.
+    private void rerank() {
+        List<String> ordered = new ArrayList<>(textRanks.keySet());
+        ordered.sort(Collator.getInstance());
+        for (int i = 0; i < ordered.size(); i++) {
+            textRanks.put(ordered.get(i), (long) i);
+        }
+    }
+
+    // Stable sort of row numbers by their keys.
+    private static void sortByKey(int[] rows, long[] keys) {
+        if (rows.length < 2) {
+            return;
+        }
+        int[] buffer = new int[rows.length];
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int lo = 0; lo < rows.length; lo += 2 * width) {
+                int mid = Math.min(lo + width, rows.length);
+                int hi = Math.min(lo + 2 * width, rows.length);
+                int i = lo;
+                int j = mid;
+                int k = lo;
+                while (i < mid && j < hi) {
+                    buffer[k++] = keys[rows[j]] < keys[rows[i]] ? rows[j++] : rows[i++];
+                }
+                while (i < mid) {
+                    buffer[k++] = rows[i++];
+                }
+                while (j < hi) {
+                    buffer[k++] = rows[j++];
+                }
+            }
+            System.arraycopy(buffer, 0, rows, 0, rows.length);
+        }
+    }
+
+    // Merges two sorted runs; rows of the first run win ties, keeping row-number order.
+    private static int[] merge(int[] first, int firstSize, int[] second, long[] keys) {
+        int[] merged = new int[firstSize + second.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < firstSize && j < second.length) {
+            merged[k++] = keys[second[j]] < keys[first[i]] ? second[j++] : first[i++];
+        }
+        while (i < firstSize) {
+            merged[k++] = first[i++];
+        }
+        while (j < second.length) {
+            merged[k++] = second[j++];
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,73 @@
+package main.java.ui;
+
+import main.java.data.SearchIndex;
+
+import javax.swing.AbstractListModel;
+import java.util.Collections;
+
+/**
+ * CountryListModel shows the entities of a {@link SearchIndex} that match the
+ * current search text, best match first, or all of them in name order when the
+ * text is blank.
+ * <p>
+ * The matches are kept as entity ids in a buffer that is reused between
+ * searches, so typing does not allocate a new list per keystroke.
+ */
+public class CountryListModel extends AbstractListModel<String> {
+    private SearchIndex index = new SearchIndex(Collections.emptyList(), Collections.emptyList());
+    private int[] matches = new int[0];
+    private int size;
+    private String query = "";
+
+    // Replaces the searched entities and reapplies the current search text.
+    public void setIndex(SearchIndex index) {
+        this.index = index;
+        this.matches = new int[index.size()];
+        search(query);
+    }
+
+    // Shows the entities matching the text.
+    public void search(String text) {
+        this.query = text;
+        int oldSize = size;
+        size = index.search(text, matches);
+        if (oldSize > size) {
+            fireIntervalRemoved(this, size, oldSize - 1);
+        }
+        if (Math.min(oldSize, size) > 0) {
+            fireContentsChanged(this, 0, Math.min(oldSize, size) - 1);
+        }
+        if (size > oldSize) {
+            fireIntervalAdded(this, oldSize, size - 1);
+        }
+    }
+
+    // Returns the row showing the named entity, or -1 if it is not among the matches.
+    public int indexOf(String name) {
+        int id = index.indexOf(name);
+        if (id < 0) {
+            return -1;
+        }
+        for (int i = 0; i < size; i++) {
+            if (matches[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Returns true if the entity is searchable, whether or not it currently matches.
+    public boolean contains(String name) {
+        return index.indexOf(name) >= 0;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String getElementAt(int row) {
+        return index.getName(matches[row]);
+    }
+}
@@ -0,0 +1,222 @@
+package main.java.ui;
+
+import main.java.data.ConflictPolicy;
+import main.java.data.MappedCSVReader;
+import main.java.data.MultiSourceLoader;
+import main.java.data.ParallelCSVReader;
+import main.java.data.SnapshotStore;
+import main.java.model.CountryData;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * DataLoader parses the CSV file on a background thread and streams the parsed
+ * rows to the Event Dispatch Thread in batches, reporting progress and throughput
+ * to a {@link LoadStatusPanel}. The load can be cancelled at any time.
+ * <p>
+ * When a fresh binary snapshot of the CSV exists it is read instead of the text;
+ * otherwise a snapshot is written after a successful parse. Large files are parsed
+ * with {@link ParallelCSVReader}, whose ranges arrive in file order.
+ * <p>
+ * A directory or glob pattern is loaded with {@link MultiSourceLoader}: the files
+ * are parsed on -DloadThreads threads (default: one per core) and merged under the
+ * -DconflictPolicy policy (default: first), then streamed like a single file. The
+ * time of every file is logged. Nothing is shown until the last file is merged,
+ * since any later file may still fill in or override cells of rows merged before.
+ */
+public class DataLoader extends SwingWorker<Integer, List<CountryData>> {
+    private static final Logger LOGGER = Logger.getLogger(DataLoader.class.getName());
+
+    private static final int MAX_BATCH_SIZE = 2048;
+    private static final long MAX_BATCH_NANOS = 50_000_000L; // Publish at least every 50 ms
+    private static final long PARALLEL_THRESHOLD_BYTES = 64L << 20; // Parse larger files on all cores
+
+    private final String csvFilePath;
+    private final LoadStatusPanel statusPanel;
+    private final Consumer<List<CountryData>> batchHandler;
+    private final Runnable completionHandler;
+
+    // Background thread state
+    private List<CountryData> pending = new ArrayList<>();
+    private long lastPublishNanos;
+    private int rowsPublished;
+    private volatile long totalBytes;
+    private volatile long bytesRead;
+
+    // EDT state
+    private final long startNanos = System.nanoTime();
+    private int rowsLoaded;
+
+    // Constructor wires the loader to the status panel and the EDT callbacks.
+    public DataLoader(String csvFilePath, LoadStatusPanel statusPanel,
+                      Consumer<List<CountryData>> batchHandler, Runnable completionHandler) {
+        this.csvFilePath = csvFilePath;
+        this.statusPanel = statusPanel;
+        this.batchHandler = batchHandler;
+        this.completionHandler = completionHandler;
+        statusPanel.setCancelAction(() -> cancel(true));
+    }
+
+    @Override
+    protected Integer doInBackground() throws Exception {
+        lastPublishNanos = System.nanoTime();
+        if (MultiSourceLoader.isMultiSource(csvFilePath)) {
+            return loadSources();
+        }
+        SnapshotStore snapshotStore = new SnapshotStore(csvFilePath);
+
+        if (snapshotStore.isFresh()) {
+            try {
+                return loadSnapshot(snapshotStore);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                // A corrupt or unreadable snapshot is treated as missing; the CSV is parsed instead
+                LOGGER.log(Level.WARNING, "Ignoring unreadable snapshot: {0}", e.toString());
+                if (rowsPublished > 0) {
+                    throw e; // Rows were already handed to the UI
+                }
+                pending.clear(); // Snapshot rows not yet published; the CSV provides them all again
+            }
+        }
+
+        List<CountryData> allRows = new ArrayList<>();
+        // Stamped before parsing, so a file changed meanwhile leaves a stale snapshot
+        SnapshotStore.SourceStamp source = snapshotStore.stampSource();
+        totalBytes = Files.size(Paths.get(csvFilePath));
+        LongConsumer progress = bytes -> {
+            bytesRead = bytes;
+            setProgress((int) (bytes * 100 / Math.max(1, totalBytes)));
+        };
+        if (totalBytes >= PARALLEL_THRESHOLD_BYTES) {
+            new ParallelCSVReader(csvFilePath).parse(rows -> {
+                allRows.addAll(rows);
+                rows.forEach(this::accept);
+            }, progress);
+        } else {
+            new MappedCSVReader(csvFilePath).parse(row -> {
+                allRows.add(row);
+                accept(row);
+            }, progress);
+        }
+        flush();
+
+        try {
+            snapshotStore.save(allRows, source);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write snapshot: {0}", e.getMessage());
+        }
+        return allRows.size();
+    }
+
+    // Parses and merges the files of a directory or glob, then streams the merged rows.
+    private int loadSources() throws IOException {
+        List<Path> files = MultiSourceLoader.resolve(csvFilePath);
+        if (files.isEmpty()) {
+            throw new IOException("No CSV files match " + csvFilePath);
+        }
+        long bytes = 0;
+        for (Path file : files) {
+            bytes += Files.size(file);
+        }
+        totalBytes = bytes;
+        int[] filesDone = new int[1];
+        MultiSourceLoader loader = new MultiSourceLoader(files,
+                ConflictPolicy.of(System.getProperty("conflictPolicy", "first")),
+                Integer.getInteger("loadThreads", Runtime.getRuntime().availableProcessors()));
+        MultiSourceLoader.Result result = loader.load(timing -> {
+            LOGGER.log(Level.INFO, "Parsed {0}", timing);
+            bytesRead += timing.bytes();
+            setProgress(++filesDone[0] * 100 / files.size());
+        });
+        LOGGER.log(Level.INFO, "Merged {0} files into {1} rows in {2} ms, {3} conflicting cells",
+                new Object[]{files.size(), result.rows().size(), result.nanos() / 1_000_000, result.conflicts()});
+        // Streamed only once merged: rows handed over earlier could still change underneath the UI
+        result.rows().forEach(this::accept);
+        flush();
+        return result.rows().size();
+    }
+
+    // Streams rows from the binary snapshot.
+    private int loadSnapshot(SnapshotStore snapshotStore) throws IOException {
+        totalBytes = Files.size(snapshotStore.getSnapshotPath());
+        int[] rows = new int[1];
+        snapshotStore.load(row -> {
+            rows[0]++;
+            accept(row);
+        }, bytes -> {
+            bytesRead = bytes;
+            setProgress((int) (bytes * 100 / Math.max(1, totalBytes)));
+        });
+        flush();
+        return rows[0];
+    }
+
+    // Adds a row to the pending batch, publishing it when it is full or old enough.
+    private void accept(CountryData row) {
+        pending.add(row);
+        if (pending.size() >= MAX_BATCH_SIZE
+                || (pending.size() % 64 == 0 && System.nanoTime() - lastPublishNanos >= MAX_BATCH_NANOS)) {
+            flush();
+        }
+    }
+
+    // Publishes the rows collected so far.
+    private void flush() {
+        if (!pending.isEmpty()) {
+            rowsPublished += pending.size();
+            publish(pending);
+            pending = new ArrayList<>();
+        }
+        lastPublishNanos = System.nanoTime();
+    }
+
+    @Override
+    protected void process(List<List<CountryData>> batches) {
+        for (List<CountryData> batch : batches) {
+            rowsLoaded += batch.size();
+            batchHandler.accept(batch);
+        }
+        statusPanel.updateProgress(getProgress(), "Loading... " + describeThroughput());
+    }
+
+    @Override
+    protected void done() {
+        String status;
+        if (isCancelled()) {
+            status = "Loading cancelled after " + describeThroughput();
+        } else {
+            try {
+                get();
+                status = "Loaded " + describeThroughput();
+            } catch (InterruptedException | CancellationException e) {
+                status = "Loading cancelled after " + describeThroughput();
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.SEVERE, "Error reading CSV file: {0}", e.getCause().getMessage());
+                status = "Error reading CSV file: " + e.getCause().getMessage();
+            }
+        }
+        statusPanel.finish(status);
+        completionHandler.run();
+    }
+
+    // Describes rows, bytes and rows per second loaded so far.
+    private String describeThroughput() {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        return String.format("%,d rows (%.1f MB) in %.2f s, %,.0f rows/s",
+                rowsLoaded, bytesRead / 1e6, seconds, rowsLoaded / seconds);
+    }
+}
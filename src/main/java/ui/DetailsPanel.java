@@ -4,7 +4,6 @@ import main.java.model.CountryData;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.Map;
 
 // DetailsPanel displays detailed information about a selected CountryData entry.
 public class DetailsPanel extends JPanel {
@@ -44,11 +43,10 @@ public class DetailsPanel extends JPanel {
         sb.append("Series Code: ").append(data.getSeriesCode() != null ? data.getSeriesCode() : "N/A").append("\n\n");
         sb.append("Yearly Data:\n");
 
-        Map<Integer, ? extends Number> yearlyData = data.getYearlyData();
-        if (yearlyData != null && !yearlyData.isEmpty()) {
-            for (Map.Entry<Integer, ? extends Number> entry : yearlyData.entrySet()) {
-                sb.append("  ").append(entry.getKey()).append(": ");
-                sb.append(entry.getValue() != null ? entry.getValue().toString() : "N/A");
+        if (data.valueCount() > 0) {
+            for (int year = data.firstYear(), last = data.lastYear(); year <= last; year++) {
+                sb.append("  ").append(year).append(": ");
+                sb.append(data.hasValue(year) ? Double.toString(data.valueAt(year)) : "N/A");
                 sb.append("\n");
             }
         } else {
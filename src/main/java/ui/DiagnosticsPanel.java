@@ -0,0 +1,108 @@
+package main.java.ui;
+
+import main.java.metrics.Counter;
+import main.java.metrics.LatencyHistogram;
+import main.java.metrics.Metrics;
+import main.java.metrics.Stage;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * DiagnosticsPanel shows the timings of the pipeline stages and the counters kept
+ * in {@link Metrics}, refreshed every second while the panel is showing. The
+ * figures can be reset or written to a text file.
+ */
+public class DiagnosticsPanel extends JPanel {
+    private static final String[] STAGE_COLUMNS =
+            {"Stage", "Count", "Items", "Mean ms", "p50 ms", "p90 ms", "p99 ms", "Max ms"};
+    private static final String[] COUNTER_COLUMNS = {"Counter", "Count"};
+    private static final int REFRESH_MS = 1000;
+
+    private final DefaultTableModel stageModel = readOnlyModel(STAGE_COLUMNS);
+    private final DefaultTableModel counterModel = readOnlyModel(COUNTER_COLUMNS);
+    private final javax.swing.Timer refreshTimer = new javax.swing.Timer(REFRESH_MS, e -> refresh());
+
+    public DiagnosticsPanel() {
+        setLayout(new BorderLayout(5, 5));
+        setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
+        JSplitPane tables = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+                new JScrollPane(new JTable(stageModel)), new JScrollPane(new JTable(counterModel)));
+        tables.setResizeWeight(0.7);
+        add(tables, BorderLayout.CENTER);
+
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            Metrics.reset();
+            refresh();
+        });
+        JButton dumpButton = new JButton("Dump to File...");
+        dumpButton.addActionListener(e -> dumpToFile());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(resetButton);
+        buttons.add(dumpButton);
+        add(buttons, BorderLayout.SOUTH);
+
+        // Refresh only while the panel is on screen
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+                if (isShowing()) {
+                    refresh();
+                    refreshTimer.start();
+                } else {
+                    refreshTimer.stop();
+                }
+            }
+        });
+    }
+
+    // Reloads both tables from the current metrics.
+    private void refresh() {
+        List<Stage> stages = Metrics.stages();
+        stageModel.setRowCount(0);
+        for (Stage stage : stages) {
+            LatencyHistogram h = stage.getHistogram();
+            stageModel.addRow(new Object[]{
+                    stage.getName(), h.getCount(), stage.getItems(), millis(h.getMeanNanos()),
+                    millis(h.percentileNanos(0.50)), millis(h.percentileNanos(0.90)),
+                    millis(h.percentileNanos(0.99)), millis(h.getMaxNanos())});
+        }
+        counterModel.setRowCount(0);
+        for (Counter counter : Metrics.counters()) {
+            counterModel.addRow(new Object[]{counter.getName(), counter.get()});
+        }
+    }
+
+    private void dumpToFile() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("metrics.txt"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            Metrics.dump(chooser.getSelectedFile().toPath());
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Could not write metrics: " + ex.getMessage(),
+                    "Diagnostics", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private static String millis(double nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+
+    private static DefaultTableModel readOnlyModel(String[] columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+}
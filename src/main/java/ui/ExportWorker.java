@@ -0,0 +1,112 @@
+package main.java.ui;
+
+import main.java.data.ExportFormat;
+import main.java.data.RowExporter;
+import main.java.model.CountryData;
+
+import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.*;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ExportWorker exports rows to a file in the background with a {@link RowExporter},
+ * showing its progress in a {@link ProgressMonitor}. Cancelling the monitor
+ * interrupts the export, which then removes what it had written.
+ */
+public class ExportWorker extends SwingWorker<Long, Void> {
+    private static final Logger LOGGER = Logger.getLogger(ExportWorker.class.getName());
+
+    private final Component parent;
+    private final List<CountryData> rows;
+    private final RowExporter exporter;
+    private final Path target;
+    private final ProgressMonitor monitor;
+    private final Timer cancelTimer; // Checks for the monitor's Cancel button while the export runs
+    private final long startNanos = System.nanoTime();
+
+    private ExportWorker(Component parent, List<CountryData> rows, RowExporter exporter, Path target) {
+        this.parent = parent;
+        this.rows = rows;
+        this.exporter = exporter;
+        this.target = target;
+        monitor = new ProgressMonitor(parent, "Exporting " + rows.size() + " rows to " + target.getFileName(),
+                null, 0, 100);
+        monitor.setMillisToDecideToPopup(200);
+        addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                monitor.setProgress((Integer) e.getNewValue());
+            }
+        });
+        cancelTimer = new Timer(200, e -> {
+            if (monitor.isCanceled()) {
+                cancel(true);
+            }
+        });
+    }
+
+    /**
+     * Asks for a file and a format, then exports the rows from fromYear to toYear in
+     * the background. Must be called on the event dispatch thread.
+     */
+    public static void chooseAndExport(Component parent, List<CountryData> rows, int fromYear, int toYear) {
+        if (rows.isEmpty() || toYear < fromYear) {
+            JOptionPane.showMessageDialog(parent, "There are no rows to export.", "Export",
+                    JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setAcceptAllFileFilterUsed(false);
+        for (ExportFormat format : ExportFormat.values()) {
+            chooser.addChoosableFileFilter(new FileNameExtensionFilter(
+                    format.getLabel() + " (*." + format.getExtension() + ")", format.getExtension()));
+        }
+        if (chooser.showSaveDialog(parent) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        // The chosen filter decides the format; add its extension if the name has none
+        String extension = ((FileNameExtensionFilter) chooser.getFileFilter()).getExtensions()[0];
+        File file = chooser.getSelectedFile();
+        if (!file.getName().contains(".")) {
+            file = new File(file.getPath() + "." + extension);
+        }
+        if (file.exists() && JOptionPane.showConfirmDialog(parent, file.getName() + " exists. Replace it?", "Export",
+                JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+            return;
+        }
+        RowExporter exporter = new RowExporter(ExportFormat.of(extension), fromYear, toYear);
+        ExportWorker worker = new ExportWorker(parent, rows, exporter, file.toPath());
+        worker.cancelTimer.start();
+        worker.execute();
+    }
+
+    @Override
+    protected Long doInBackground() throws Exception {
+        return exporter.export(rows, target, written -> setProgress((int) (written * 100 / rows.size())));
+    }
+
+    @Override
+    protected void done() {
+        cancelTimer.stop();
+        monitor.close();
+        try {
+            long bytes = get();
+            LOGGER.log(Level.INFO, String.format("Exported %d rows, %,d bytes, to %s in %.1f s", rows.size(), bytes,
+                    target, (System.nanoTime() - startNanos) / 1e9));
+        } catch (CancellationException e) {
+            LOGGER.log(Level.INFO, "Export to {0} cancelled", target);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "Export failed", e.getCause());
+            JOptionPane.showMessageDialog(parent, "Export failed: " + e.getCause().getMessage(), "Export",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+}
@@ -1,34 +1,127 @@
 package main.java.ui;
 
+import main.java.data.DataIndex;
+import main.java.data.MetricQuery;
+import main.java.data.QueryKey;
+import main.java.data.ResultCache;
+import main.java.data.RowDelta;
+import main.java.data.RowFilter;
+import main.java.data.SearchIndex;
+import main.java.metrics.Metrics;
+import main.java.metrics.Stage;
 import main.java.model.CountryData;
+import main.java.model.Transform;
+import org.jfree.data.xy.XYSeries;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.*;
 import java.util.*;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * FilterPanel allows users to filter data based on specific criteria,
  * including selecting multiple countries and metrics.
+ * <p>
+ * Filtering runs in the background. Changes are coalesced by a short debounce
+ * timer; the row selection, statistics and chart series are then computed off the
+ * event dispatch thread, the latter two in parallel, and published together in one
+ * update. A newer filter run supersedes an older one, whose results are dropped.
+ * <p>
+ * The country list is filtered live by the search field through a {@link SearchIndex}.
+ * The selected countries are kept in a set of their own, so countries hidden by the
+ * search stay selected.
+ * <p>
+ * Results are kept in a bounded {@link ResultCache} keyed by the metric, the sorted
+ * countries and the dataset version, so going back to an earlier view shows it
+ * without recomputing anything.
  */
 public class FilterPanel extends JPanel {
+    private static final Logger LOGGER = Logger.getLogger(FilterPanel.class.getName());
+
     private final JComboBox<String> metricComboBox;
+    // Transform applied to the selected series; "None" shows the series itself
+    private final JComboBox<String> transformComboBox;
+    private final JLabel statusLabel;
 
     private final JList<String> countryList;
-    private final DefaultListModel<String> countryListModel;
+    private final CountryListModel countryListModel;
+    private final Set<String> selectedCountries = new LinkedHashSet<>();
+    private boolean syncingSelection; // True while the list selection is set from selectedCountries
+    private int indexedCountries; // Countries in the list's search index
+    private int registeredSeries; // Stored series in the metric combo box
 
-    private final List<CountryData> originalData;
+    private final DataIndex dataIndex;
     private final TablePanel tablePanel;
     private final StatsPanel statsPanel;
     private final ChartPanelCustom chartPanel;
 
-    private static final int MAX_COUNTRIES = 5;
+    // Default selection limit; override with -DmaxCountries=N or setMaxCountries
+    private static final int DEFAULT_MAX_COUNTRIES = 5;
+    private static final String DEFAULT_METRIC = "GDP per capita (constant 2005 US$)";
+    private static final String DEFAULT_COUNTRY = "United States";
+    private static final String NO_TRANSFORM = "None";
+
+    // Quiet period after the last change before a filter runs
+    private static final int FILTER_DEBOUNCE_MS = 150;
+
+    private int maxCountries = Integer.getInteger("maxCountries", DEFAULT_MAX_COUNTRIES);
+
+    // Coalesces rapid changes into a single filter run
+    private final javax.swing.Timer filterTimer = new javax.swing.Timer(FILTER_DEBOUNCE_MS, e -> runFilter());
+    // Computes filter results off the event dispatch thread
+    private final ExecutorService filterExecutor = Executors.newFixedThreadPool(3, task -> {
+        Thread thread = new Thread(task, "filter-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Incremented for every filter run; work and results of older runs are dropped
+    private final AtomicLong filterGeneration = new AtomicLong();
+
+    // Recent filter results; bounded by -DresultCacheEntries and -DresultCacheBytes
+    private final ResultCache<QueryKey, FilterResult> resultCache = new ResultCache<>(
+            Integer.getInteger("resultCacheEntries", 64),
+            Long.getLong("resultCacheBytes", 64L << 20),
+            FilterResult::estimateBytes);
+
+    // Criteria of the last applied filter; null until a filter has been applied
+    private String appliedMetric;
+    private RowFilter appliedFilter;
+    // Rows of the last published filter result, as exported
+    private List<CountryData> shownData = Collections.emptyList();
+
+    /**
+     * Everything one filter run computes, as kept by the result cache.
+     *
+     * @param rows  ascending store row numbers of the result
+     * @param data  rows of the result
+     * @param stats statistics of the result
+     * @param chart chart series of the result
+     */
+    private record FilterResult(int[] rows, List<CountryData> data, StatsPanel.Result stats, ChartData chart) {
+        // Rough number of bytes the result keeps alive; the rows themselves belong to the store
+        long estimateBytes() {
+            long points = 0;
+            for (XYSeries series : chart.series().values()) {
+                points += series.getItemCount();
+            }
+            // Row number and row reference per row; per point an XYDataItem and two Doubles
+            return 256 + rows.length * 12L + chart.series().size() * 256L + points * 64;
+        }
+    }
 
     // Constructor
-    public FilterPanel(List<CountryData> dataList, TablePanel tablePanel, StatsPanel statsPanel, ChartPanelCustom chartPanel) {
-        this.originalData = dataList;
+    public FilterPanel(DataIndex dataIndex, TablePanel tablePanel, StatsPanel statsPanel, ChartPanelCustom chartPanel) {
+        this.dataIndex = dataIndex;
         this.tablePanel = tablePanel;
         this.statsPanel = statsPanel;
         this.chartPanel = chartPanel;
@@ -38,27 +131,35 @@ public class FilterPanel extends JPanel {
         // Initialize top filter components (Metric selection and filter buttons)
         JPanel topFilterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
 
-        // Extract unique series names for filtering and metric selection
-        Set<String> seriesNames = originalData.stream()
-                .map(CountryData::getSeriesName)
-                .collect(Collectors.toSet());
-
         // Initialize metricComboBox with series names (this will be our single filter)
         metricComboBox = new JComboBox<>();
         metricComboBox.addItem("All Series"); // Option to select all series
-        seriesNames.forEach(metricComboBox::addItem);
-        metricComboBox.setSelectedItem("GDP per capita (constant 2005 US$)");
+
+        // Derived metrics are picked as a transform of the selected series
+        transformComboBox = new JComboBox<>();
+        transformComboBox.addItem(NO_TRANSFORM);
+        for (Transform transform : Transform.values()) {
+            transformComboBox.addItem(transform.getLabel());
+        }
 
         // Initialize buttons
         JButton applyFilterButton = new JButton("Apply Filter");
         JButton clearFilterButton = new JButton("Clear Filter");
+        JButton exportButton = new JButton("Export...");
 
         // Add components to the top filter panel
         topFilterPanel.add(new JLabel("Select Metric: "));
         topFilterPanel.add(metricComboBox);
+        topFilterPanel.add(new JLabel("Transform: "));
+        topFilterPanel.add(transformComboBox);
 
         topFilterPanel.add(applyFilterButton);
         topFilterPanel.add(clearFilterButton);
+        topFilterPanel.add(exportButton);
+
+        // Inline feedback, e.g. when the selection matches no data
+        statusLabel = new JLabel(" ");
+        topFilterPanel.add(statusLabel);
 
         add(topFilterPanel, BorderLayout.NORTH);
 
@@ -69,38 +170,28 @@ public class FilterPanel extends JPanel {
                 "Select Countries for Comparison\n(Use Ctrl or Shift for multiple selections)"
         ));
 
-        // Extract unique country names
-        Set<String> countryNames = originalData.stream()
-                .map(CountryData::getCountryName)
-                .collect(Collectors.toSet());
-
-        // Initialize DefaultListModel and JList
-        countryListModel = new DefaultListModel<>();
-        countryNames.forEach(countryListModel::addElement);
+        // Initialize the searchable list model and JList
+        countryListModel = new CountryListModel();
         countryList = new JList<>(countryListModel);
         countryList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         countryList.setVisibleRowCount(10);
+        filterTimer.setRepeats(false);
+
+        // Extract unique series and country names
+        registerNames();
+        metricComboBox.setSelectedItem(DEFAULT_METRIC);
+        transformComboBox.setEnabled(!"All Series".equals(metricComboBox.getSelectedItem()));
 
-        // Selects United States as standard country
-        int usaIndex = countryListModel.indexOf("United States");
-        if (usaIndex >= 0) {
-            countryList.setSelectedIndex(usaIndex);
-            countryList.ensureIndexIsVisible(usaIndex);
+        if (countryListModel.contains(DEFAULT_COUNTRY)) {
+            selectDefaultCountry();
             // Apply the filter to update the components with the initial selection
             filterData();
         }
 
-        // Add ListSelectionListener to enforce selection limit
+        // Add ListSelectionListener to track the selection and enforce the selection limit
         countryList.addListSelectionListener(e -> {
-            if (!e.getValueIsAdjusting()) {
-                List<String> selectedCountries = countryList.getSelectedValuesList();
-                if (selectedCountries.size() > MAX_COUNTRIES) {
-                    // Deselect the last selected country
-                    int[] selectedIndices = countryList.getSelectedIndices();
-                    int deselectIndex = selectedIndices[selectedIndices.length - 1];
-                    countryList.removeSelectionInterval(deselectIndex, deselectIndex);
-                    JOptionPane.showMessageDialog(this, "You can select up to " + MAX_COUNTRIES + " countries at a time.", "Selection Limit", JOptionPane.WARNING_MESSAGE);
-                }
+            if (!e.getValueIsAdjusting() && !syncingSelection) {
+                updateSelectedCountries();
             }
         });
 
@@ -132,12 +223,33 @@ public class FilterPanel extends JPanel {
         // Add action listeners
         applyFilterButton.addActionListener(this::applyFilter);
         clearFilterButton.addActionListener(this::clearFilter);
+        exportButton.addActionListener(e -> ExportWorker.chooseAndExport(this, shownData, dataIndex.getFirstYear(),
+                dataIndex.getLastYear()));
         searchButton.addActionListener(e -> searchCountry(searchField.getText()));
+        searchField.addActionListener(e -> searchCountry(searchField.getText()));
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchAsYouType(searchField.getText());
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchAsYouType(searchField.getText());
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchAsYouType(searchField.getText());
+            }
+        });
         deselectAllButton.addActionListener(e -> {
-            countryList.clearSelection();
+            selectedCountries.clear();
+            showSelection();
             filterData(); // Update components when countries are deselected
         });
         metricComboBox.addActionListener(this::changeMetric); // Update when metric changes
+        transformComboBox.addActionListener(this::changeMetric);
 
         // Add MouseListener for double-click on countryList
         countryList.addMouseListener(new MouseAdapter() {
@@ -148,10 +260,8 @@ public class FilterPanel extends JPanel {
                     e.consume();
                     int index = countryList.locationToIndex(e.getPoint());
                     if (index >= 0) {
-                        countryListModel.getElementAt(index);
                         // Clear existing selections and select the double-clicked country
-                        countryList.clearSelection();
-                        countryList.setSelectedIndex(index);
+                        selectOnly(countryListModel.getElementAt(index));
                         // Apply filter
                         filterData();
                     }
@@ -160,6 +270,199 @@ public class FilterPanel extends JPanel {
         });
     }
 
+    // Sets how many countries can be selected at once; the chart handles hundreds.
+    public void setMaxCountries(int maxCountries) {
+        if (maxCountries < 1) {
+            throw new IllegalArgumentException("maxCountries must be at least 1: " + maxCountries);
+        }
+        this.maxCountries = maxCountries;
+    }
+
+    /**
+     * Adds a batch of rows that arrived from a background load. New series and
+     * countries are added to the selection widgets, and rows matching the last
+     * applied filter (or all rows, if no filter has been applied yet) are
+     * appended to the table.
+     */
+    public void appendData(List<CountryData> batch) {
+        int firstRow = dataIndex.size();
+        dataIndex.addAll(batch);
+        registerNames();
+        tablePanel.setYearRange(dataIndex.getFirstYear(), dataIndex.getLastYear());
+        appendVisible(batch, firstRow);
+    }
+
+    /**
+     * Applies the changes found by reloading the data file. Changed rows are
+     * updated in the table in place, removed rows are dropped from it and added
+     * rows are appended as by {@link #appendData}; the selection is kept. If any
+     * change touches the applied filter, the statistics and chart are refreshed,
+     * which redraws only the series of changed rows.
+     */
+    public void applyDelta(RowDelta delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        boolean affectsFilter = appliedMetric != null && (delta.added().stream().anyMatch(this::matchesAppliedFilter)
+                || delta.updated().stream().anyMatch(this::matchesAppliedFilter)
+                || Arrays.stream(delta.updatedRows()).anyMatch(row -> matchesAppliedFilter(dataIndex.get(row)))
+                || Arrays.stream(delta.removedRows()).anyMatch(row -> matchesAppliedFilter(dataIndex.get(row))));
+
+        int firstRow = dataIndex.size();
+        dataIndex.apply(delta);
+        registerNames();
+        tablePanel.setYearRange(dataIndex.getFirstYear(), dataIndex.getLastYear());
+        tablePanel.updateRows(delta.updatedRows(), delta.removedRows());
+        appendVisible(delta.added(), firstRow);
+        if (affectsFilter) {
+            filterData();
+        }
+    }
+
+    // Appends the rows stored from firstRow on that pass the applied filter to the table.
+    private void appendVisible(List<CountryData> rows, int firstRow) {
+        int[] visible = new int[rows.size()];
+        int count = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            if (appliedMetric == null || matchesAppliedFilter(rows.get(i))) {
+                visible[count++] = firstRow + i;
+            }
+        }
+        tablePanel.appendRows(visible, count);
+    }
+
+    // Called once a background load has finished; applies the default selection.
+    public void loadComplete() {
+        if (selectedCountries.isEmpty() && "All Series".equals(metricComboBox.getSelectedItem())
+                && countryListModel.contains(DEFAULT_COUNTRY)) {
+            selectDefaultCountry();
+            if (dataIndex.containsSeries(DEFAULT_METRIC)) {
+                metricComboBox.setSelectedItem(DEFAULT_METRIC); // Fires changeMetric, which filters
+            } else {
+                filterData();
+            }
+        } else if (appliedMetric != null) {
+            filterData(); // Refresh stats and chart with the complete dataset
+        }
+    }
+
+    // Selects United States as standard country.
+    private void selectDefaultCountry() {
+        selectOnly(DEFAULT_COUNTRY);
+    }
+
+    // Replaces the selection with one country and scrolls to it if it is listed.
+    private void selectOnly(String country) {
+        selectedCountries.clear();
+        selectedCountries.add(country);
+        showSelection();
+        int row = countryListModel.indexOf(country);
+        if (row >= 0) {
+            countryList.ensureIndexIsVisible(row);
+        }
+    }
+
+    // Takes the selection of the listed countries from the list; unlisted ones stay selected.
+    private void updateSelectedCountries() {
+        List<String> added = new ArrayList<>();
+        for (int row = 0; row < countryListModel.getSize(); row++) {
+            String country = countryListModel.getElementAt(row);
+            if (countryList.isSelectedIndex(row)) {
+                if (selectedCountries.add(country)) {
+                    added.add(country);
+                }
+            } else {
+                selectedCountries.remove(country);
+            }
+        }
+        if (selectedCountries.size() > maxCountries) {
+            // Deselect the most recently selected countries
+            for (int i = added.size() - 1; i >= 0 && selectedCountries.size() > maxCountries; i--) {
+                selectedCountries.remove(added.get(i));
+            }
+            showSelection();
+            JOptionPane.showMessageDialog(this, "You can select up to " + maxCountries + " countries at a time.", "Selection Limit", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    // Selects the rows of the selected countries that are currently listed.
+    private void showSelection() {
+        syncingSelection = true;
+        try {
+            ListSelectionModel selection = countryList.getSelectionModel();
+            selection.setValueIsAdjusting(true);
+            selection.clearSelection();
+            for (String country : selectedCountries) {
+                int row = countryListModel.indexOf(country);
+                if (row >= 0) {
+                    selection.addSelectionInterval(row, row);
+                }
+            }
+            selection.setValueIsAdjusting(false);
+        } finally {
+            syncingSelection = false;
+        }
+    }
+
+    // Filters the country list to the matches of the search text, best match first.
+    private void searchAsYouType(String text) {
+        syncingSelection = true;
+        try {
+            countryListModel.search(text);
+        } finally {
+            syncingSelection = false;
+        }
+        showSelection();
+        if (countryListModel.getSize() > 0) {
+            countryList.ensureIndexIsVisible(0);
+        }
+    }
+
+    // Adds series and country names indexed since the last call to the combo box and list.
+    private void registerNames() {
+        List<String> seriesNames = dataIndex.getSeriesNames();
+        for (int i = registeredSeries; i < seriesNames.size(); i++) {
+            metricComboBox.addItem(seriesNames.get(i));
+        }
+        registeredSeries = seriesNames.size();
+        List<String> countryNames = dataIndex.getCountryNames();
+        if (countryNames.size() != indexedCountries) {
+            // New countries: rebuild the search index, which keeps the list sorted by name
+            List<String> codes = new ArrayList<>(countryNames.size());
+            for (String country : countryNames) {
+                codes.add(dataIndex.getCountryCode(country));
+            }
+            syncingSelection = true;
+            try {
+                countryListModel.setIndex(new SearchIndex(countryNames, codes));
+            } finally {
+                syncingSelection = false;
+            }
+            indexedCountries = countryNames.size();
+            showSelection();
+        }
+    }
+
+    // Metric of the selected series and transform; derived metrics are named as by Transform.metricName.
+    private String selectedMetric() {
+        String series = (String) metricComboBox.getSelectedItem();
+        String label = (String) transformComboBox.getSelectedItem();
+        if (series == null || "All Series".equals(series) || NO_TRANSFORM.equals(label)) {
+            return series;
+        }
+        for (Transform transform : Transform.values()) {
+            if (transform.getLabel().equals(label)) {
+                return transform.metricName(series);
+            }
+        }
+        return series;
+    }
+
+    // True if the row passes the last applied filter.
+    private boolean matchesAppliedFilter(CountryData data) {
+        return appliedFilter.matches(data);
+    }
+
     // Applies the selected filters to the data and updates UI components
     private void applyFilter(ActionEvent e) {
         filterData();
@@ -168,14 +471,24 @@ public class FilterPanel extends JPanel {
     // Clears all applied filters and resets UI components to show no data
     private void clearFilter(ActionEvent e) {
         metricComboBox.setSelectedItem("All Series");
-        countryList.clearSelection();
+        transformComboBox.setSelectedItem(NO_TRANSFORM);
+        selectedCountries.clear();
+        showSelection();
+
+        // Drop pending and running filters; the cleared state is shown right away
+        filterTimer.stop();
+        filterGeneration.incrementAndGet();
+        statusLabel.setText(" ");
+        appliedMetric = "All Series";
+        appliedFilter = MetricQuery.filter(appliedMetric, Collections.emptySet());
 
         // Set components to show no data
         List<CountryData> emptyData = Collections.emptyList();
-        String selectedMetric = (String) metricComboBox.getSelectedItem();
+        shownData = emptyData;
+        String selectedMetric = selectedMetric();
 
         // Update TablePanel
-        tablePanel.updateTableData(emptyData);
+        tablePanel.showRows(new int[0]);
 
         // Update StatsPanel
         statsPanel.updateStats(emptyData, selectedMetric);
@@ -184,59 +497,125 @@ public class FilterPanel extends JPanel {
         chartPanel.updateChart(emptyData, selectedMetric);
     }
 
+    // Schedules a filter run once the selection has been stable for the debounce window.
+    private void filterData() {
+        filterTimer.restart();
+    }
+
     /**
      * Filters the data based on selected metric and countries,
      * and updates the UI components accordingly.
+     * <p>
+     * The selection is captured here on the event dispatch thread; the results
+     * are computed in the background and published by {@link #publishFilter}.
      */
-    private void filterData() {
-        String selectedMetric = (String) metricComboBox.getSelectedItem();
-        List<CountryData> filteredData;
-
-        // Filter by selected metric
+    private void runFilter() {
+        String selectedMetric = selectedMetric();
         assert selectedMetric != null;
-        if (selectedMetric.equals("All Series")) {
-            filteredData = originalData;
+
+        // Intersect the selected countries' rows with the selected metric's rows;
+        // no selected countries yields an empty result
+        List<String> countries = new ArrayList<>(selectedCountries);
+        appliedMetric = selectedMetric;
+        appliedFilter = MetricQuery.filter(selectedMetric, countries);
+        int rowLimit = dataIndex.size();
+        int plotWidth = chartPanel.getPlotWidth();
+        long generation = filterGeneration.incrementAndGet();
+        Stage.Sample sample = Metrics.FILTER_RUN.start();
+        QueryKey key = QueryKey.of(selectedMetric, countries, dataIndex.getVersion());
+        FilterResult cached = resultCache.get(key);
+        statusLabel.setToolTipText("Result cache: " + resultCache);
+        if (cached != null && cached.chart().width() == plotWidth) {
+            publishFilter(cached.rows(), cached.data(), cached.stats(), cached.chart(), rowLimit);
+            sample.stop(cached.rows().length);
+            return;
+        }
+        statusLabel.setText("Filtering...");
+
+        CompletableFuture<int[]> rows;
+        CompletableFuture<List<CountryData>> data;
+        CompletableFuture<StatsPanel.Result> stats;
+        if (cached != null) {
+            // Only the plot width changed since the result was cached: rebuild just the chart
+            rows = CompletableFuture.completedFuture(cached.rows());
+            data = CompletableFuture.completedFuture(cached.data());
+            stats = CompletableFuture.completedFuture(cached.stats());
         } else {
-            filteredData = originalData.stream()
-                    .filter(data -> data.getSeriesName().equals(selectedMetric))
-                    .collect(Collectors.toList());
+            rows = CompletableFuture.supplyAsync(() -> {
+                checkCurrent(generation);
+                return MetricQuery.selectRows(dataIndex, selectedMetric, countries, rowLimit);
+            }, filterExecutor);
+            data = rows.thenApply(selected -> MetricQuery.derive(dataIndex.view(selected), selectedMetric));
+
+            // Statistics and chart series only depend on the rows, so compute them side by side
+            stats = data.thenApplyAsync(filteredData -> {
+                checkCurrent(generation);
+                return StatsPanel.calculateStats(filteredData, selectedMetric);
+            }, filterExecutor);
         }
+        CompletableFuture<ChartData> chart = data.thenApplyAsync(filteredData -> {
+            checkCurrent(generation);
+            return ChartData.prepare(filteredData, selectedMetric, plotWidth);
+        }, filterExecutor);
+
+        CompletableFuture.allOf(stats, chart).whenComplete((ignored, error) -> SwingUtilities.invokeLater(() -> {
+            if (generation != filterGeneration.get()) {
+                Metrics.FILTER_SUPERSEDED.increment();
+                return; // Superseded by a newer filter run
+            }
+            if (error != null) {
+                LOGGER.log(Level.SEVERE, "Filtering failed", error);
+                statusLabel.setText("Filtering failed: " + error.getMessage());
+                return;
+            }
+            resultCache.put(key, new FilterResult(rows.join(), data.join(), stats.join(), chart.join()));
+            publishFilter(rows.join(), data.join(), stats.join(), chart.join(), rowLimit);
+            sample.stop(rows.join().length);
+        }));
+    }
 
-        // Further filter by selected countries
-        List<String> selectedCountries = countryList.getSelectedValuesList();
-        if (!selectedCountries.isEmpty()) {
-            filteredData = filteredData.stream()
-                    .filter(data -> selectedCountries.contains(data.getCountryName()))
-                    .collect(Collectors.toList());
-        } else {
-            // If no countries are selected, set filteredData to an empty list
-            filteredData = Collections.emptyList();
+    // Abandons a background step if a newer filter run has started.
+    private void checkCurrent(long generation) {
+        if (generation != filterGeneration.get()) {
+            throw new CancellationException("Superseded by a newer filter");
         }
+    }
 
+    // Shows the results of one filter run in the table, stats and chart at once.
+    private void publishFilter(int[] filteredRows, List<CountryData> filteredData, StatsPanel.Result stats,
+                               ChartData chart, int rowLimit) {
         // Provide feedback if no data is available
-        if (filteredData.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "No data available for the selected criteria.", "No Data", JOptionPane.INFORMATION_MESSAGE);
+        statusLabel.setText(filteredData.isEmpty() ? "No data available for the selected criteria." : " ");
+        shownData = filteredData;
+
+        // Update TablePanel with only the rows that changed
+        tablePanel.showRows(filteredRows);
+
+        // Rows loaded while the filter was running were not part of it; add those that match
+        int rowCount = dataIndex.size();
+        int[] lateRows = new int[Math.max(0, rowCount - rowLimit)];
+        int count = 0;
+        for (int row = rowLimit; row < rowCount; row++) {
+            if (matchesAppliedFilter(dataIndex.get(row)) && !dataIndex.isRemoved(row)) {
+                lateRows[count++] = row;
+            }
         }
-
-        // Debug: Print number of filtered entries
-        System.out.println("Filtered Data Size: " + filteredData.size());
-
-        // Update TablePanel
-        tablePanel.updateTableData(filteredData);
+        tablePanel.appendRows(lateRows, count);
 
         // Update StatsPanel
-        statsPanel.updateStats(filteredData, selectedMetric);
+        statsPanel.showStats(stats);
 
         // Update ChartPanelCustom
-        chartPanel.updateChart(filteredData, selectedMetric);
+        chartPanel.showChart(chart);
     }
 
-    // Updates when the metric selection changes
+    // Updates when the series or transform selection changes; "All Series" has no transforms
     private void changeMetric(ActionEvent e) {
+        transformComboBox.setEnabled(!"All Series".equals(metricComboBox.getSelectedItem()));
         filterData();
     }
 
-    // Searches and selects a country based on user input.
+    // Selects the best match for the user input, by name, ISO code or close spelling.
     private void searchCountry(String searchText) {
         if (searchText == null || searchText.trim().isEmpty()) {
             JOptionPane.showMessageDialog(this, "Please enter a country name to search.", "Search Error", JOptionPane.ERROR_MESSAGE);
@@ -244,11 +623,10 @@ public class FilterPanel extends JPanel {
         }
 
         String normalizedSearch = searchText.trim();
-        int index = countryListModel.indexOf(normalizedSearch);
+        searchAsYouType(searchText); // The list already shows the matches; this keeps it in sync
 
-        if (index >= 0) {
-            countryList.setSelectedIndex(index);
-            countryList.ensureIndexIsVisible(index);
+        if (countryListModel.getSize() > 0) {
+            selectOnly(countryListModel.getElementAt(0));
             filterData();
         } else {
             JOptionPane.showMessageDialog(this, "Country not found: " + normalizedSearch, "Search Result", JOptionPane.INFORMATION_MESSAGE);
@@ -0,0 +1,165 @@
+package main.java.ui;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * IndexedRowSorter sorts a {@link TablePanel.CountryTableModel} by one column at a
+ * time using the model's precomputed {@link ColumnSortIndex} for that column.
+ * <p>
+ * Unlike {@link javax.swing.table.TableRowSorter}, no cell values are fetched or
+ * compared: a (re)sort is a single pass over the column's permutation that keeps the
+ * visible rows. While unsorted, view and model indexes are the same and inserted or
+ * deleted rows cost nothing.
+ */
+public class IndexedRowSorter extends RowSorter<TablePanel.CountryTableModel> {
+    private final TablePanel.CountryTableModel model;
+    private List<SortKey> sortKeys = Collections.emptyList();
+
+    // Mapping between view and model indexes; null while unsorted
+    private int[] viewToModel;
+    private int[] modelToView;
+    // Model row count as of the last notification; JTable asks for it before notifying
+    private int rowCount;
+
+    // Constructor initializes the sorter for the given model.
+    public IndexedRowSorter(TablePanel.CountryTableModel model) {
+        this.model = model;
+        this.rowCount = model.getRowCount();
+    }
+
+    @Override
+    public TablePanel.CountryTableModel getModel() {
+        return model;
+    }
+
+    // Sorts ascending by the column, or flips the direction if it is already sorted by it.
+    @Override
+    public void toggleSortOrder(int column) {
+        SortOrder order = SortOrder.ASCENDING;
+        if (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() == column
+                && sortKeys.get(0).getSortOrder() == SortOrder.ASCENDING) {
+            order = SortOrder.DESCENDING;
+        }
+        setSortKeys(Collections.singletonList(new SortKey(column, order)));
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        checkIndex(index, rowCount);
+        if (viewToModel == null) {
+            return index;
+        }
+        return viewToModel[index];
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        if (index < 0 || index >= rowCount) {
+            return -1;
+        }
+        return modelToView == null ? index : modelToView[index];
+    }
+
+    // Only the first key is used; ties keep model order.
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        List<SortKey> newKeys = Collections.emptyList();
+        if (keys != null && !keys.isEmpty() && keys.get(0).getSortOrder() != SortOrder.UNSORTED) {
+            newKeys = Collections.singletonList(keys.get(0));
+        }
+        if (newKeys.equals(sortKeys)) {
+            return;
+        }
+        sortKeys = newKeys;
+        fireSortOrderChanged();
+        resort();
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return rowCount;
+    }
+
+    // Columns were replaced, so the sort column may no longer exist.
+    @Override
+    public void modelStructureChanged() {
+        if (!sortKeys.isEmpty()) {
+            sortKeys = Collections.emptyList();
+            fireSortOrderChanged();
+        }
+        resort();
+    }
+
+    @Override
+    public void allRowsChanged() {
+        resort();
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        resort();
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        resort();
+    }
+
+    // Rows replaced by a reload may move; the column's sort index has already been updated.
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        resort();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        resort();
+    }
+
+    // Rebuilds the view order from the sort column's permutation.
+    private void resort() {
+        int[] previous = viewToModel;
+        rowCount = model.getRowCount();
+        if (sortKeys.isEmpty()) {
+            viewToModel = null;
+            modelToView = null;
+            if (previous != null) {
+                fireRowSorterChanged(previous);
+            }
+            return;
+        }
+
+        SortKey key = sortKeys.get(0);
+        int[] order = new int[rowCount];
+        int count = model.sortIndex(key.getColumn())
+                .walk(model.modelIndexByRowNumber(), key.getSortOrder() == SortOrder.ASCENDING, order);
+        assert count == rowCount;
+
+        int[] inverse = new int[rowCount];
+        for (int view = 0; view < rowCount; view++) {
+            inverse[order[view]] = view;
+        }
+        viewToModel = order;
+        modelToView = inverse;
+        fireRowSorterChanged(previous);
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index + ", size: " + size);
+        }
+    }
+}
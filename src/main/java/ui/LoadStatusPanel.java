@@ -0,0 +1,49 @@
+package main.java.ui;
+
+import javax.swing.*;
+import java.awt.*;
+
+// LoadStatusPanel shows the progress and throughput of a background data load.
+public class LoadStatusPanel extends JPanel {
+    private final JProgressBar progressBar;
+    private final JLabel statusLabel;
+    private final JButton cancelButton;
+    private Runnable cancelAction = () -> {
+    };
+
+    // Constructor initializes the progress bar, status text and cancel button.
+    public LoadStatusPanel() {
+        super(new FlowLayout(FlowLayout.LEFT));
+
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        statusLabel = new JLabel("Loading data...");
+        cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> {
+            cancelButton.setEnabled(false);
+            cancelAction.run();
+        });
+
+        add(progressBar);
+        add(statusLabel);
+        add(cancelButton);
+    }
+
+    // Sets the action run when the user cancels the load.
+    public void setCancelAction(Runnable cancelAction) {
+        this.cancelAction = cancelAction;
+    }
+
+    // Updates the progress bar and status text while loading.
+    public void updateProgress(int percent, String status) {
+        progressBar.setValue(percent);
+        statusLabel.setText(status);
+    }
+
+    // Shows the final status and hides the loading controls.
+    public void finish(String status) {
+        progressBar.setVisible(false);
+        cancelButton.setVisible(false);
+        statusLabel.setText(status);
+    }
+}
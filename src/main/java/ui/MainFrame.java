@@ -1,31 +1,53 @@
 package main.java.ui;
 
-import main.java.data.CSVReader;
+import main.java.data.CsvDeltaReader;
+import main.java.data.DataIndex;
+import main.java.data.FileWatcher;
+import main.java.data.MultiSourceLoader;
+import main.java.data.RowDelta;
+import main.java.metrics.Metrics;
+import main.java.metrics.Stage;
 import main.java.model.CountryData;
+import main.java.server.QueryServer;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 // MainFrame serves as the primary window of the application, integrating all UI components.
 public class MainFrame extends JFrame {
+    private static final Logger LOGGER = Logger.getLogger(MainFrame.class.getName());
+
+    // Quiet period after the last write to the data file before it is reloaded
+    private static final long RELOAD_QUIET_MS = 500;
 
     private final TablePanel tablePanel;
     private final DetailsPanel detailsPanel;
+    private final DataIndex dataIndex;
+    private JDialog diagnosticsDialog; // Created when first opened
+    private JDialog rollupDialog;      // Created when first opened
 
     public MainFrame(String csvFilePath) {
         super("Data Visualization Tool");
 
-        // Load data using CSVReader
-        CSVReader csvReader = new CSVReader(csvFilePath);
-        List<CountryData> dataList = csvReader.parse();
+        // Start with an empty dataset; rows stream in from the background loader
+        dataIndex = new DataIndex();
+        List<CountryData> dataList = dataIndex.rowStore();
 
         // Initialize UI components
-        tablePanel = new TablePanel(dataList);
-        StatsPanel statsPanel = new StatsPanel(dataList);
+        tablePanel = new TablePanel(dataList); // Shows rows of the store as they are loaded
+        StatsPanel statsPanel = new StatsPanel(dataIndex.getSummaryCube());
         ChartPanelCustom chartPanel = new ChartPanelCustom(dataList);
         detailsPanel = new DetailsPanel();
-        FilterPanel filterPanel = new FilterPanel(dataList, tablePanel, statsPanel, chartPanel);
+        FilterPanel filterPanel = new FilterPanel(dataIndex, tablePanel, statsPanel, chartPanel);
 
         // Set up layout manager
         setLayout(new BorderLayout());
@@ -36,6 +58,12 @@ public class MainFrame extends JFrame {
         // Add main split pane to the center
         add(createMainSplitPane(statsPanel, chartPanel), BorderLayout.CENTER);
 
+        setJMenuBar(createMenuBar());
+
+        // Add load progress at the bottom
+        LoadStatusPanel loadStatusPanel = new LoadStatusPanel();
+        add(loadStatusPanel, BorderLayout.SOUTH);
+
         // Event Handling: Update DetailsPanel when a table row is selected
         tablePanel.getTable().getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) { // Prevent multiple events
@@ -57,6 +85,121 @@ public class MainFrame extends JFrame {
         setSize(1400, 1000);
         setLocationRelativeTo(null); // Center the window
         setVisible(true);
+
+        // Serve the loaded rows to other tools on localhost if a port is configured
+        Integer serverPort = Integer.getInteger("serverPort");
+        if (serverPort != null) {
+            startServer(dataIndex, serverPort);
+        }
+
+        // Parse the CSV off the EDT, streaming batches into the filter and table; with
+        // -DliveReload=true, changes to the file are then applied as they are written
+        new DataLoader(csvFilePath, loadStatusPanel, filterPanel::appendData, () -> {
+            filterPanel.loadComplete();
+            if (Boolean.getBoolean("liveReload") && !MultiSourceLoader.isMultiSource(csvFilePath)) {
+                startLiveReload(csvFilePath, dataIndex, filterPanel, loadStatusPanel);
+            }
+        }).execute();
+    }
+
+    /**
+     * Watches the data file and applies what changed in it to the loaded rows. The
+     * file is diffed on the watcher thread; only the resulting delta is applied on
+     * the event dispatch thread. A first read right away picks up changes made
+     * while the file was loading.
+     */
+    private void startLiveReload(String csvFilePath, DataIndex dataIndex, FilterPanel filterPanel,
+                                 LoadStatusPanel loadStatusPanel) {
+        CsvDeltaReader deltaReader = new CsvDeltaReader(csvFilePath, dataIndex);
+        Runnable reload = () -> {
+            // The baseline read and the watcher must not diff at the same time
+            synchronized (deltaReader) {
+                Stage.Sample sample = Metrics.DATA_RELOAD.start();
+                RowDelta delta;
+                try {
+                    delta = deltaReader.read();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Could not reload {0}: {1}", new Object[]{csvFilePath, e.getMessage()});
+                    return;
+                }
+                sample.stop(delta.size());
+                if (delta.isEmpty()) {
+                    deltaReader.commit();
+                    return;
+                }
+                // Wait until the delta is applied, so the next read diffs against it; a delta
+                // that was not applied is left uncommitted and found again by the next read
+                try {
+                    SwingUtilities.invokeAndWait(() -> {
+                        filterPanel.applyDelta(delta);
+                        loadStatusPanel.finish("Reloaded " + new File(csvFilePath).getName() + ": " + delta);
+                    });
+                    deltaReader.commit();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (InvocationTargetException e) {
+                    LOGGER.log(Level.SEVERE, "Applying a reload failed", e.getCause());
+                }
+            }
+        };
+        try {
+            FileWatcher watcher = new FileWatcher(Path.of(csvFilePath), RELOAD_QUIET_MS, reload);
+            watcher.start();
+            Thread baseline = new Thread(reload, "reload-baseline");
+            baseline.setDaemon(true);
+            baseline.start();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not watch {0}: {1}", new Object[]{csvFilePath, e.getMessage()});
+        }
+    }
+
+    // Starts the query server on the loopback interface; the window works without it.
+    private static void startServer(DataIndex dataIndex, int port) {
+        try {
+            QueryServer server = new QueryServer(dataIndex, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            server.start();
+            LOGGER.log(Level.INFO, "Query server listening on port {0}", String.valueOf(server.getPort()));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not start the query server: {0}", e.getMessage());
+        }
+    }
+
+    // Creates the menu bar; View > Rollups aggregates groups of countries, View > Diagnostics shows the pipeline timings.
+    private JMenuBar createMenuBar() {
+        JMenuItem rollupItem = new JMenuItem("Rollups...");
+        rollupItem.addActionListener(e -> showRollups());
+        JMenuItem diagnosticsItem = new JMenuItem("Diagnostics...");
+        diagnosticsItem.addActionListener(e -> showDiagnostics());
+        JMenu viewMenu = new JMenu("View");
+        viewMenu.add(rollupItem);
+        viewMenu.add(diagnosticsItem);
+        JMenuBar menuBar = new JMenuBar();
+        menuBar.add(viewMenu);
+        return menuBar;
+    }
+
+    // Opens the rollup window, or brings it to the front if it is open.
+    private void showRollups() {
+        if (rollupDialog == null) {
+            rollupDialog = new JDialog(this, "Rollups", false);
+            rollupDialog.add(new RollupPanel(dataIndex));
+            rollupDialog.setSize(1100, 700);
+            rollupDialog.setLocationRelativeTo(this);
+        }
+        rollupDialog.setVisible(true);
+        rollupDialog.toFront();
+    }
+
+    // Opens the diagnostics window, or brings it to the front if it is open.
+    private void showDiagnostics() {
+        if (diagnosticsDialog == null) {
+            diagnosticsDialog = new JDialog(this, "Diagnostics", false);
+            diagnosticsDialog.add(new DiagnosticsPanel());
+            diagnosticsDialog.setSize(800, 450);
+            diagnosticsDialog.setLocationRelativeTo(this);
+        }
+        diagnosticsDialog.setVisible(true);
+        diagnosticsDialog.toFront();
     }
 
     // Method to create the main split pane
@@ -0,0 +1,175 @@
+package main.java.ui;
+
+import main.java.data.Aggregate;
+import main.java.data.DataIndex;
+import main.java.data.GroupAggregator;
+import main.java.data.GroupMapping;
+import main.java.model.CountryData;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * RollupPanel rolls a metric up into groups of countries, such as regions or income
+ * groups, read from a grouping file (see {@link GroupMapping}). The group rows are
+ * shown in a table and chart of their own. The rollup runs in the background; the
+ * grouping file is read again only when another one is chosen.
+ * <p>
+ * The file initially offered is the one named by -DgroupsFile, if any.
+ */
+public class RollupPanel extends JPanel {
+    private static final Logger LOGGER = Logger.getLogger(RollupPanel.class.getName());
+
+    private final DataIndex dataIndex;
+    private final GroupAggregator aggregator = new GroupAggregator();
+    private final JTextField groupsField = new JTextField(System.getProperty("groupsFile", ""), 30);
+    private final JComboBox<String> metricComboBox = new JComboBox<>();
+    private final JComboBox<Aggregate> aggregateComboBox = new JComboBox<>(Aggregate.values());
+    private final JButton rollupButton = new JButton("Roll Up");
+    private final JLabel statusLabel = new JLabel(" ");
+    private final JSplitPane resultPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
+
+    // Grouping last read, and the file it was read from
+    private GroupMapping groups;
+    private Path groupsPath;
+
+    public RollupPanel(DataIndex dataIndex) {
+        this.dataIndex = dataIndex;
+        setLayout(new BorderLayout(5, 5));
+        setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
+        JButton browseButton = new JButton("Browse...");
+        browseButton.addActionListener(e -> chooseGroupsFile());
+        rollupButton.addActionListener(e -> runRollup());
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(new JLabel("Groups: "));
+        controls.add(groupsField);
+        controls.add(browseButton);
+        controls.add(new JLabel("Metric: "));
+        controls.add(metricComboBox);
+        controls.add(new JLabel("Aggregate: "));
+        controls.add(aggregateComboBox);
+        controls.add(rollupButton);
+        add(controls, BorderLayout.NORTH);
+
+        showResult(List.of(), null);
+        resultPane.setResizeWeight(0.4);
+        add(resultPane, BorderLayout.CENTER);
+        add(statusLabel, BorderLayout.SOUTH);
+
+        // Offer the series loaded so far whenever the panel is shown
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && isShowing()) {
+                refreshMetrics();
+            }
+        });
+    }
+
+    // Fills the metric combo box with the loaded series, keeping the selection.
+    private void refreshMetrics() {
+        Object selected = metricComboBox.getSelectedItem();
+        List<String> seriesNames = dataIndex.getSeriesNames();
+        if (metricComboBox.getItemCount() == seriesNames.size()) {
+            return;
+        }
+        metricComboBox.removeAllItems();
+        for (String series : seriesNames) {
+            metricComboBox.addItem(series);
+        }
+        if (selected != null) {
+            metricComboBox.setSelectedItem(selected);
+        }
+    }
+
+    private void chooseGroupsFile() {
+        JFileChooser chooser = new JFileChooser();
+        if (!groupsField.getText().isBlank()) {
+            chooser.setSelectedFile(new File(groupsField.getText().trim()));
+        }
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            groupsField.setText(chooser.getSelectedFile().getPath());
+        }
+    }
+
+    // Reads the grouping if needed and rolls the metric up in the background.
+    private void runRollup() {
+        String groupsText = groupsField.getText().trim();
+        String metric = (String) metricComboBox.getSelectedItem();
+        Aggregate aggregate = (Aggregate) aggregateComboBox.getSelectedItem();
+        if (groupsText.isEmpty() || metric == null || aggregate == null) {
+            statusLabel.setText("Choose a grouping file and a metric first.");
+            return;
+        }
+        Path path = Path.of(groupsText);
+        // The country list grows on this thread while loading; hand the worker a copy
+        List<String> countries = new ArrayList<>(dataIndex.getCountryNames());
+        GroupMapping knownGroups = path.equals(groupsPath) ? groups : null;
+
+        rollupButton.setEnabled(false);
+        statusLabel.setText("Rolling up...");
+        long startNanos = System.nanoTime();
+        new SwingWorker<List<CountryData>, Void>() {
+            private GroupMapping usedGroups;
+
+            @Override
+            protected List<CountryData> doInBackground() throws Exception {
+                usedGroups = knownGroups != null ? knownGroups : GroupMapping.load(path);
+                return aggregator.rollup(dataIndex, metric, countries, usedGroups, aggregate);
+            }
+
+            @Override
+            protected void done() {
+                rollupButton.setEnabled(true);
+                try {
+                    List<CountryData> result = get();
+                    groups = usedGroups;
+                    groupsPath = path;
+                    showResult(result, GroupAggregator.rollupName(metric, aggregate));
+                    String note = result.isEmpty() && aggregate == Aggregate.WEIGHTED_MEAN
+                            ? " (needs the weight series \"" + System.getProperty("weightSeries",
+                            GroupAggregator.DEFAULT_WEIGHT_SERIES) + "\")" : "";
+                    statusLabel.setText(String.format("%d of %d groups in %.1f ms%s", result.size(), groups.size(),
+                            (System.nanoTime() - startNanos) / 1e6, note));
+                } catch (CancellationException e) {
+                    statusLabel.setText(" ");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    LOGGER.log(Level.WARNING, "Rollup failed", e.getCause());
+                    statusLabel.setText("Rollup failed: " + e.getCause().getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    // Replaces the table and chart with ones over the group rows.
+    private void showResult(List<CountryData> rows, String seriesName) {
+        TablePanel table = new TablePanel(rows);
+        table.setYearRange(dataIndex.getFirstYear(), dataIndex.getLastYear());
+        int[] all = new int[rows.size()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        table.showRows(all);
+        ChartPanelCustom chart = new ChartPanelCustom(rows);
+        if (seriesName != null) {
+            chart.updateChart(rows, seriesName);
+        }
+        int divider = resultPane.getDividerLocation();
+        resultPane.setTopComponent(table);
+        resultPane.setBottomComponent(chart);
+        if (divider > 0) {
+            resultPane.setDividerLocation(divider);
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package main.java.ui;
 
+import main.java.data.MetricQuery;
+import main.java.data.SummaryCube;
+import main.java.metrics.Metrics;
+import main.java.metrics.Stage;
 import main.java.model.CountryData;
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import main.java.model.Percentiles;
+import main.java.model.ValueSummary;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -14,74 +17,104 @@ public class StatsPanel extends JPanel {
     private final JLabel averageLabel;
     private final JLabel minLabel;
     private final JLabel maxLabel;
+    private final JLabel stdDevLabel;
+    private final JLabel medianLabel;
+    private final JLabel percentileLabel;
+    private final SummaryCube summaryCube;
 
-    public StatsPanel(List<CountryData> dataList) {
-        super(new GridLayout(3, 1)); // Using GridLayout for simplicity
+    public StatsPanel(SummaryCube summaryCube) {
+        super(new GridLayout(6, 1)); // Using GridLayout for simplicity
+        this.summaryCube = summaryCube;
 
         averageLabel = new JLabel("Average: ");
         minLabel = new JLabel("Minimum: ");
         maxLabel = new JLabel("Maximum: ");
+        stdDevLabel = new JLabel("Std. Deviation: ");
+        medianLabel = new JLabel("Median: ");
+        percentileLabel = new JLabel("P10 / P90: ");
 
         add(averageLabel);
         add(minLabel);
         add(maxLabel);
+        add(stdDevLabel);
+        add(medianLabel);
+        add(percentileLabel);
     }
 
-    private void calculateStats(List<CountryData> dataList, String selectedMetric) {
-        DescriptiveStatistics stats = new DescriptiveStatistics();
-        List<Integer> years = new ArrayList<>();
+    /**
+     * Statistics of one filter result, computed off the event dispatch thread.
+     *
+     * @param metric      metric the statistics are labelled with
+     * @param seriesName  series to break down per year in the tooltip
+     * @param summary     combined summary of the matching rows
+     * @param percentiles percentiles of the matching rows' values
+     */
+    public record Result(String metric, String seriesName, ValueSummary summary, Percentiles percentiles) {
+    }
 
+    /**
+     * Computes the statistics for the given rows; safe to call from any thread.
+     */
+    public static Result calculateStats(List<CountryData> dataList, String selectedMetric) {
+        Stage.Sample sample = Metrics.FILTER_STATS.start();
         // If "All Series" is selected, default to "GDP per capita (constant 2005 US$)"
-        String metricForStats = selectedMetric.equals("All Series") ? "GDP per capita (constant 2005 US$)" : selectedMetric;
+        String metricForStats = MetricQuery.statsMetric(selectedMetric);
 
-        for (CountryData data : dataList) {
-            String seriesName = data.getSeriesName();
-            if (seriesName == null) {
-                System.out.println("Series name is null for country: " + data.getCountryName());
-                continue;
-            }
-            if (seriesName.trim().equalsIgnoreCase(metricForStats)) {
-                Map<Integer, Double> yearlyData = data.getYearlyData();
-                if (yearlyData != null) {
-                    for (Map.Entry<Integer, Double> entry : yearlyData.entrySet()) {
-                        int year = entry.getKey();
-                        Double value = entry.getValue();
-                        if (value != null) {
-                            stats.addValue(value);
-                            years.add(year);
-                        }
-                    }
-                }
-            }
-        }
+        // Each row is one (country, series) cell of the summary cube; combine the matching cells
+        List<CountryData> matching = MetricQuery.statsRows(dataList, selectedMetric);
+        Result result = new Result(metricForStats, matching.isEmpty() ? metricForStats : matching.get(0).getSeriesName(),
+                SummaryCube.combine(matching), SummaryCube.percentiles(matching));
+        sample.stop(dataList.size());
+        return result;
+    }
 
-        if (stats.getN() > 0) {
-            double average = stats.getMean();
-            double min = stats.getMin();
-            double max = stats.getMax();
+    // Shows statistics computed by calculateStats; must be called on the event dispatch thread.
+    public void showStats(Result result) {
+        String metricForStats = result.metric();
+        ValueSummary stats = result.summary();
 
-            String yearRange = "";
-            if (!years.isEmpty()) {
-                int minYear = Collections.min(years);
-                int maxYear = Collections.max(years);
-                yearRange = String.format("(%d - %d)", minYear, maxYear);
-            }
+        if (stats.getCount() > 0) {
+            String yearRange = String.format("(%d - %d)", stats.getFirstYear(), stats.getLastYear());
 
-            averageLabel.setText(String.format("Average %s %s: %.2f", metricForStats, yearRange, average));
-            minLabel.setText(String.format("Minimum %s %s: %.2f", metricForStats, yearRange, min));
-            maxLabel.setText(String.format("Maximum %s %s: %.2f", metricForStats, yearRange, max));
+            averageLabel.setText(String.format("Average %s %s: %.2f", metricForStats, yearRange, stats.getMean()));
+            minLabel.setText(String.format("Minimum %s %s: %.2f", metricForStats, yearRange, stats.getMin()));
+            maxLabel.setText(String.format("Maximum %s %s: %.2f", metricForStats, yearRange, stats.getMax()));
+            stdDevLabel.setText(String.format("Std. Deviation %s %s: %.2f", metricForStats, yearRange, stats.getStandardDeviation()));
+            // Large selections are estimated from the rows' quantile sketches
+            Percentiles percentiles = result.percentiles();
+            String estimated = percentiles.exact() ? "" : " (estimated)";
+            medianLabel.setText(String.format("Median %s %s: %.2f%s", metricForStats, yearRange,
+                    percentiles.median(), estimated));
+            percentileLabel.setText(String.format("P10 / P90 %s %s: %.2f / %.2f, IQR %.2f%s", metricForStats, yearRange,
+                    percentiles.p10(), percentiles.p90(), percentiles.iqr(), estimated));
         } else {
             averageLabel.setText(String.format("Average %s: No data available", metricForStats));
             minLabel.setText(String.format("Minimum %s: No data available", metricForStats));
             maxLabel.setText(String.format("Maximum %s: No data available", metricForStats));
+            stdDevLabel.setText(String.format("Std. Deviation %s: No data available", metricForStats));
+            medianLabel.setText(String.format("Median %s: No data available", metricForStats));
+            percentileLabel.setText(String.format("P10 / P90 %s: No data available", metricForStats));
         }
+        averageLabel.setToolTipText(describeYears(result.seriesName()));
 
         revalidate();
         repaint();
     }
 
+    // Builds a per-year breakdown of the series across all countries from the summary cube.
+    private String describeYears(String seriesName) {
+        Map<Integer, ValueSummary> years = summaryCube.getSeriesByYear(seriesName);
+        if (years.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder("<html><b>All countries, per year</b>");
+        years.forEach((year, summary) -> sb.append(String.format("<br>%d: avg %.2f, min %.2f, max %.2f (n=%d)",
+                year, summary.getMean(), summary.getMin(), summary.getMax(), summary.getCount())));
+        return sb.append("</html>").toString();
+    }
+
     // Method to update stats when data changes (e.g., after filtering)
     public void updateStats(List<CountryData> filteredData, String selectedMetric) {
-        calculateStats(filteredData, selectedMetric);
+        showStats(calculateStats(filteredData, selectedMetric));
     }
 }
@@ -1,33 +1,35 @@
 package main.java.ui;
 
+import main.java.metrics.Metrics;
+import main.java.metrics.Stage;
 import main.java.model.CountryData;
 
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.*;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 // TablePanel displays CountryData in a JTable.
 public class TablePanel extends JPanel {
     private final JTable table;
     private final CountryTableModel tableModel;
 
-    // Constructor initializes the table with the provided data.
-    public TablePanel(List<CountryData> dataList) {
+    // Constructor initializes an empty table over the row store.
+    public TablePanel(List<CountryData> rowStore) {
         super(new BorderLayout());
 
         // Initialize table model
-        tableModel = new CountryTableModel(dataList);
+        tableModel = new CountryTableModel(rowStore);
 
         // Initialize JTable with the table model
         table = new JTable(tableModel);
         table.setFillsViewportHeight(true);
-        table.setAutoCreateRowSorter(true); // Enable sorting
 
-        // Initialize row sorter for filtering
-        TableRowSorter<CountryTableModel> sorter = new TableRowSorter<>(tableModel);
-        table.setRowSorter(sorter);
+        // Sort through per-column permutations instead of comparing cell values
+        table.setRowSorter(new IndexedRowSorter(tableModel));
 
         // Customize table appearance (optional)
         table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -39,10 +41,39 @@ public class TablePanel extends JPanel {
         add(scrollPane, BorderLayout.CENTER);
     }
 
-    // Updates the table data and refreshes the view.
-    public void updateTableData(List<CountryData> newDataList) {
-        tableModel.setDataList(newDataList);
-        tableModel.fireTableDataChanged();
+    // Shows the given store rows (ascending row numbers), keeping sort order and selection.
+    public void showRows(int[] rowNumbers) {
+        Stage.Sample sample = Metrics.TABLE_REFRESH.start();
+        tableModel.setRows(rowNumbers, rowNumbers.length);
+        sample.stop(rowNumbers.length);
+    }
+
+    // Sets the year columns shown by the table; does nothing if the range is unchanged.
+    public void setYearRange(int firstYear, int lastYear) {
+        tableModel.setYearRange(firstYear, lastYear);
+    }
+
+    // Appends store rows to the end of the table without resetting the view.
+    public void appendRows(int[] rowNumbers, int count) {
+        if (count == 0) {
+            return;
+        }
+        Stage.Sample sample = Metrics.TABLE_REFRESH.start();
+        tableModel.appendRows(rowNumbers, count);
+        sample.stop(count);
+    }
+
+    /**
+     * Shows rows whose contents were replaced in the store, and drops rows removed
+     * from it, keeping sort order and selection.
+     */
+    public void updateRows(int[] updatedRows, int[] removedRows) {
+        if (updatedRows.length == 0 && removedRows.length == 0) {
+            return;
+        }
+        Stage.Sample sample = Metrics.TABLE_REFRESH.start();
+        tableModel.rowsChanged(updatedRows, removedRows);
+        sample.stop(updatedRows.length + removedRows.length);
     }
 
     // Returns the JTable instance.
@@ -57,26 +88,231 @@ public class TablePanel extends JPanel {
 
     // Custom table model for CountryData.
     public static class CountryTableModel extends AbstractTableModel {
-        private final String[] columnNames = {
-                "Country Name", "Series Name",
-                "2006", "2007", "2008", "2009", "2010",
-                "2011", "2012", "2013", "2014", "2015", "2016"
-        };
-        private List<CountryData> dataList;
+        private static final int YEAR_COLUMN_OFFSET = 2; // Columns before the first year
+        // Above this many changed runs a filter change is published as one data change
+        private static final int MAX_INCREMENTAL_RUNS = 64;
+
+        private String[] columnNames = {"Country Name", "Series Name"};
+        private int firstYear; // Year shown in the first year column
+
+        private final List<CountryData> store; // All loaded rows, addressed by row number
+        private int[] rowNumbers = new int[0]; // Store rows shown, in ascending order
+        private int rowCount;
+        private int[] modelIndexByRowNumber; // Lazily built inverse of rowNumbers
+
+        // Sort orders over the whole store, built on first use and kept across filters
+        private final Map<Object, ColumnSortIndex> sortIndexes = new HashMap<>();
+
+        // Constructor initializes the model over the row store; no rows are shown initially.
+        public CountryTableModel(List<CountryData> store) {
+            this.store = store;
+        }
+
+        /**
+         * Shows the given store rows. Only the difference to the rows currently shown
+         * is published, as row deletions followed by row insertions, so the sort order
+         * and the selection of rows that stay visible are kept.
+         *
+         * @param newRowNumbers store row numbers in ascending order
+         */
+        public void setRows(int[] newRowNumbers, int newRowCount) {
+            int[] oldRows = rowNumbers;
+            int oldCount = rowCount;
+            if (countChangedRuns(oldRows, oldCount, newRowNumbers, newRowCount) > MAX_INCREMENTAL_RUNS) {
+                replaceRows(Arrays.copyOf(newRowNumbers, newRowCount), newRowCount);
+                fireTableDataChanged();
+                return;
+            }
+
+            // Delete runs of rows that are no longer shown, last run first
+            int[] kept = new int[oldCount];
+            int keptCount = 0;
+            for (int i = 0, j = 0; i < oldCount; i++) {
+                while (j < newRowCount && newRowNumbers[j] < oldRows[i]) {
+                    j++;
+                }
+                if (j < newRowCount && newRowNumbers[j] == oldRows[i]) {
+                    kept[keptCount++] = oldRows[i];
+                }
+            }
+            int[] working = Arrays.copyOf(oldRows, Math.max(oldCount, newRowCount));
+            int count = oldCount;
+            int k = keptCount - 1;
+            for (int end = oldCount - 1; end >= 0; ) {
+                if (k >= 0 && working[end] == kept[k]) {
+                    end--;
+                    k--;
+                    continue;
+                }
+                int start = end;
+                while (start > 0 && (k < 0 || working[start - 1] != kept[k])) {
+                    start--;
+                }
+                System.arraycopy(working, end + 1, working, start, count - end - 1);
+                count -= end - start + 1;
+                replaceRows(working, count);
+                fireTableRowsDeleted(start, end);
+                end = start - 1;
+            }
+
+            // Insert runs of newly shown rows, first run first
+            int i = 0;
+            for (int j = 0; j < newRowCount; ) {
+                if (i < count && working[i] == newRowNumbers[j]) {
+                    i++;
+                    j++;
+                    continue;
+                }
+                int runStart = j;
+                while (j < newRowCount && (i >= count || newRowNumbers[j] != working[i])) {
+                    j++;
+                }
+                int runLength = j - runStart;
+                System.arraycopy(working, i, working, i + runLength, count - i);
+                System.arraycopy(newRowNumbers, runStart, working, i, runLength);
+                count += runLength;
+                replaceRows(working, count);
+                fireTableRowsInserted(i, i + runLength - 1);
+                i += runLength;
+            }
+        }
 
-        // Constructor initializes the data list.
-        public CountryTableModel(List<CountryData> dataList) {
-            this.dataList = dataList;
+        // Counts the runs of rows that would be deleted or inserted by setRows.
+        private static int countChangedRuns(int[] oldRows, int oldCount, int[] newRows, int newCount) {
+            int runs = 0;
+            int lastChange = 0; // -1 deleted, 1 inserted, 0 kept
+            int i = 0;
+            int j = 0;
+            while (i < oldCount || j < newCount) {
+                int change;
+                if (j >= newCount || (i < oldCount && oldRows[i] < newRows[j])) {
+                    change = -1;
+                    i++;
+                } else if (i >= oldCount || newRows[j] < oldRows[i]) {
+                    change = 1;
+                    j++;
+                } else {
+                    change = 0;
+                    i++;
+                    j++;
+                }
+                if (change != 0 && change != lastChange) {
+                    runs++;
+                }
+                lastChange = change;
+            }
+            return runs;
+        }
+
+        private void replaceRows(int[] rows, int count) {
+            this.rowNumbers = rows;
+            this.rowCount = count;
+            this.modelIndexByRowNumber = null;
         }
 
-        // Sets a new data list.
-        public void setDataList(List<CountryData> dataList) {
-            this.dataList = dataList;
+        /**
+         * Generates one column per year of the inclusive range, as discovered from the
+         * loaded schema. An empty range (lastYear < firstYear) shows no year columns.
+         */
+        public void setYearRange(int firstYear, int lastYear) {
+            int years = lastYear >= firstYear ? lastYear - firstYear + 1 : 0;
+            if (years == columnNames.length - YEAR_COLUMN_OFFSET && (years == 0 || firstYear == this.firstYear)) {
+                return;
+            }
+            String[] names = new String[YEAR_COLUMN_OFFSET + years];
+            names[0] = "Country Name";
+            names[1] = "Series Name";
+            for (int i = 0; i < years; i++) {
+                names[YEAR_COLUMN_OFFSET + i] = Integer.toString(firstYear + i);
+            }
+            this.columnNames = names;
+            this.firstYear = firstYear;
+            fireTableStructureChanged();
+        }
+
+        /**
+         * Appends store rows to the rows shown and notifies listeners of the inserted range.
+         *
+         * @param newRowNumbers store row numbers in ascending order, all above those shown
+         */
+        public void appendRows(int[] newRowNumbers, int count) {
+            if (count == 0) {
+                return;
+            }
+            int firstRow = rowCount;
+            int[] rows = rowNumbers.length >= rowCount + count ? rowNumbers
+                    : Arrays.copyOf(rowNumbers, Math.max(rowCount + count, rowCount * 2));
+            System.arraycopy(newRowNumbers, 0, rows, rowCount, count);
+            replaceRows(rows, rowCount + count);
+            fireTableRowsInserted(firstRow, rowCount - 1);
+        }
+
+        /**
+         * Takes in store rows whose contents were replaced and drops removed rows from
+         * those shown. Sort orders built so far are updated for the replaced rows only.
+         *
+         * @param updatedRows store row numbers replaced in place, ascending
+         * @param removedRows store row numbers removed from the store, ascending
+         */
+        public void rowsChanged(int[] updatedRows, int[] removedRows) {
+            for (ColumnSortIndex index : sortIndexes.values()) {
+                index.refresh(store, updatedRows);
+            }
+            if (removedRows.length > 0) {
+                int[] remaining = new int[rowCount];
+                int count = 0;
+                for (int i = 0; i < rowCount; i++) {
+                    if (Arrays.binarySearch(removedRows, rowNumbers[i]) < 0) {
+                        remaining[count++] = rowNumbers[i];
+                    }
+                }
+                setRows(remaining, count);
+            }
+
+            // One update event over the span of shown rows that changed
+            int[] modelIndexes = modelIndexByRowNumber();
+            int first = Integer.MAX_VALUE;
+            int last = -1;
+            for (int row : updatedRows) {
+                int modelIndex = row < modelIndexes.length ? modelIndexes[row] : -1;
+                if (modelIndex >= 0) {
+                    first = Math.min(first, modelIndex);
+                    last = Math.max(last, modelIndex);
+                }
+            }
+            if (last >= 0) {
+                fireTableRowsUpdated(first, last);
+            }
+        }
+
+        // Returns the sort order of a column over the whole store, bringing it up to date first.
+        ColumnSortIndex sortIndex(int column) {
+            Object key = column < YEAR_COLUMN_OFFSET ? (Object) columnNames[column] : firstYear + column - YEAR_COLUMN_OFFSET;
+            ColumnSortIndex index = sortIndexes.computeIfAbsent(key, k -> switch (column) {
+                case 0 -> ColumnSortIndex.forText(CountryData::getCountryName);
+                case 1 -> ColumnSortIndex.forText(CountryData::getSeriesName);
+                default -> ColumnSortIndex.forYear((Integer) k);
+            });
+            index.update(store);
+            return index;
+        }
+
+        // Returns the model index of every store row, or -1 for rows not shown.
+        int[] modelIndexByRowNumber() {
+            if (modelIndexByRowNumber == null || modelIndexByRowNumber.length != store.size()) {
+                int[] index = new int[store.size()];
+                Arrays.fill(index, -1);
+                for (int i = 0; i < rowCount; i++) {
+                    index[rowNumbers[i]] = i;
+                }
+                modelIndexByRowNumber = index;
+            }
+            return modelIndexByRowNumber;
         }
 
         @Override
         public int getRowCount() {
-            return dataList.size();
+            return rowCount;
         }
 
         @Override
@@ -91,7 +327,7 @@ public class TablePanel extends JPanel {
 
         @Override
         public Class<?> getColumnClass(int columnIndex) {
-            if (columnIndex >= 2 && columnIndex <= 8) {
+            if (columnIndex >= YEAR_COLUMN_OFFSET) {
                 return Double.class;
             }
             return String.class;
@@ -99,28 +335,26 @@ public class TablePanel extends JPanel {
 
         @Override
         public Object getValueAt(int rowIndex, int columnIndex) {
-            CountryData data = dataList.get(rowIndex);
+            CountryData data = getCountryDataAt(rowIndex);
             return switch (columnIndex) {
                 case 0 -> data.getCountryName();
                 case 1 -> data.getSeriesName();
-                case 2 -> data.getYearlyData().get(2006);
-                case 3 -> data.getYearlyData().get(2007);
-                case 4 -> data.getYearlyData().get(2008);
-                case 5 -> data.getYearlyData().get(2009);
-                case 6 -> data.getYearlyData().get(2010);
-                case 7 -> data.getYearlyData().get(2011);
-                case 8 -> data.getYearlyData().get(2012);
-                case 9 -> data.getYearlyData().get(2013);
-                case 10 -> data.getYearlyData().get(2014);
-                case 11 -> data.getYearlyData().get(2015);
-                case 12 -> data.getYearlyData().get(2016);
-                default -> null;
+                default -> {
+                    if (columnIndex >= columnNames.length) {
+                        yield null;
+                    }
+                    int year = firstYear + columnIndex - YEAR_COLUMN_OFFSET;
+                    yield data.hasValue(year) ? data.valueAt(year) : null;
+                }
             };
         }
 
         // Retrieves the CountryData object at the specified row.
         public CountryData getCountryDataAt(int row) {
-            return dataList.get(row);
+            if (row < 0 || row >= rowCount) {
+                throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + rowCount);
+            }
+            return store.get(rowNumbers[row]);
         }
 
         @Override
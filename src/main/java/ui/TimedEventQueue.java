@@ -0,0 +1,39 @@
+package main.java.ui;
+
+import main.java.metrics.Metrics;
+import main.java.metrics.Stage;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+
+/**
+ * TimedEventQueue times every event dispatched on the event dispatch thread, so
+ * work that makes the window stutter shows up in the metrics. Events slower than
+ * {@link #SLOW_EVENT_MS} are counted separately.
+ * <p>
+ * Installed once at startup with {@link #install()}.
+ */
+public class TimedEventQueue extends EventQueue {
+    // Dispatch time above which an event is noticeable as a stall
+    public static final long SLOW_EVENT_MS = 100;
+    private static final long SLOW_EVENT_NANOS = SLOW_EVENT_MS * 1_000_000;
+
+    // Replaces the system event queue with a timed one.
+    public static void install() {
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new TimedEventQueue());
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        // Timed as a stage sample, so events slower than the StageEvent threshold reach Flight Recorder
+        Stage.Sample sample = Metrics.EDT_DISPATCH.start();
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            if (sample.stop(1) > SLOW_EVENT_NANOS) {
+                Metrics.EDT_SLOW_EVENTS.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package main.java.data;
+
+import main.java.model.CountryData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A key repeated within one file keeps its first record, as in a single-file load;
+ * only cells held by different files are conflicts.
+ */
+class MultiSourceLoaderTest {
+    private static final String HEADER = "Country Name,Country Code,Series Name,Series Code,2000 [YR2000],2001 [YR2001]\n";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void repeatWithinAFileIsNotAConflict() throws IOException {
+        Path file = write("a.csv", "Aland,ALA,Growth,GRW,1,2\nAland,ALA,Growth,GRW,3,4\n");
+        for (ConflictPolicy policy : ConflictPolicy.values()) {
+            MultiSourceLoader.Result result = load(policy, file);
+            assertEquals(0, result.conflicts(), policy.name());
+            assertEquals(1, result.rows().size(), policy.name());
+            CountryData row = result.rows().get(0);
+            assertEquals(1, row.valueAt(2000), 0, policy.name());
+            assertEquals(2, row.valueAt(2001), 0, policy.name());
+        }
+    }
+
+    @Test
+    void cellsOfDifferentFilesAreSettledByThePolicy() throws IOException {
+        Path first = write("a.csv", "Aland,ALA,Growth,GRW,1,\nAland,ALA,Growth,GRW,7,7\n");
+        Path second = write("b.csv", "Aland,ALA,Growth,GRW,3,4\n");
+
+        MultiSourceLoader.Result result = load(ConflictPolicy.MEAN, first, second);
+        assertEquals(1, result.conflicts());
+        assertEquals(2, result.rows().get(0).valueAt(2000), 0);
+        assertEquals(4, result.rows().get(0).valueAt(2001), 0);
+
+        IOException error = assertThrows(IOException.class, () -> load(ConflictPolicy.FAIL, first, second));
+        assertTrue(error.getMessage().startsWith(second.toString()), error.getMessage());
+    }
+
+    private Path write(String name, String records) throws IOException {
+        return Files.writeString(directory.resolve(name), HEADER + records);
+    }
+
+    private static MultiSourceLoader.Result load(ConflictPolicy policy, Path... files) throws IOException {
+        return new MultiSourceLoader(List.of(files), policy, 2).load(timing -> {
+        });
+    }
+}
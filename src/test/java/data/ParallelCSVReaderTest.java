@@ -0,0 +1,105 @@
+package main.java.data;
+
+import main.java.model.CountryData;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The parallel reader must give exactly the rows of the sequential one, in the same
+ * order, however the file is cut into ranges. The file is several megabytes so it is
+ * cut at all, and most of its bytes are inside quoted fields holding commas, quotes
+ * and line breaks, so many cuts fall inside one.
+ */
+class ParallelCSVReaderTest {
+    private static final int FIRST_YEAR = 2000;
+    private static final int YEARS = 6;
+    private static final int ROWS = 40_000;
+
+    @TempDir
+    static Path directory;
+    private static Path file;
+
+    @BeforeAll
+    static void writeFile() throws IOException {
+        file = directory.resolve("quoted.csv");
+        Random random = new Random(42);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("Country Name,Country Code,Series Name,Series Code");
+            for (int year = FIRST_YEAR; year < FIRST_YEAR + YEARS; year++) {
+                out.write("," + year + " [YR" + year + "]");
+            }
+            out.write("\n");
+            for (int row = 0; row < ROWS; row++) {
+                int country = row % 97;
+                // A long quoted name with separators, escaped quotes and line breaks
+                out.write("\"Country " + country + ", \"\"the\"\" long name,\nwith a second line, a third\n"
+                        + "and padding " + "x,".repeat(40 + country % 17) + "\"");
+                out.write(",C" + country + ",");
+                out.write(row % 3 == 0 ? "\"Series, " + row % 5 + "\nsecond line\"" : "Series " + row % 5);
+                out.write(",S" + row % 5);
+                for (int year = 0; year < YEARS; year++) {
+                    int kind = random.nextInt(10);
+                    out.write(',');
+                    if (kind == 0) {
+                        out.write("..");
+                    } else if (kind > 1) {
+                        out.write(Double.toString(random.nextGaussian() * 1000));
+                    } // kind 1: empty cell
+                }
+                out.write("\n");
+            }
+        }
+    }
+
+    @Test
+    void parallelParseMatchesSequentialParse() {
+        CSVReader reader = new CSVReader(file.toString());
+        List<CountryData> expected = reader.parse();
+        assertEquals(ROWS, expected.size());
+        assertSameRows(expected, reader.parseParallel());
+    }
+
+    @Test
+    void parallelParseMatchesAtEveryThreadCount() throws IOException {
+        List<CountryData> expected = new MappedCSVReader(file.toString()).parse();
+        for (int threads : new int[]{1, 2, 3, 4, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                assertSameRows(expected, new ParallelCSVReader(file.toString(), pool).parse());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void quotedFieldsAreDecoded() throws IOException {
+        CountryData first = new ParallelCSVReader(file.toString()).parse().get(0);
+        assertTrue(first.getCountryName().startsWith("Country 0, \"the\" long name,\nwith a second line"));
+        assertEquals("Series, 0\nsecond line", first.getSeriesName());
+    }
+
+    private static void assertSameRows(List<CountryData> expected, List<CountryData> actual) {
+        assertEquals(expected.size(), actual.size(), "row count");
+        for (int i = 0; i < expected.size(); i++) {
+            CountryData want = expected.get(i);
+            CountryData got = actual.get(i);
+            assertEquals(want.getCountryName(), got.getCountryName(), "country of row " + i);
+            assertEquals(want.getSeriesName(), got.getSeriesName(), "series of row " + i);
+            assertTrue(want.sameContent(got), "values of row " + i);
+        }
+    }
+}
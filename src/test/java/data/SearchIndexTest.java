@@ -0,0 +1,37 @@
+package main.java.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Queries are folded like the indexed names, so accented and unaccented spellings
+ * find the same entries.
+ */
+class SearchIndexTest {
+    private final SearchIndex index = new SearchIndex(
+            List.of("Côte d'Ivoire", "São Tomé and Principe", "Germany"),
+            List.of("CIV", "STP", "DEU"));
+
+    @Test
+    void accentedQueryFindsItsEntry() {
+        assertEquals("Côte d'Ivoire", first("Côte"));
+        assertEquals("Côte d'Ivoire", first("CÔTE D'"));
+        assertEquals("São Tomé and Principe", first("São"));
+        assertEquals("São Tomé and Principe", first("  Tomé "));
+    }
+
+    @Test
+    void unaccentedQueryFindsAccentedEntry() {
+        assertEquals("Côte d'Ivoire", first("cote"));
+        assertEquals("São Tomé and Principe", first("SAO TOME"));
+    }
+
+    private String first(String query) {
+        int[] results = new int[index.size()];
+        int found = index.search(query, results);
+        return found == 0 ? null : index.getName(results[0]);
+    }
+}
@@ -0,0 +1,119 @@
+package main.java.model;
+
+import main.java.data.SummaryCube;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Percentiles merged from the rows' sketches must lie within the documented rank
+ * error of the exact percentiles of the sorted values: about 1 / compression.
+ * The rows hold more values than {@link SummaryCube#EXACT_PERCENTILE_VALUES}, so the
+ * cube estimates them from the sketches each row builds on first use.
+ */
+class QuantileSketchTest {
+    private static final double RANK_ERROR = 1 / QuantileSketch.DEFAULT_COMPRESSION;
+    private static final int FIRST_YEAR = 1960;
+    private static final int YEARS = 60;
+    // About 324k values, above the cube's exact limit
+    private static final int COUNTRIES = 6000;
+
+    private static List<CountryData> rows;
+    private static double[] sorted;
+
+    @BeforeAll
+    static void createRows() {
+        // Skewed values on very different scales per country, as in GDP-like series
+        Random random = new Random(7);
+        rows = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+        for (int country = 0; country < COUNTRIES; country++) {
+            CountryData row = new CountryData("Sketch country " + country, "SK" + country, "Sketch series", "SKS",
+                    FIRST_YEAR, FIRST_YEAR + YEARS - 1);
+            double scale = Math.exp(random.nextGaussian() * 3);
+            for (int year = FIRST_YEAR; year < FIRST_YEAR + YEARS; year++) {
+                if (random.nextInt(10) != 0) {
+                    double value = scale * Math.exp(random.nextGaussian());
+                    row.setValue(year, value);
+                    values.add(value);
+                }
+            }
+            rows.add(row);
+        }
+        sorted = values.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+        assertTrue(sorted.length > SummaryCube.EXACT_PERCENTILE_VALUES);
+    }
+
+    @Test
+    void mergedSketchesAreWithinTheRankError() {
+        Percentiles estimated = SummaryCube.percentiles(rows);
+        assertFalse(estimated.exact());
+        Percentiles exact = Percentiles.exact(sorted.clone(), sorted.length);
+
+        assertWithinRank(0.10, estimated.p10());
+        assertWithinRank(0.50, estimated.median());
+        assertWithinRank(0.90, estimated.p90());
+        // The IQR lies between the narrowest and widest quartile spans the rank error allows
+        double narrowest = exactQuantile(0.75 - RANK_ERROR) - exactQuantile(0.25 + RANK_ERROR);
+        double widest = exactQuantile(0.75 + RANK_ERROR) - exactQuantile(0.25 - RANK_ERROR);
+        assertTrue(estimated.iqr() >= narrowest && estimated.iqr() <= widest,
+                "IQR " + estimated.iqr() + " outside [" + narrowest + ", " + widest + "], exact " + exact.iqr());
+    }
+
+    @Test
+    void rowSketchIsBuiltOnFirstUseAndDroppedOnChange() {
+        CountryData row = new CountryData("Sketch country lazy", "SKL", "Sketch series", "SKS", 2000, 2009);
+        for (int year = 2000; year < 2010; year++) {
+            row.setValue(year, year - 2000);
+        }
+        QuantileSketch sketch = row.getSketch();
+        assertSame(sketch, row.getSketch());
+        assertEquals(10, sketch.getCount());
+        assertEquals(9, sketch.quantile(1), 0);
+
+        row.setValue(2009, 100);
+        QuantileSketch rebuilt = row.getSketch();
+        assertNotSame(sketch, rebuilt);
+        assertEquals(100, rebuilt.quantile(1), 0);
+        assertEquals(9, sketch.quantile(1), 0); // A sketch handed out is never changed
+    }
+
+    @Test
+    void smallSelectionsAreExact() {
+        List<CountryData> few = rows.subList(0, 100);
+        Percentiles percentiles = SummaryCube.percentiles(few);
+        assertTrue(percentiles.exact());
+        List<Double> values = new ArrayList<>();
+        for (CountryData row : few) {
+            for (int year = row.firstYear(); year <= row.lastYear(); year++) {
+                if (row.hasValue(year)) {
+                    values.add(row.valueAt(year));
+                }
+            }
+        }
+        double[] array = values.stream().mapToDouble(Double::doubleValue).toArray();
+        assertEquals(Percentiles.exact(array, array.length), percentiles);
+    }
+
+    // Checks that the estimate falls between the exact quantiles one rank error either side.
+    private static void assertWithinRank(double q, double estimate) {
+        double low = exactQuantile(q - RANK_ERROR);
+        double high = exactQuantile(q + RANK_ERROR);
+        assertTrue(estimate >= low && estimate <= high,
+                "q=" + q + ": " + estimate + " outside [" + low + ", " + high + "], exact " + exactQuantile(q));
+    }
+
+    private static double exactQuantile(double q) {
+        int index = (int) Math.round(Math.min(1, Math.max(0, q)) * (sorted.length - 1));
+        return sorted[index];
+    }
+}
@@ -0,0 +1,100 @@
+package main.java.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Moments built by adding, merging and taking values back must match a two-pass
+ * computation over the values that remain, also for large values with a small spread.
+ */
+class ValueSummaryTest {
+
+    @Test
+    void mergeMatchesAddingEveryValue() {
+        Random random = new Random(1);
+        ValueSummary all = new ValueSummary();
+        ValueSummary left = new ValueSummary();
+        ValueSummary right = new ValueSummary();
+        List<Double> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            double value = random.nextGaussian() * 50 + 10;
+            values.add(value);
+            all.add(2000 + i % 20, value);
+            (i % 3 == 0 ? left : right).add(2000 + i % 20, value);
+        }
+        left.merge(right);
+        assertEquals(all.getCount(), left.getCount());
+        assertEquals(all.getMean(), left.getMean(), 1e-9);
+        assertEquals(all.getStandardDeviation(), left.getStandardDeviation(), 1e-9);
+        assertEquals(twoPassStandardDeviation(values), left.getStandardDeviation(), 1e-9);
+        assertEquals(2000, left.getFirstYear());
+        assertEquals(2019, left.getLastYear());
+    }
+
+    @Test
+    void repeatedReloadsKeepTheVarianceAccurate() {
+        // Large values with a small spread: a sum of squares cancels out almost entirely
+        Random random = new Random(2);
+        ValueSummary summary = new ValueSummary();
+        List<Double> values = new ArrayList<>();
+        summary.add(2000, 1e9 - 1000);
+        summary.add(2000, 1e9 + 1000);
+        values.add(1e9 - 1000);
+        values.add(1e9 + 1000);
+        for (int i = 0; i < 200; i++) {
+            double value = 1e9 + random.nextGaussian();
+            values.add(value);
+            summary.add(2000, value);
+        }
+        // Each reload takes a value back and adds its new version
+        for (int reload = 0; reload < 100_000; reload++) {
+            int index = 2 + random.nextInt(values.size() - 2);
+            assertTrue(summary.remove(values.get(index)));
+            double value = 1e9 + random.nextGaussian();
+            values.set(index, value);
+            summary.add(2000, value);
+        }
+        double mean = values.stream().mapToDouble(Double::doubleValue).average().orElseThrow();
+        assertEquals(mean, summary.getMean(), mean * 1e-12);
+        // The spread is about 1: a sum of squares near 1e23 could not resolve it at all
+        assertEquals(twoPassStandardDeviation(values), summary.getStandardDeviation(), 1e-4);
+    }
+
+    @Test
+    void extremesAndLastValueCannotBeTakenBack() {
+        ValueSummary summary = new ValueSummary();
+        summary.add(2000, 1);
+        assertFalse(summary.remove(1));
+        summary.add(2001, 5);
+        summary.add(2002, 3);
+        assertFalse(summary.remove(1));
+        assertFalse(summary.remove(5));
+        assertTrue(summary.remove(3));
+        assertEquals(2, summary.getCount());
+        assertEquals(3, summary.getMean(), 1e-12);
+    }
+
+    @Test
+    void standardDeviationOfFewValues() {
+        ValueSummary summary = new ValueSummary();
+        assertTrue(Double.isNaN(summary.getStandardDeviation()));
+        summary.add(2000, 7);
+        assertEquals(0.0, summary.getStandardDeviation());
+    }
+
+    private static double twoPassStandardDeviation(List<Double> values) {
+        double mean = values.stream().mapToDouble(Double::doubleValue).average().orElseThrow();
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        return Math.sqrt(squares / (values.size() - 1));
+    }
+}